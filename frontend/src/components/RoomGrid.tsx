@@ -68,7 +68,7 @@ const RoomGrid = () => {
               <div className="relative">
                 {room.images && room.images.length > 0 ? (
                   <img
-                    src={`${import.meta.env.VITE_API_URL || "http://localhost:8081"}${room.images[0]}`}
+                    src={`${import.meta.env.VITE_API_URL || "http://localhost:8081"}${room.images[0]}?w=480`}
                     alt={room.roomType}
                     className="w-full h-48 object-cover"
                   />
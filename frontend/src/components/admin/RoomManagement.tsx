@@ -147,7 +147,7 @@ const RoomManagement = () => {
                           {room.images.slice(0, 3).map((image, index) => (
                             <img
                               key={index}
-                              src={`${import.meta.env.VITE_API_URL || "http://localhost:8081"}${image}`}
+                              src={`${import.meta.env.VITE_API_URL || "http://localhost:8081"}${image}?w=160`}
                               alt={`Room ${room.roomNumber} image ${index + 1}`}
                               className="w-8 h-8 rounded-full border-2 border-white object-cover"
                             />
@@ -1,5 +1,5 @@
-import { useState } from 'react';
-import { useQuery, useMutation, useQueryClient } from '@tanstack/react-query';
+import { useEffect, useState } from 'react';
+import { useInfiniteQuery, useMutation, useQueryClient } from '@tanstack/react-query';
 import { Button } from '@/components/ui/button';
 import { Card, CardContent, CardDescription, CardHeader, CardTitle } from '@/components/ui/card';
 import { Table, TableBody, TableCell, TableHead, TableHeader, TableRow } from '@/components/ui/table';
@@ -10,19 +10,38 @@ import ConfirmDeleteDialog from './ConfirmDeleteDialog';
 import { User } from '@/types/admin';
 import { useToast } from '@/hooks/use-toast';
 
+const PAGE_SIZE = 50;
+
 const UserManagement = () => {
   const [isFormModalOpen, setIsFormModalOpen] = useState(false);
   const [editingUser, setEditingUser] = useState<User | null>(null);
   const [deletingUser, setDeletingUser] = useState<User | null>(null);
   const [searchQuery, setSearchQuery] = useState('');
+  const [debouncedQuery, setDebouncedQuery] = useState('');
+  const [roleFilter, setRoleFilter] = useState('');
   const queryClient = useQueryClient();
   const { toast } = useToast();
 
-  const { data: users = [], isLoading } = useQuery({
-    queryKey: ['admin-users'],
-    queryFn: () => adminUserAPI.getAllUsers().then(res => res.data),
+  // Search runs on the server; wait for the user to stop typing
+  useEffect(() => {
+    const timer = setTimeout(() => setDebouncedQuery(searchQuery.trim()), 300);
+    return () => clearTimeout(timer);
+  }, [searchQuery]);
+
+  const { data, isLoading, hasNextPage, fetchNextPage, isFetchingNextPage } = useInfiniteQuery({
+    queryKey: ['admin-users', debouncedQuery, roleFilter],
+    queryFn: ({ pageParam }) => adminUserAPI.searchUsers({
+      q: debouncedQuery || undefined,
+      role: roleFilter || undefined,
+      afterId: pageParam,
+      limit: PAGE_SIZE,
+    }).then(res => res.data),
+    initialPageParam: 0,
+    getNextPageParam: (lastPage) => lastPage.nextAfterId ?? undefined,
   });
 
+  const users = data?.pages.flatMap(page => page.items) ?? [];
+
   const deleteUserMutation = useMutation({
     mutationFn: (id: number) => adminUserAPI.deleteUser(id),
     onSuccess: () => {
@@ -57,16 +76,6 @@ const UserManagement = () => {
     }
   };
 
-  const filteredUsers = users.filter(user => {
-    const userFirstName = user.firstName || '';
-    const userLastName = user.lastName || '';
-    const userEmail = user.email || '';
-    const userFullName = `${userFirstName} ${userLastName}`.trim();
-
-    return userFullName.toLowerCase().includes(searchQuery.toLowerCase()) ||
-      userEmail.toLowerCase().includes(searchQuery.toLowerCase());
-  });
-
   return (
     <div className="space-y-6">
       <div className="flex items-center justify-between">
@@ -86,15 +95,25 @@ const UserManagement = () => {
             <div>
               <CardTitle>Users</CardTitle>
               <CardDescription>
-                Total users: {users.length}
+                Showing {users.length} users{hasNextPage ? ' (more available)' : ''}
               </CardDescription>
             </div>
             <div className="flex items-center gap-2">
+              <select
+                value={roleFilter}
+                onChange={(e) => setRoleFilter(e.target.value)}
+                className="px-3 py-2 border border-gray-300 rounded-md focus:outline-none focus:ring-2 focus:ring-blue-500"
+              >
+                <option value="">All roles</option>
+                <option value="ROLE_USER">User</option>
+                <option value="ROLE_STAFF">Staff</option>
+                <option value="ROLE_ADMIN">Admin</option>
+              </select>
               <div className="relative">
                 <Search className="absolute left-3 top-1/2 transform -translate-y-1/2 text-gray-400 h-4 w-4" />
                 <input
                   type="text"
-                  placeholder="Search users..."
+                  placeholder="Email, name or phone..."
                   value={searchQuery}
                   onChange={(e) => setSearchQuery(e.target.value)}
                   className="pl-10 pr-4 py-2 border border-gray-300 rounded-md focus:outline-none focus:ring-2 focus:ring-blue-500"
@@ -119,7 +138,7 @@ const UserManagement = () => {
                 </TableRow>
               </TableHeader>
               <TableBody>
-                {filteredUsers.map((user) => (
+                {users.map((user) => (
                   <TableRow key={user.id}>
                     <TableCell className="font-medium">{`${user.firstName} ${user.lastName}`}</TableCell>
                     <TableCell>{user.email}</TableCell>
@@ -151,6 +170,13 @@ const UserManagement = () => {
               </TableBody>
             </Table>
           )}
+          {hasNextPage && (
+            <div className="flex justify-center pt-4">
+              <Button variant="outline" onClick={() => fetchNextPage()} disabled={isFetchingNextPage}>
+                {isFetchingNextPage ? 'Loading...' : 'Load more'}
+              </Button>
+            </div>
+          )}
         </CardContent>
       </Card>
 
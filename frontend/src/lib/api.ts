@@ -1,4 +1,4 @@
-import axios, { AxiosError } from "axios";
+import axios, { AxiosError, InternalAxiosRequestConfig } from "axios";
 import { toast } from "sonner";
 
 const baseURL = import.meta.env.VITE_API_URL || "http://localhost:8081/api";
@@ -11,6 +11,26 @@ export const api = axios.create({
   timeout: 10000, // 10 second timeout
 });
 
+// Access tokens are short-lived: refresh once per expiry, shared by all requests that hit the 401
+let refreshPromise: Promise<string> | null = null;
+
+const refreshAccessToken = (): Promise<string> => {
+  if (!refreshPromise) {
+    const refreshToken = localStorage.getItem("refreshToken");
+    refreshPromise = (refreshToken
+      ? axios.post(`${baseURL}/auth/refresh`, { refreshToken }).then((response) => {
+          localStorage.setItem("token", response.data.token);
+          localStorage.setItem("refreshToken", response.data.refreshToken);
+          return response.data.token as string;
+        })
+      : Promise.reject(new Error("No refresh token"))
+    ).finally(() => {
+      refreshPromise = null;
+    });
+  }
+  return refreshPromise;
+};
+
 // Request interceptor
 api.interceptors.request.use(
   (config) => {
@@ -41,6 +61,20 @@ api.interceptors.response.use(
       message: error.message
     });
 
+    // Expired access token: refresh and replay the request once
+    const original = error.config as (InternalAxiosRequestConfig & { _retry?: boolean }) | undefined;
+    if (error.response?.status === 401 && original && !original._retry
+        && !original.url?.includes('/auth/')) {
+      original._retry = true;
+      try {
+        const token = await refreshAccessToken();
+        original.headers.Authorization = `Bearer ${token}`;
+        return api(original);
+      } catch (refreshError) {
+        // Fall through to the login redirect below
+      }
+    }
+
     // Handle 401 Unauthorized or 403 Forbidden
     if (error.response?.status === 401 || error.response?.status === 403) {
       // Check if this is a public route
@@ -50,6 +84,7 @@ api.interceptors.response.use(
       if (!isPublicRoute) {
         // Only redirect if it's not a public route
         localStorage.removeItem("token");
+        localStorage.removeItem("refreshToken");
         window.location.href = "/login";
         toast.error("Vui lòng đăng nhập để tiếp tục.");
       }
@@ -1,6 +1,6 @@
 import { api } from './api';
 import axios from 'axios';
-import { Room, User, CreateRoomData, CreateUserData, UpdateUserData } from '../types/admin';
+import { Room, User, UserPage, CreateRoomData, CreateUserData, UpdateUserData } from '../types/admin';
 
 // Create a separate axios instance for admin APIs
 const adminApi = axios.create({
@@ -60,7 +60,8 @@ export const adminUserAPI = {
   createUser: (userData: CreateUserData) => adminApi.post<User>('/users', userData),
   updateUser: (id: number, userData: UpdateUserData) => adminApi.put<User>(`/users/${id}`, userData),
   deleteUser: (id: number) => adminApi.delete(`/users/${id}`),
-  searchUsers: (query: string) => adminApi.get<User[]>(`/users/search?q=${query}`),
+  searchUsers: (params: { q?: string; role?: string; afterId?: number; limit?: number }) =>
+    adminApi.get<UserPage>('/users/search', { params }),
   toggleUserStatus: (id: number) => adminApi.patch<User>(`/users/${id}/toggle-status`),
 };
 
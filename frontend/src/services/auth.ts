@@ -6,8 +6,9 @@ export const authService = {
     console.log('Auth service - Login request:', credentials);
     const response = await api.post<AuthResponse>("/auth/login", credentials);
     console.log('Auth service - Login response:', response.data);
-    const { token, user } = response.data;
+    const { token, refreshToken } = response.data;
     localStorage.setItem("token", token);
+    localStorage.setItem("refreshToken", refreshToken);
     return response.data;
   },
 
@@ -46,7 +47,13 @@ export const authService = {
   },
 
   logout() {
+    const refreshToken = localStorage.getItem("refreshToken");
+    if (refreshToken) {
+      // Best effort: revoke the refresh token server-side
+      api.post("/auth/logout", { refreshToken }).catch(() => undefined);
+    }
     localStorage.removeItem("token");
+    localStorage.removeItem("refreshToken");
     window.location.href = "/";
   },
 
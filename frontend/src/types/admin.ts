@@ -20,6 +20,11 @@ export interface User {
   role: string;
 }
 
+export interface UserPage {
+  items: User[];
+  nextAfterId: number | null;
+}
+
 export const roomSchema = z.object({
   roomNumber: z.string().min(1, "Room number is required"),
   roomType: z.string().min(1, "Room type is required"),
@@ -21,6 +21,8 @@ export interface RegisterData extends Omit<User, 'id' | 'role'> {
 export interface AuthResponse {
   user: User;
   token: string;
+  refreshToken: string;
+  expiresIn: number;
 }
 
 export interface AuthState {
@@ -0,0 +1,184 @@
+package com.project.hotel.client;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.project.hotel.config.VNPayConfig;
+import com.project.hotel.exception.PaymentProcessingException;
+import com.project.hotel.security.VNPaySigner;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Client cho VNPay merchant API (truy vấn giao dịch - querydr, hoàn tiền - refund)
+ * <p>
+ * Calls are synchronous and bounded by {@code vnpay.api-timeout-ms}; callers decide
+ * the concurrency. Response signatures are verified before the result is trusted.
+ */
+@Slf4j
+@Component
+public class VNPayApiClient {
+
+    private static final DateTimeFormatter VNPAY_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+    private static final TypeReference<Map<String, Object>> JSON_MAP = new TypeReference<>() {
+    };
+
+    private final VNPayConfig vnPayConfig;
+    private final VNPaySigner vnPaySigner;
+    private final ObjectMapper objectMapper;
+    private final HttpClient httpClient;
+
+    public VNPayApiClient(VNPayConfig vnPayConfig, VNPaySigner vnPaySigner, ObjectMapper objectMapper) {
+        this.vnPayConfig = vnPayConfig;
+        this.vnPaySigner = vnPaySigner;
+        this.objectMapper = objectMapper;
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(vnPayConfig.getApiTimeoutMs()))
+                .build();
+    }
+
+    /**
+     * Queries the gateway for the status of the transaction created with {@code txnRef}.
+     *
+     * @param transactionDate the {@code vnp_CreateDate} of the original payment request
+     */
+    public Map<String, String> queryTransaction(String txnRef, LocalDateTime transactionDate) {
+        String requestId = newRequestId();
+        String createDate = LocalDateTime.now().format(VNPAY_DATE_FORMAT);
+        String orderInfo = "Truy van giao dich " + txnRef;
+
+        Map<String, String> body = new LinkedHashMap<>();
+        body.put("vnp_RequestId", requestId);
+        body.put("vnp_Version", vnPayConfig.getVersion());
+        body.put("vnp_Command", "querydr");
+        body.put("vnp_TmnCode", vnPayConfig.getTmnCode());
+        body.put("vnp_TxnRef", txnRef);
+        body.put("vnp_OrderInfo", orderInfo);
+        body.put("vnp_TransactionDate", transactionDate.format(VNPAY_DATE_FORMAT));
+        body.put("vnp_CreateDate", createDate);
+        body.put("vnp_IpAddr", vnPayConfig.getServerIp());
+        body.put("vnp_SecureHash", vnPaySigner.sign(String.join("|",
+                requestId, vnPayConfig.getVersion(), "querydr", vnPayConfig.getTmnCode(), txnRef,
+                body.get("vnp_TransactionDate"), createDate, vnPayConfig.getServerIp(), orderInfo)));
+
+        Map<String, String> response = post(body);
+        verifyQueryResponse(response);
+        return response;
+    }
+
+    /**
+     * Requests a full refund (transaction type 02) of a settled transaction.
+     */
+    public Map<String, String> refund(String txnRef, String transactionNo, long amount,
+                                      LocalDateTime transactionDate, String createBy) {
+        String requestId = newRequestId();
+        String createDate = LocalDateTime.now().format(VNPAY_DATE_FORMAT);
+        String orderInfo = "Hoan tien giao dich " + txnRef;
+        String vnpAmount = String.valueOf(amount * 100);
+        String transactionType = "02";
+
+        Map<String, String> body = new LinkedHashMap<>();
+        body.put("vnp_RequestId", requestId);
+        body.put("vnp_Version", vnPayConfig.getVersion());
+        body.put("vnp_Command", "refund");
+        body.put("vnp_TmnCode", vnPayConfig.getTmnCode());
+        body.put("vnp_TransactionType", transactionType);
+        body.put("vnp_TxnRef", txnRef);
+        body.put("vnp_Amount", vnpAmount);
+        body.put("vnp_OrderInfo", orderInfo);
+        body.put("vnp_TransactionNo", transactionNo == null ? "" : transactionNo);
+        body.put("vnp_TransactionDate", transactionDate.format(VNPAY_DATE_FORMAT));
+        body.put("vnp_CreateBy", createBy);
+        body.put("vnp_CreateDate", createDate);
+        body.put("vnp_IpAddr", vnPayConfig.getServerIp());
+        body.put("vnp_SecureHash", vnPaySigner.sign(String.join("|",
+                requestId, vnPayConfig.getVersion(), "refund", vnPayConfig.getTmnCode(), transactionType,
+                txnRef, vnpAmount, body.get("vnp_TransactionNo"), body.get("vnp_TransactionDate"),
+                createBy, createDate, vnPayConfig.getServerIp(), orderInfo)));
+
+        Map<String, String> response = post(body);
+        verifySignature(String.join("|",
+                value(response, "vnp_ResponseId"), value(response, "vnp_Command"),
+                value(response, "vnp_ResponseCode"), value(response, "vnp_Message"),
+                value(response, "vnp_TmnCode"), value(response, "vnp_TxnRef"),
+                value(response, "vnp_Amount"), value(response, "vnp_BankCode"),
+                value(response, "vnp_PayDate"), value(response, "vnp_TransactionNo"),
+                value(response, "vnp_TransactionType"), value(response, "vnp_TransactionStatus"),
+                value(response, "vnp_OrderInfo")), response);
+        return response;
+    }
+
+    /**
+     * TxnRef có dạng {bookingId}-{epochMillis}; thời điểm tạo giao dịch chính là vnp_CreateDate
+     */
+    public static LocalDateTime transactionDateOf(String txnRef) {
+        long epochMillis = Long.parseLong(txnRef.substring(txnRef.indexOf('-') + 1));
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+    }
+
+    private Map<String, String> post(Map<String, String> body) {
+        try {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(vnPayConfig.getApiUrl()))
+                    .timeout(Duration.ofMillis(vnPayConfig.getApiTimeoutMs()))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(body)))
+                    .build();
+            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                throw new PaymentProcessingException("VNPay API returned HTTP " + response.statusCode());
+            }
+
+            Map<String, Object> json = objectMapper.readValue(response.body(), JSON_MAP);
+            Map<String, String> result = new LinkedHashMap<>();
+            json.forEach((key, value) -> result.put(key, value == null ? null : String.valueOf(value)));
+            return result;
+        } catch (IOException e) {
+            throw new PaymentProcessingException("VNPay API call failed: " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PaymentProcessingException("VNPay API call interrupted", e);
+        }
+    }
+
+    private void verifyQueryResponse(Map<String, String> response) {
+        String data = String.join("|",
+                value(response, "vnp_ResponseId"), value(response, "vnp_Command"),
+                value(response, "vnp_ResponseCode"), value(response, "vnp_Message"),
+                value(response, "vnp_TmnCode"), value(response, "vnp_TxnRef"),
+                value(response, "vnp_Amount"), value(response, "vnp_BankCode"),
+                value(response, "vnp_PayDate"), value(response, "vnp_TransactionNo"),
+                value(response, "vnp_TransactionType"), value(response, "vnp_TransactionStatus"),
+                value(response, "vnp_OrderInfo"), value(response, "vnp_PromotionCode"),
+                value(response, "vnp_PromotionAmount"));
+        verifySignature(data, response);
+    }
+
+    private void verifySignature(String data, Map<String, String> response) {
+        String expected = vnPaySigner.sign(data);
+        if (!expected.equalsIgnoreCase(value(response, "vnp_SecureHash"))) {
+            throw new PaymentProcessingException("Invalid signature on VNPay API response");
+        }
+    }
+
+    private static String value(Map<String, String> response, String key) {
+        String value = response.get(key);
+        return value == null ? "" : value;
+    }
+
+    private static String newRequestId() {
+        return UUID.randomUUID().toString().replace("-", "");
+    }
+}
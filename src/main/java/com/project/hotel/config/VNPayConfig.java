@@ -36,4 +36,14 @@ public class VNPayConfig {
 
   @Value("${vnpay.timeout}")
   private int timeout = 15; // minutes
+
+  // Merchant API (querydr / refund)
+  @Value("${vnpay.api-url:https://sandbox.vnpayment.vn/merchant_webapi/api/transaction}")
+  private String apiUrl;
+
+  @Value("${vnpay.api-timeout-ms:5000}")
+  private int apiTimeoutMs = 5000;
+
+  @Value("${vnpay.server-ip:127.0.0.1}")
+  private String serverIp = "127.0.0.1";
 }
\ No newline at end of file
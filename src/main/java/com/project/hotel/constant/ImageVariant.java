@@ -0,0 +1,20 @@
+package com.project.hotel.constant;
+
+/**
+ * Kích thước ảnh phòng được sinh sẵn; chiều rộng tối đa tính theo pixel
+ */
+public enum ImageVariant {
+  THUMBNAIL(160), // Danh sách quản trị, ảnh nhỏ
+  CARD(480), // Thẻ phòng trên trang danh mục
+  FULL(1600); // Trang chi tiết
+
+  private final int maxWidth;
+
+  ImageVariant(int maxWidth) {
+    this.maxWidth = maxWidth;
+  }
+
+  public int getMaxWidth() {
+    return maxWidth;
+  }
+}
@@ -4,7 +4,9 @@ public enum PaymentStatus {
   PENDING, // Đang chờ thanh toán
   PAID, // Thanh toán thành công
   FAILED, // Thanh toán thất bại
+  REFUND_PENDING, // Đang chờ hoàn tiền qua cổng thanh toán
   REFUNDED, // Đã hoàn tiền
+  REFUND_FAILED, // Hoàn tiền thất bại, cần xử lý thủ công
   EXPIRED, // Hết hạn thanh toán
   CANCELLED // Đã hủy
-}
\ No newline at end of file
+}
@@ -0,0 +1,12 @@
+package com.project.hotel.constant;
+
+public enum PaymentTransitionSource {
+  MANUAL, // Thay đổi thủ công qua API
+  CHECKOUT, // Tạo URL thanh toán VNPay
+  VNPAY_RETURN, // Trình duyệt quay về từ VNPay
+  VNPAY_IPN, // Thông báo IPN từ VNPay
+  RECONCILIATION, // Đối soát với cổng thanh toán
+  BOOKING, // Hủy đặt phòng
+  REFUND, // Xử lý hoàn tiền
+  MIGRATION // Dữ liệu có sẵn trước khi có nhật ký
+}
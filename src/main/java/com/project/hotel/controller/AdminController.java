@@ -1,15 +1,24 @@
 package com.project.hotel.controller;
 
+import com.project.hotel.dto.PaymentTransitionDTO;
+import com.project.hotel.dto.ReconciliationReportDTO;
+import com.project.hotel.dto.UploadCleanupReportDTO;
 import com.project.hotel.service.BookingService;
+import com.project.hotel.service.PaymentReconciliationService;
+import com.project.hotel.service.PaymentStateMachine;
 import com.project.hotel.service.RoomService;
+import com.project.hotel.service.UploadCleanupService;
 import com.project.hotel.service.UserService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -22,13 +31,16 @@ public class AdminController {
   private final BookingService bookingService;
   private final RoomService roomService;
   private final UserService userService;
+  private final PaymentReconciliationService paymentReconciliationService;
+  private final PaymentStateMachine paymentStateMachine;
+  private final UploadCleanupService uploadCleanupService;
 
   @GetMapping("/dashboard/stats")
   public ResponseEntity<Map<String, Object>> getDashboardStats() {
     Map<String, Object> stats = new HashMap<>();
 
     stats.put("totalBookings", bookingService.getAllBookings().size());
-    stats.put("totalUsers", userService.getAllUsers().size());
+    stats.put("totalUsers", userService.countUsers());
     stats.put("availableRooms", roomService.getAvailableRooms().size());
 
     // Calculate total revenue from all bookings
@@ -40,4 +52,28 @@ public class AdminController {
 
     return ResponseEntity.ok(stats);
   }
-}
\ No newline at end of file
+
+  @PostMapping("/payments/reconcile")
+  public ResponseEntity<ReconciliationReportDTO> reconcilePayments(
+      @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+      @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+    return ResponseEntity.ok(paymentReconciliationService.reconcile(from, to));
+  }
+
+  @PostMapping("/uploads/cleanup")
+  public ResponseEntity<UploadCleanupReportDTO> cleanUpUploads() {
+    return ResponseEntity.ok(uploadCleanupService.cleanUp());
+  }
+
+  @GetMapping("/payments/{id}/transitions")
+  public ResponseEntity<List<PaymentTransitionDTO>> getPaymentTransitions(@PathVariable Long id) {
+    return ResponseEntity.ok(paymentStateMachine.getHistory(id));
+  }
+
+  @GetMapping("/payments/transitions")
+  public ResponseEntity<List<PaymentTransitionDTO>> readPaymentTransitionLog(
+      @RequestParam(defaultValue = "0") Long afterId,
+      @RequestParam(defaultValue = "500") int limit) {
+    return ResponseEntity.ok(paymentStateMachine.readLog(afterId, Math.min(Math.max(limit, 1), 5000)));
+  }
+}
@@ -1,9 +1,12 @@
 package com.project.hotel.controller;
 
+import com.project.hotel.dto.AuthTokensDTO;
 import com.project.hotel.dto.UserDTO;
-import com.project.hotel.security.JwtTokenProvider;
+import com.project.hotel.security.JwtUserPrincipal;
+import com.project.hotel.service.AuthTokenService;
 import com.project.hotel.service.UserService;
 import com.project.hotel.exception.AuthenticationException;
+import com.project.hotel.exception.ServiceBusyException;
 import com.project.hotel.exception.ValidationException;
 import com.project.hotel.constant.UserRole;
 import jakarta.validation.Valid;
@@ -13,8 +16,10 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.InternalAuthenticationServiceException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
@@ -29,7 +34,7 @@ import java.util.Map;
 public class AuthController {
 
     private final AuthenticationManager authenticationManager;
-    private final JwtTokenProvider tokenProvider;
+    private final AuthTokenService authTokenService;
     private final UserService userService;
 
     @PostMapping("/login")
@@ -46,12 +51,14 @@ public class AuthController {
                     new UsernamePasswordAuthenticationToken(email, password));
 
             SecurityContextHolder.getContext().setAuthentication(authentication);
-            String jwt = tokenProvider.generateToken(authentication);
+            AuthTokensDTO tokens = authTokenService.issueTokens((JwtUserPrincipal) authentication.getPrincipal());
 
             UserDTO userDTO = userService.getUserByEmail(email);
 
             Map<String, Object> response = new HashMap<>();
-            response.put("token", jwt);
+            response.put("token", tokens.getToken());
+            response.put("refreshToken", tokens.getRefreshToken());
+            response.put("expiresIn", tokens.getExpiresIn());
             response.put("user", userDTO);
 
             log.info("User logged in successfully: {}", email);
@@ -59,12 +66,37 @@ public class AuthController {
         } catch (BadCredentialsException e) {
             log.warn("Failed login attempt for user: {}", loginRequest.get("email"));
             throw new AuthenticationException("Invalid email or password");
+        } catch (ServiceBusyException e) {
+            throw e;
+        } catch (InternalAuthenticationServiceException e) {
+            // Unknown users are hashed too (timing protection) and may hit a saturated pool
+            if (e.getCause() instanceof ServiceBusyException busy) {
+                throw busy;
+            }
+            log.error("Error during login: {}", e.getMessage(), e);
+            throw new AuthenticationException("Authentication failed: " + e.getMessage());
         } catch (Exception e) {
             log.error("Error during login: {}", e.getMessage(), e);
             throw new AuthenticationException("Authentication failed: " + e.getMessage());
         }
     }
 
+    @PostMapping("/refresh")
+    public ResponseEntity<AuthTokensDTO> refreshToken(@RequestBody Map<String, String> request) {
+        String refreshToken = request.get("refreshToken");
+        if (refreshToken == null || refreshToken.isBlank()) {
+            throw new ValidationException("Refresh token is required");
+        }
+        return ResponseEntity.ok(authTokenService.refresh(refreshToken));
+    }
+
+    @PostMapping("/logout")
+    public ResponseEntity<Void> logout(@RequestBody(required = false) Map<String, String> request,
+                                       @AuthenticationPrincipal JwtUserPrincipal principal) {
+        authTokenService.logout(request != null ? request.get("refreshToken") : null, principal);
+        return ResponseEntity.noContent().build();
+    }
+
     @PostMapping("/register")
     public ResponseEntity<?> registerUser(@Valid @RequestBody UserDTO userDTO) {
         try {
@@ -80,6 +112,8 @@ public class AuthController {
             UserDTO createdUser = userService.createUser(userDTO);
             log.info("User registered successfully: {}", userDTO.getEmail());
             return new ResponseEntity<>(createdUser, HttpStatus.CREATED);
+        } catch (ServiceBusyException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Error during registration: {}", e.getMessage(), e);
             throw new ValidationException("Registration failed: " + e.getMessage());
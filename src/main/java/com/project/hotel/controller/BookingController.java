@@ -1,15 +1,18 @@
 package com.project.hotel.controller;
 
+import com.project.hotel.dto.BatchGetRequestDTO;
+import com.project.hotel.dto.BatchItemDTO;
 import com.project.hotel.dto.BookingDTO;
 import com.project.hotel.dto.PaymentDTO;
 import com.project.hotel.dto.VNPayRequestDTO;
+import com.project.hotel.exception.BadRequestException;
 import com.project.hotel.exception.ResourceNotFoundException;
 import com.project.hotel.service.BookingService;
 import com.project.hotel.service.PaymentService;
 import com.project.hotel.service.VNPayService;
 import com.project.hotel.entity.Booking;
-import com.project.hotel.entity.User;
-import com.project.hotel.service.UserService;
+import com.project.hotel.security.JwtUserPrincipal;
+import com.project.hotel.util.ClientIpUtils;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -18,7 +21,6 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.validation.BindingResult;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.annotation.*;
@@ -39,15 +41,12 @@ public class BookingController {
     private final BookingService bookingService;
     private final PaymentService paymentService;
     private final VNPayService vnPayService;
-    private final UserService userService;
 
     @Autowired
-    public BookingController(BookingService bookingService, PaymentService paymentService, VNPayService vnPayService,
-                             UserService userService) {
+    public BookingController(BookingService bookingService, PaymentService paymentService, VNPayService vnPayService) {
         this.bookingService = bookingService;
         this.paymentService = paymentService;
         this.vnPayService = vnPayService;
-        this.userService = userService;
     }
 
     @PostMapping
@@ -55,17 +54,14 @@ public class BookingController {
     public ResponseEntity<?> createBooking(
             @Valid @RequestBody BookingDTO bookingDTO,
             BindingResult bindingResult,
-            @AuthenticationPrincipal UserDetails userDetails,
+            @AuthenticationPrincipal JwtUserPrincipal principal,
             HttpServletRequest request) {
 
         log.info("Received booking request: {}", bookingDTO);
 
         try {
-            // Get user by email from security context
-            String userEmail = userDetails.getUsername();
-            User user = userService.findByEmail(userEmail)
-                    .orElseThrow(() -> new ResourceNotFoundException("User not found with email: " + userEmail));
-            bookingDTO.setUserId(user.getId());
+            // User id comes from the access token
+            bookingDTO.setUserId(principal.getId());
 
             // Validate request body
             if (bookingDTO.getRoomId() == null) {
@@ -125,11 +121,10 @@ public class BookingController {
     @GetMapping("/{id}")
     @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
     public ResponseEntity<BookingDTO> getBookingById(@PathVariable Long id,
-                                                     @AuthenticationPrincipal UserDetails userDetails) {
+                                                     @AuthenticationPrincipal JwtUserPrincipal principal) {
         BookingDTO booking = bookingService.getBookingById(id);
         // Only allow users to view their own bookings or admin to view any booking
-        if (!userDetails.getAuthorities().stream().anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN"))
-                && !booking.getUserId().toString().equals(userDetails.getUsername())) {
+        if (!principal.isAdmin() && !booking.getUserId().equals(principal.getId())) {
             return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
         }
         return ResponseEntity.ok(booking);
@@ -137,32 +132,55 @@ public class BookingController {
 
     @GetMapping
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<List<BookingDTO>> getAllBookings() {
+    public ResponseEntity<?> getAllBookings(@RequestParam(required = false) String fields) {
+        if (fields != null) {
+            return ResponseEntity.ok(bookingService.getBookingFields(fields, null, null, null, null, null));
+        }
         List<BookingDTO> bookings = bookingService.getAllBookings();
         return ResponseEntity.ok(bookings);
     }
 
+    @PostMapping("/batch-get")
+    @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
+    public ResponseEntity<List<BatchItemDTO<BookingDTO>>> getBookingsByIds(
+            @Valid @RequestBody BatchGetRequestDTO request,
+            @AuthenticationPrincipal JwtUserPrincipal principal) {
+        List<BatchItemDTO<BookingDTO>> bookings = bookingService.getBookingsByIds(request.getIds());
+        if (!principal.isAdmin()) {
+            // Đơn của người khác được báo như không tồn tại
+            bookings.stream()
+                    .filter(item -> item.isFound() && !item.getData().getUserId().equals(principal.getId()))
+                    .forEach(item -> {
+                        item.setFound(false);
+                        item.setData(null);
+                    });
+        }
+        return ResponseEntity.ok(bookings);
+    }
+
     @GetMapping("/user/{userId}")
     @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
-    public ResponseEntity<List<BookingDTO>> getBookingsByUserId(@PathVariable Long userId,
-                                                                @AuthenticationPrincipal UserDetails userDetails) {
+    public ResponseEntity<?> getBookingsByUserId(@PathVariable Long userId,
+                                                 @RequestParam(required = false) String fields,
+                                                 @AuthenticationPrincipal JwtUserPrincipal principal) {
         try {
-            // Get current user from userDetails
-            User currentUser = userService.findByEmail(userDetails.getUsername())
-                    .orElseThrow(() -> new ResourceNotFoundException("User not found"));
-
             // Only allow users to view their own bookings or admin to view any booking
-            if (!userDetails.getAuthorities().stream().anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN"))
-                    && !userId.equals(currentUser.getId())) {
+            if (!principal.isAdmin() && !userId.equals(principal.getId())) {
                 return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
             }
 
             log.info("Fetching bookings for user ID: {}", userId);
+            if (fields != null) {
+                return ResponseEntity.ok(bookingService.getBookingFields(fields, userId, null, null, null, null));
+            }
             List<BookingDTO> bookings = bookingService.getBookingsByUserId(userId);
             log.info("Found {} bookings for user ID: {}", bookings.size(), userId);
 
             return ResponseEntity.ok(bookings);
         } catch (Exception e) {
+            if (e instanceof BadRequestException) {
+                throw e;
+            }
             log.error("Error fetching bookings for user {}: {}", userId, e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
@@ -170,23 +188,35 @@ public class BookingController {
 
     @GetMapping("/room/{roomId}")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<List<BookingDTO>> getBookingsByRoomId(@PathVariable Long roomId) {
+    public ResponseEntity<?> getBookingsByRoomId(@PathVariable Long roomId,
+                                                 @RequestParam(required = false) String fields) {
+        if (fields != null) {
+            return ResponseEntity.ok(bookingService.getBookingFields(fields, null, roomId, null, null, null));
+        }
         List<BookingDTO> bookings = bookingService.getBookingsByRoomId(roomId);
         return ResponseEntity.ok(bookings);
     }
 
     @GetMapping("/status/{status}")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<List<BookingDTO>> getBookingsByStatus(@PathVariable String status) {
+    public ResponseEntity<?> getBookingsByStatus(@PathVariable String status,
+                                                 @RequestParam(required = false) String fields) {
+        if (fields != null) {
+            return ResponseEntity.ok(bookingService.getBookingFields(fields, null, null, status, null, null));
+        }
         List<BookingDTO> bookings = bookingService.getBookingsByStatus(status);
         return ResponseEntity.ok(bookings);
     }
 
     @GetMapping("/date-range")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<List<BookingDTO>> getBookingsInDateRange(
+    public ResponseEntity<?> getBookingsInDateRange(
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
-            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(required = false) String fields) {
+        if (fields != null) {
+            return ResponseEntity.ok(bookingService.getBookingFields(fields, null, null, null, startDate, endDate));
+        }
         List<BookingDTO> bookings = bookingService.getBookingsInDateRange(startDate, endDate);
         return ResponseEntity.ok(bookings);
     }
@@ -243,7 +273,7 @@ public class BookingController {
         vnPayRequest.setOrderId("ORDER_" + System.currentTimeMillis());
         vnPayRequest.setAmount(booking.getTotalPrice().longValue());
         vnPayRequest.setOrderInfo("Thanh toan dat phong " + booking.getBookingReference());
-        vnPayRequest.setIpAddress(getClientIp(request));
+        vnPayRequest.setIpAddress(ClientIpUtils.getClientIp(request));
 
         try {
             // Create payment record first
@@ -264,29 +294,16 @@ public class BookingController {
         }
     }
 
-    private String getClientIp(HttpServletRequest request) {
-        String xForwardedFor = request.getHeader("X-Forwarded-For");
-        if (xForwardedFor != null && !xForwardedFor.isEmpty()) {
-            return xForwardedFor.split(",")[0];
-        }
-        return request.getRemoteAddr();
-    }
-
     @PostMapping("/{id}/cancel")
     @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
     public ResponseEntity<BookingDTO> cancelBooking(
             @PathVariable Long id,
-            @AuthenticationPrincipal UserDetails userDetails) {
+            @AuthenticationPrincipal JwtUserPrincipal principal) {
         try {
             BookingDTO booking = bookingService.getBookingById(id);
 
-            // Get current user from userDetails
-            User currentUser = userService.findByEmail(userDetails.getUsername())
-                    .orElseThrow(() -> new ResourceNotFoundException("User not found"));
-
             // Only allow users to cancel their own bookings or admin to cancel any booking
-            if (!userDetails.getAuthorities().stream().anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN"))
-                    && !booking.getUserId().equals(currentUser.getId())) {
+            if (!principal.isAdmin() && !booking.getUserId().equals(principal.getId())) {
                 return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
             }
 
@@ -1,20 +1,25 @@
 package com.project.hotel.controller;
 
-import com.project.hotel.util.FileUploadUtil;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
-import org.springframework.http.MediaType;
+import com.project.hotel.service.BlobService;
+import com.project.hotel.service.FileServingService;
+import com.project.hotel.service.ImageUploadService;
+import com.project.hotel.service.ImageVariantService;
+import com.project.hotel.service.RoomService;
+import com.project.hotel.storage.BlobKeys;
+import com.project.hotel.storage.BlobStore;
+import com.project.hotel.storage.StagedBlob;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.net.MalformedURLException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.UUID;
+import java.util.regex.Pattern;
 
 @RestController
 @RequestMapping("/api/uploads")
@@ -23,22 +28,40 @@ public class FileUploadController {
 
     private static final String UPLOAD_DIR = "uploads";
 
-    @PostMapping("/room-photo")
-    public ResponseEntity<?> uploadRoomPhoto(@RequestParam("file") MultipartFile file) {
-        if (file.isEmpty()) {
-            Map<String, String> response = new HashMap<>();
-            response.put("error", "Please select a file to upload");
-            return ResponseEntity.badRequest().body(response);
-        }
+    // UUID hoặc SHA-256 hex, có thể kèm hậu tố của bản thu nhỏ (_thumbnail, _card, _full)
+    private static final Pattern IMMUTABLE_NAME = Pattern.compile(
+            "^([0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}|[0-9a-f]{64})(_[a-z]+)?(\\.[A-Za-z0-9]+)?$");
+
+    private final ImageVariantService imageVariantService;
+    private final FileServingService fileServingService;
+    private final BlobService blobService;
+    private final BlobStore blobStore;
+    private final ImageUploadService imageUploadService;
+    private final RoomService roomService;
 
+    public FileUploadController(ImageVariantService imageVariantService, FileServingService fileServingService,
+                                BlobService blobService, BlobStore blobStore, ImageUploadService imageUploadService,
+                                RoomService roomService) {
+        this.imageVariantService = imageVariantService;
+        this.fileServingService = fileServingService;
+        this.blobService = blobService;
+        this.blobStore = blobStore;
+        this.imageUploadService = imageUploadService;
+        this.roomService = roomService;
+    }
+
+    @PostMapping("/room-photo")
+    public ResponseEntity<?> uploadRoomPhoto(HttpServletRequest request) {
         try {
-            // Generate a unique file name
-            String fileName = UUID.randomUUID().toString() + getFileExtension(file.getOriginalFilename());
-            String filePath = FileUploadUtil.saveFile(UPLOAD_DIR, fileName, file);
+            // Tên file là mã băm nội dung: upload trùng chỉ lưu một bản
+            StagedBlob blob = imageUploadService.receive(request);
+            blobService.store(blob);
+            String fileName = blob.getKey();
+            imageVariantService.submit(null, fileName);
 
             Map<String, String> response = new HashMap<>();
             response.put("fileName", fileName);
-            response.put("filePath", filePath);
+            response.put("filePath", BlobKeys.shardedPath(fileName));
             response.put("url", "/api/uploads/" + fileName);
 
             return ResponseEntity.ok(response);
@@ -49,41 +72,48 @@ public class FileUploadController {
         }
     }
 
+    /**
+     * @param w desired display width; the smallest generated variant at least that wide is
+     *          served instead of the original when one exists
+     */
     @GetMapping("/{fileName:.+}")
-    public ResponseEntity<Resource> serveFile(@PathVariable String fileName) {
-        try {
-            Path filePath = Paths.get(UPLOAD_DIR).resolve(fileName).normalize();
-            Resource resource = new UrlResource(filePath.toUri());
-
-            if (resource.exists()) {
-                return ResponseEntity.ok()
-                        .contentType(MediaType.IMAGE_JPEG)
-                        .body(resource);
-            } else {
-                return ResponseEntity.notFound().build();
+    public void serveFile(@PathVariable String fileName, @RequestParam(required = false) Integer w,
+                          HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String resolved = imageVariantService.resolve(fileName, w);
+        Path filePath;
+        if (BlobKeys.isBlobKey(resolved)) {
+            filePath = blobStore.localPath(resolved);
+        } else {
+            // Ảnh cũ (tên UUID) và các bản thu nhỏ nằm trực tiếp trong thư mục uploads
+            Path uploadRoot = Paths.get(UPLOAD_DIR).toAbsolutePath().normalize();
+            filePath = uploadRoot.resolve(resolved).normalize();
+            if (!filePath.startsWith(uploadRoot)) {
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
+                return;
             }
-        } catch (MalformedURLException ex) {
-            return ResponseEntity.badRequest().build();
         }
+        if (filePath == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        // Tên file sinh ngẫu nhiên không bao giờ được dùng lại, trừ khi ?w= đang tạm trả ảnh gốc
+        // vì bản thu nhỏ chưa sinh xong
+        boolean immutable = IMMUTABLE_NAME.matcher(resolved).matches()
+                && (w == null || !resolved.equals(fileName));
+        fileServingService.serve(filePath, immutable, request, response);
     }
 
+    /**
+     * Gỡ ảnh khỏi mọi phòng đang dùng nó; file được UploadCleanupJob xóa sau thời gian chờ
+     */
     @DeleteMapping("/{fileName}")
+    @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<?> deleteRoomPhoto(@PathVariable String fileName) {
-        try {
-            FileUploadUtil.deleteFile(UPLOAD_DIR + "/" + fileName);
-            Map<String, String> response = new HashMap<>();
-            response.put("message", "File deleted successfully");
-            return ResponseEntity.ok(response);
-        } catch (IOException e) {
-            Map<String, String> response = new HashMap<>();
-            response.put("error", "Failed to delete file: " + e.getMessage());
-            return ResponseEntity.badRequest().body(response);
-        }
-    }
-
-    private String getFileExtension(String filename) {
-        if (filename == null) return "";
-        int lastDotIndex = filename.lastIndexOf('.');
-        return lastDotIndex == -1 ? "" : filename.substring(lastDotIndex);
+        int removed = roomService.removeImageFromRooms(fileName);
+        Map<String, Object> response = new HashMap<>();
+        response.put("message", "File deleted successfully");
+        response.put("removedFromRooms", removed);
+        return ResponseEntity.ok(response);
     }
 }
\ No newline at end of file
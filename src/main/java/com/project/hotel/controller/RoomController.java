@@ -1,16 +1,24 @@
 package com.project.hotel.controller;
 
+import com.project.hotel.dto.AvailabilityCalendarDTO;
+import com.project.hotel.dto.BatchItemDTO;
 import com.project.hotel.dto.RoomDTO;
+import com.project.hotel.service.AvailabilityStreamService;
 import com.project.hotel.service.RoomService;
 import com.project.hotel.service.BookingService;
+import com.project.hotel.service.ImageUploadService;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
@@ -23,6 +31,8 @@ public class RoomController {
 
     private final RoomService roomService;
     private final BookingService bookingService;
+    private final ImageUploadService imageUploadService;
+    private final AvailabilityStreamService availabilityStreamService;
 
     @PostMapping
     @PreAuthorize("hasRole('ADMIN')")
@@ -38,26 +48,47 @@ public class RoomController {
         return ResponseEntity.ok(room);
     }
 
+    // fields=a,b,c: chỉ trả về (và chỉ truy vấn) các thuộc tính được yêu cầu
     @GetMapping
-    public ResponseEntity<List<RoomDTO>> getAllRooms() {
+    public ResponseEntity<?> getAllRooms(@RequestParam(required = false) String fields) {
+        if (fields != null) {
+            return ResponseEntity.ok(roomService.getRoomFields(fields, null, null, null));
+        }
         List<RoomDTO> rooms = roomService.getAllRooms();
         return ResponseEntity.ok(rooms);
     }
 
+    @GetMapping(params = "ids")
+    public ResponseEntity<List<BatchItemDTO<RoomDTO>>> getRoomsByIds(@RequestParam List<Long> ids) {
+        List<BatchItemDTO<RoomDTO>> rooms = roomService.getRoomsByIds(ids);
+        return ResponseEntity.ok(rooms);
+    }
+
     @GetMapping("/available")
-    public ResponseEntity<List<RoomDTO>> getAvailableRooms() {
+    public ResponseEntity<?> getAvailableRooms(@RequestParam(required = false) String fields) {
+        if (fields != null) {
+            return ResponseEntity.ok(roomService.getRoomFields(fields, true, null, null));
+        }
         List<RoomDTO> rooms = roomService.getAvailableRooms();
         return ResponseEntity.ok(rooms);
     }
 
     @GetMapping("/type/{roomType}")
-    public ResponseEntity<List<RoomDTO>> getRoomsByType(@PathVariable String roomType) {
+    public ResponseEntity<?> getRoomsByType(@PathVariable String roomType,
+                                            @RequestParam(required = false) String fields) {
+        if (fields != null) {
+            return ResponseEntity.ok(roomService.getRoomFields(fields, null, roomType, null));
+        }
         List<RoomDTO> rooms = roomService.getRoomsByType(roomType);
         return ResponseEntity.ok(rooms);
     }
 
     @GetMapping("/amenities")
-    public ResponseEntity<List<RoomDTO>> getRoomsByAmenities(@RequestParam List<String> amenities) {
+    public ResponseEntity<?> getRoomsByAmenities(@RequestParam List<String> amenities,
+                                                 @RequestParam(required = false) String fields) {
+        if (fields != null) {
+            return ResponseEntity.ok(roomService.getRoomFields(fields, null, null, amenities));
+        }
         List<RoomDTO> rooms = roomService.getRoomsBySelectedAmenities(amenities);
         return ResponseEntity.ok(rooms);
     }
@@ -103,8 +134,10 @@ public class RoomController {
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<RoomDTO> addRoomImage(
             @PathVariable Long id,
-            @RequestParam("file") MultipartFile file) {
-        RoomDTO updatedRoom = roomService.addRoomImage(id, file);
+            HttpServletRequest request) throws IOException {
+        // Kiểm tra phòng tồn tại trước khi nhận file
+        roomService.findRoomEntityById(id);
+        RoomDTO updatedRoom = roomService.addRoomImage(id, imageUploadService.receive(request));
         return ResponseEntity.ok(updatedRoom);
     }
 
@@ -123,6 +156,31 @@ public class RoomController {
         return ResponseEntity.ok(images);
     }
 
+    // Lưới phòng × đêm cho lịch đặt phòng, trong một request
+    @GetMapping("/calendar")
+    public ResponseEntity<AvailabilityCalendarDTO> getAvailabilityCalendar(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) String type,
+            @RequestParam(required = false) String encoding) {
+        AvailabilityCalendarDTO calendar = bookingService.getAvailabilityCalendar(from, to, type, encoding);
+        return ResponseEntity.ok(calendar);
+    }
+
+    // Server-Sent Events: đẩy thay đổi tình trạng phòng thay vì polling /{id}/availability
+    @GetMapping(value = "/availability/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamAvailability(
+            @RequestParam(required = false) Long roomId,
+            @RequestParam(required = false) String roomType,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            HttpServletRequest request) {
+        if (roomId != null) {
+            roomService.findRoomEntityById(roomId);
+        }
+        return availabilityStreamService.subscribe(roomId, roomType, from, to, request.getRemoteAddr());
+    }
+
     @GetMapping("/{id}/availability")
     public ResponseEntity<Map<String, Boolean>> checkRoomAvailability(
             @PathVariable Long id,
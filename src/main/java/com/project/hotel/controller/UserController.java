@@ -1,17 +1,25 @@
 package com.project.hotel.controller;
 
+import com.project.hotel.constant.UserRole;
 import com.project.hotel.dto.UserDTO;
+import com.project.hotel.dto.UserImportReportDTO;
+import com.project.hotel.dto.UserPageDTO;
+import com.project.hotel.exception.BadRequestException;
+import com.project.hotel.security.JwtUserPrincipal;
+import com.project.hotel.service.UserImportService;
 import com.project.hotel.service.UserService;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.util.List;
+import java.util.Locale;
 
 @RestController
 @RequestMapping("/api/users")
@@ -19,10 +27,12 @@ import java.util.List;
 public class UserController {
 
     private final UserService userService;
+    private final UserImportService userImportService;
 
     @Autowired
-    public UserController(UserService userService) {
+    public UserController(UserService userService, UserImportService userImportService) {
         this.userService = userService;
+        this.userImportService = userImportService;
     }
 
     @PostMapping
@@ -32,19 +42,30 @@ public class UserController {
         return new ResponseEntity<>(createdUser, HttpStatus.CREATED);
     }
 
+    /**
+     * Bulk import; the request body is the raw CSV or NDJSON file, read as a stream.
+     * Format comes from {@code format} or the Content-Type (text/csv, application/x-ndjson).
+     */
+    @PostMapping("/import")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<UserImportReportDTO> importUsers(@RequestParam(required = false) String format,
+            HttpServletRequest request) throws IOException {
+        UserImportService.Format importFormat = resolveImportFormat(format, request.getContentType());
+        return ResponseEntity.ok(userImportService.importUsers(request.getInputStream(), importFormat));
+    }
+
     @GetMapping("/{id}")
     @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
     public ResponseEntity<UserDTO> getUserById(@PathVariable Long id,
-            @AuthenticationPrincipal UserDetails userDetails) {
+            @AuthenticationPrincipal JwtUserPrincipal principal) {
         // Admin can view any profile
-        if (userDetails.getAuthorities().stream().anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN"))) {
+        if (principal.isAdmin()) {
             UserDTO user = userService.getUserById(id);
             return ResponseEntity.ok(user);
         }
 
         // Regular user can only view their own profile
-        UserDTO authenticatedUser = userService.getUserByEmail(userDetails.getUsername());
-        if (authenticatedUser != null && id.equals(authenticatedUser.getId())) {
+        if (id.equals(principal.getId())) {
             UserDTO user = userService.getUserById(id);
             return ResponseEntity.ok(user);
         } else {
@@ -66,18 +87,26 @@ public class UserController {
         return ResponseEntity.ok(users);
     }
 
+    @GetMapping("/search")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<UserPageDTO> searchUsers(@RequestParam(required = false) String q,
+            @RequestParam(required = false) UserRole role,
+            @RequestParam(defaultValue = "0") long afterId,
+            @RequestParam(defaultValue = "50") int limit) {
+        return ResponseEntity.ok(userService.searchUsers(q, role, afterId, Math.min(Math.max(limit, 1), 200)));
+    }
+
     @PutMapping("/{id}")
     @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
     public ResponseEntity<UserDTO> updateUser(@PathVariable Long id, @Valid @RequestBody UserDTO userDTO,
-            @AuthenticationPrincipal UserDetails userDetails) {
+            @AuthenticationPrincipal JwtUserPrincipal principal) {
 
-        if (!userDetails.getAuthorities().stream().anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN"))
-                && !id.toString().equals(userDetails.getUsername())) {
+        if (!principal.isAdmin() && !id.equals(principal.getId())) {
             return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
         }
 
 
-        if (!userDetails.getAuthorities().stream().anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN"))) {
+        if (!principal.isAdmin()) {
             UserDTO existingUser = userService.getUserById(id);
             userDTO.setRole(existingUser.getRole());
         }
@@ -92,4 +121,15 @@ public class UserController {
         userService.deleteUser(id);
         return ResponseEntity.noContent().build();
     }
-}
\ No newline at end of file
+
+    private static UserImportService.Format resolveImportFormat(String format, String contentType) {
+        String hint = (format != null ? format : contentType != null ? contentType : "").toLowerCase(Locale.ROOT);
+        if (hint.contains("csv")) {
+            return UserImportService.Format.CSV;
+        }
+        if (hint.contains("ndjson") || hint.contains("jsonl") || hint.contains("json")) {
+            return UserImportService.Format.NDJSON;
+        }
+        throw new BadRequestException("Unsupported import format, use CSV or NDJSON");
+    }
+}
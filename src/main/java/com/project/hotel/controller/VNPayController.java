@@ -3,6 +3,7 @@ package com.project.hotel.controller;
 import com.project.hotel.entity.Booking;
 import com.project.hotel.entity.Payment;
 import com.project.hotel.service.BookingService;
+import com.project.hotel.service.VNPayIpnService;
 import com.project.hotel.service.VNPayService;
 import com.project.hotel.dto.VNPayResponseDTO;
 import jakarta.servlet.http.HttpServletRequest;
@@ -22,6 +23,7 @@ public class VNPayController {
 
   private final VNPayService vnPayService;
   private final BookingService bookingService;
+  private final VNPayIpnService vnPayIpnService;
 
   @PostMapping("/create-payment/{bookingId}")
   public ResponseEntity<String> createPayment(@PathVariable Long bookingId, HttpServletRequest request) {
@@ -90,6 +92,15 @@ public class VNPayController {
     }
   }
 
+  /**
+   * Server-to-server notification from VNPay. Answers immediately; the payment is
+   * applied by the IPN workers.
+   */
+  @GetMapping("/ipn")
+  public ResponseEntity<Map<String, String>> paymentIpn(@RequestParam Map<String, String> vnpParams) {
+    return ResponseEntity.ok(vnPayIpnService.handleIpn(vnpParams));
+  }
+
   private boolean validateVNPayParams(Map<String, String> params) {
     return params != null &&
         params.containsKey("vnp_ResponseCode") &&
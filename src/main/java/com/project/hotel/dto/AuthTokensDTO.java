@@ -0,0 +1,14 @@
+package com.project.hotel.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AuthTokensDTO {
+    private String token;
+    private String refreshToken;
+    private long expiresIn; // milliseconds until the access token expires
+}
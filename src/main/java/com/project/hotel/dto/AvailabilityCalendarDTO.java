@@ -0,0 +1,39 @@
+package com.project.hotel.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rooms × nights grid for {@code [from, to)}; night {@code i} is {@code from + i days}.
+ * <ul>
+ * <li>{@code bitmap}: {@code booked} is base64 of {@code ceil(days / 8)} bytes, bit
+ * {@code i % 8} (least significant first) of byte {@code i / 8} set when night {@code i} is taken</li>
+ * <li>{@code rle}: {@code booked} is comma-separated run lengths alternating free/taken,
+ * starting with free nights (so a fully free row is just {@code "days"})</li>
+ * </ul>
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AvailabilityCalendarDTO {
+    private LocalDate from;
+    private LocalDate to;
+    private int days;
+    private String encoding;
+    private List<RoomRow> rooms = new ArrayList<>();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class RoomRow {
+        private Long roomId;
+        private String roomNumber;
+        private String roomType;
+        private String booked;
+    }
+}
@@ -0,0 +1,16 @@
+package com.project.hotel.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchGetRequestDTO {
+    @NotEmpty(message = "At least one id is required")
+    private List<Long> ids;
+}
@@ -0,0 +1,18 @@
+package com.project.hotel.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One entry of a batch read, in the position of its id in the request; {@code data} is
+ * null when {@code found} is false.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchItemDTO<T> {
+    private Long id;
+    private boolean found;
+    private T data;
+}
@@ -0,0 +1,20 @@
+package com.project.hotel.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaymentTransitionDTO {
+    private Long id;
+    private Long paymentId;
+    private String fromStatus;
+    private String toStatus;
+    private String source;
+    private String detail;
+    private LocalDateTime createdAt;
+}
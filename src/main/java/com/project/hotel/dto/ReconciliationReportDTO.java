@@ -0,0 +1,39 @@
+package com.project.hotel.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReconciliationReportDTO {
+    private LocalDateTime from;
+    private LocalDateTime to;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private int checked;
+    private int matched;
+    private int corrected;
+    private int mismatched;
+    private int pending;
+    private int errors;
+    // Chỉ liệt kê các giao dịch không khớp hoặc đã được điều chỉnh
+    private List<Entry> entries = new ArrayList<>();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Entry {
+        private Long paymentId;
+        private String txnRef;
+        private String localStatus;
+        private String gatewayStatus;
+        private String action;
+        private String message;
+    }
+}
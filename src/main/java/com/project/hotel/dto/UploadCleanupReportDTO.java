@@ -0,0 +1,35 @@
+package com.project.hotel.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadCleanupReportDTO {
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private int filesScanned;
+    private int quarantined;
+    private int restored;
+    private int purged;
+    private int blobsDeleted;
+    private int variantsDeleted;
+    private int danglingReferences;
+    private int errors;
+    // Ảnh phòng trỏ tới file không còn tồn tại (giới hạn số dòng liệt kê)
+    private List<DanglingReference> dangling = new ArrayList<>();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class DanglingReference {
+        private Long roomId;
+        private String imageUrl;
+    }
+}
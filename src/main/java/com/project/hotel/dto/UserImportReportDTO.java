@@ -0,0 +1,33 @@
+package com.project.hotel.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserImportReportDTO {
+    private String format;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private long total;
+    private long imported;
+    private long failed;
+    // Danh sách lỗi bị cắt bớt khi quá dài; số dòng lỗi thực tế nằm ở "failed"
+    private boolean errorsTruncated;
+    private List<RowError> errors = new ArrayList<>();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class RowError {
+        private long line;
+        private String email;
+        private String message;
+    }
+}
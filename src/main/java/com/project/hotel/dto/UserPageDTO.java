@@ -0,0 +1,19 @@
+package com.project.hotel.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * One page of the admin user directory; pass {@code nextAfterId} back as {@code afterId}
+ * to fetch the next page, it is null on the last page.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserPageDTO {
+    private List<UserDTO> items;
+    private Long nextAfterId;
+}
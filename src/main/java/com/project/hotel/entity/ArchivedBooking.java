@@ -0,0 +1,73 @@
+package com.project.hotel.entity;
+
+import com.project.hotel.constant.BookingStatus;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Immutable;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Bản sao chỉ đọc của đơn đặt phòng đã được chuyển sang bảng lưu trữ
+ */
+@Entity
+@Immutable
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "bookings_archive")
+public class ArchivedBooking {
+
+    @Id
+    private Long id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "room_id", nullable = false)
+    private Long roomId;
+
+    @Column(name = "check_in_date", nullable = false)
+    private LocalDate checkInDate;
+
+    @Column(name = "check_out_date", nullable = false)
+    private LocalDate checkOutDate;
+
+    @Column(name = "total_price", nullable = false, precision = 10, scale = 2)
+    private BigDecimal totalPrice;
+
+    @Column(name = "booking_reference", nullable = false)
+    private String bookingReference;
+
+    @Column(name = "guest_full_name", nullable = false)
+    private String guestFullName;
+
+    @Column(name = "guest_email", nullable = false)
+    private String guestEmail;
+
+    @Column(name = "num_of_adults", nullable = false)
+    private Integer numOfAdults;
+
+    @Column(name = "num_of_children")
+    private Integer numOfChildren;
+
+    @Column(name = "total_num_of_guests", nullable = false)
+    private Integer numberOfGuests;
+
+    @Column(name = "special_requests", length = 500)
+    private String specialRequests;
+
+    @Column(name = "booking_date", nullable = false)
+    private LocalDateTime bookingDate;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false)
+    private BookingStatus status;
+
+    @Column(name = "archived_at", nullable = false)
+    private LocalDateTime archivedAt;
+}
@@ -30,6 +30,9 @@ public class Payment {
     @Column(name = "transaction_id", unique = true)
     private String transactionId;
 
+    @Column(name = "txn_ref", length = 64)
+    private String txnRef;
+
     @Enumerated(EnumType.STRING)
     @Column(nullable = false)
     private PaymentMethod method = PaymentMethod.VNPAY;
@@ -0,0 +1,14 @@
+package com.project.hotel.event;
+
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * Published once per unit of work (a single booking change or a whole batch chunk)
+ * with every room/date range whose availability changed.
+ */
+@Value
+public class AvailabilityChangedEvent {
+    List<AvailabilityDelta> deltas;
+}
@@ -0,0 +1,26 @@
+package com.project.hotel.event;
+
+import com.project.hotel.entity.Booking;
+import lombok.Value;
+
+import java.time.LocalDate;
+
+/**
+ * Thay đổi tình trạng trống của một phòng trong một khoảng ngày
+ */
+@Value
+public class AvailabilityDelta {
+    Long roomId;
+    String roomType;
+    LocalDate checkInDate;
+    LocalDate checkOutDate;
+    boolean available;
+
+    /**
+     * The booking's room and stay dates, which became taken ({@code available = false}) or free again.
+     */
+    public static AvailabilityDelta of(Booking booking, boolean available) {
+        return new AvailabilityDelta(booking.getRoom().getId(), booking.getRoom().getRoomType(),
+                booking.getCheckInDate(), booking.getCheckOutDate(), available);
+    }
+}
@@ -0,0 +1,11 @@
+package com.project.hotel.event;
+
+import lombok.Value;
+
+/**
+ * Published inside the cancelling transaction; the refund is only submitted after commit.
+ */
+@Value
+public class RefundRequestedEvent {
+    Long paymentId;
+}
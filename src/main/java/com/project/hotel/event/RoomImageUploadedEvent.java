@@ -0,0 +1,12 @@
+package com.project.hotel.event;
+
+import lombok.Value;
+
+/**
+ * Ảnh gốc đã được lưu; các bản thu nhỏ được sinh sau khi transaction commit
+ */
+@Value
+public class RoomImageUploadedEvent {
+    Long roomId;
+    String fileName;
+}
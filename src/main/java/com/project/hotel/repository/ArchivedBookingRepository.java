@@ -0,0 +1,37 @@
+package com.project.hotel.repository;
+
+import com.project.hotel.entity.ArchivedBooking;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface ArchivedBookingRepository extends JpaRepository<ArchivedBooking, Long> {
+
+    Optional<ArchivedBooking> findByBookingReference(String bookingReference);
+
+    List<ArchivedBooking> findByUserIdOrderByBookingDateDesc(Long userId);
+
+    @Modifying
+    @Query(value = "INSERT INTO bookings_archive (id, user_id, room_id, check_in_date, check_out_date, total_price, " +
+            "booking_reference, guest_full_name, guest_email, num_of_adults, num_of_children, total_num_of_guests, " +
+            "special_requests, created_at, updated_at, booking_date, status, archived_at) " +
+            "SELECT id, user_id, room_id, check_in_date, check_out_date, total_price, " +
+            "booking_reference, guest_full_name, guest_email, num_of_adults, num_of_children, total_num_of_guests, " +
+            "special_requests, created_at, updated_at, booking_date, status, NOW(6) " +
+            "FROM bookings WHERE id IN (:ids)", nativeQuery = true)
+    int copyBookings(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query(value = "INSERT INTO payments_archive (id, amount, payment_time, transaction_id, txn_ref, method, status, " +
+            "booking_id, archived_at) " +
+            "SELECT id, amount, payment_time, transaction_id, txn_ref, method, status, booking_id, NOW(6) " +
+            "FROM payments WHERE booking_id IN (:ids)", nativeQuery = true)
+    int copyPaymentsOfBookings(@Param("ids") Collection<Long> ids);
+}
@@ -0,0 +1,48 @@
+package com.project.hotel.repository;
+
+import com.project.hotel.entity.BlobRef;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface BlobRefRepository extends JpaRepository<BlobRef, String> {
+
+    /**
+     * Registers a newly stored blob, or adds {@code delta} references to an existing one.
+     * Takes the row lock until the surrounding transaction ends.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO blob_refs (blob_key, ref_count, size_bytes, content_type, created_at, updated_at) " +
+            "VALUES (:key, :delta, :size, :contentType, NOW(6), NOW(6)) " +
+            "ON DUPLICATE KEY UPDATE ref_count = ref_count + :delta, updated_at = NOW(6)", nativeQuery = true)
+    int register(@Param("key") String key, @Param("delta") int delta, @Param("size") long size,
+                 @Param("contentType") String contentType);
+
+    @Modifying
+    @Query(value = "UPDATE blob_refs SET ref_count = ref_count + 1, updated_at = NOW(6) WHERE blob_key = :key",
+            nativeQuery = true)
+    int addReference(@Param("key") String key);
+
+    @Modifying
+    @Query(value = "UPDATE blob_refs SET ref_count = ref_count - 1, updated_at = NOW(6) " +
+            "WHERE blob_key = :key AND ref_count > 0", nativeQuery = true)
+    int releaseReference(@Param("key") String key);
+
+    @Query(value = "SELECT ref_count FROM blob_refs WHERE blob_key = :key FOR UPDATE", nativeQuery = true)
+    Integer lockRefCount(@Param("key") String key);
+
+    @Query(value = "SELECT blob_key FROM blob_refs WHERE ref_count = 0 AND updated_at < :cutoff ORDER BY updated_at",
+            nativeQuery = true)
+    List<String> findUnreferencedKeys(@Param("cutoff") LocalDateTime cutoff, Pageable pageable);
+
+    @Query(value = "SELECT blob_key FROM blob_refs WHERE blob_key IN (:keys)", nativeQuery = true)
+    List<String> findExistingKeys(@Param("keys") Collection<String> keys);
+}
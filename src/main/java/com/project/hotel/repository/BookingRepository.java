@@ -1,17 +1,22 @@
 package com.project.hotel.repository;
 
 import com.project.hotel.constant.BookingStatus;
+import com.project.hotel.constant.PaymentStatus;
 import com.project.hotel.entity.Booking;
 import com.project.hotel.entity.Room;
 import com.project.hotel.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import jakarta.persistence.LockModeType;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -52,4 +57,58 @@ public interface BookingRepository extends JpaRepository<Booking, Long> {
     List<Booking> findBookingsWithCheckInOrCheckOutInRange(
             @Param("startDate") LocalDate startDate,
             @Param("endDate") LocalDate endDate);
-}
\ No newline at end of file
+
+    @Query("SELECT b.id FROM Booking b WHERE b.status IN :statuses AND b.checkOutDate < :horizon " +
+            "AND NOT EXISTS (SELECT p.id FROM Payment p WHERE p.booking = b AND p.status IN :openPaymentStatuses) " +
+            "ORDER BY b.id")
+    List<Long> findArchivableIds(
+            @Param("statuses") Collection<BookingStatus> statuses,
+            @Param("openPaymentStatuses") Collection<PaymentStatus> openPaymentStatuses,
+            @Param("horizon") LocalDate horizon,
+            Pageable pageable);
+
+    @Modifying
+    @Query(value = "DELETE FROM bookings WHERE id IN (:ids)", nativeQuery = true)
+    int deleteAllByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT b.id AS id, b.room.id AS roomId, b.room.roomType AS roomType, " +
+            "b.checkInDate AS checkInDate, b.checkOutDate AS checkOutDate " +
+            "FROM Booking b WHERE b.status = :status AND b.checkOutDate < :date ORDER BY b.id")
+    List<StayView> findStaysByStatusAndCheckOutDateBefore(
+            @Param("status") BookingStatus status,
+            @Param("date") LocalDate date,
+            Pageable pageable);
+
+    /**
+     * Stays in the given statuses with at least one night in {@code [from, to)}.
+     */
+    @Query("SELECT b.id AS id, b.room.id AS roomId, b.room.roomType AS roomType, " +
+            "b.checkInDate AS checkInDate, b.checkOutDate AS checkOutDate " +
+            "FROM Booking b WHERE b.status IN :statuses AND b.checkOutDate > :from AND b.checkInDate < :to " +
+            "AND (:roomType IS NULL OR b.room.roomType = :roomType)")
+    List<StayView> findStaysOverlapping(
+            @Param("statuses") Collection<BookingStatus> statuses,
+            @Param("from") LocalDate from,
+            @Param("to") LocalDate to,
+            @Param("roomType") String roomType);
+
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Booking b SET b.status = :to, b.updatedAt = :now WHERE b.id IN :ids AND b.status = :from")
+    int updateStatusByIdIn(
+            @Param("ids") Collection<Long> ids,
+            @Param("from") BookingStatus from,
+            @Param("to") BookingStatus to,
+            @Param("now") LocalDateTime now);
+
+    interface StayView {
+        Long getId();
+
+        Long getRoomId();
+
+        String getRoomType();
+
+        LocalDate getCheckInDate();
+
+        LocalDate getCheckOutDate();
+    }
+}
@@ -0,0 +1,52 @@
+package com.project.hotel.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.TypedQuery;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+
+/**
+ * Selects only the requested attributes of an entity, for the {@code fields=} parameter
+ * of list endpoints. Attribute paths and conditions come from the services' fixed
+ * whitelists, never from the request; values are always bound as parameters.
+ */
+@Repository
+public class FieldProjectionRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * @param entity  JPQL entity name, aliased as {@code e}
+     * @param columns output name to attribute path (e.g. {@code "userId" -> "user.id"}), in output order
+     * @param where   JPQL condition on {@code e}, or null
+     */
+    public List<Map<String, Object>> select(String entity, Map<String, String> columns, String where,
+                                            Map<String, Object> parameters) {
+        StringJoiner select = new StringJoiner(", ");
+        columns.values().forEach(path -> select.add("e." + path));
+        String jpql = "SELECT " + select + " FROM " + entity + " e"
+                + (where != null ? " WHERE " + where : "") + " ORDER BY e.id";
+
+        TypedQuery<Tuple> query = entityManager.createQuery(jpql, Tuple.class);
+        parameters.forEach(query::setParameter);
+
+        List<String> names = new ArrayList<>(columns.keySet());
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (Tuple tuple : query.getResultList()) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            for (int i = 0; i < names.size(); i++) {
+                row.put(names.get(i), tuple.get(i));
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+}
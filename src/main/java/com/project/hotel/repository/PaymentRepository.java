@@ -1,10 +1,18 @@
 package com.project.hotel.repository;
 
+import com.project.hotel.constant.PaymentStatus;
 import com.project.hotel.entity.Booking;
 import com.project.hotel.entity.Payment;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -15,9 +23,47 @@ public interface PaymentRepository extends JpaRepository<Payment, Long> {
 
     Optional<Payment> findByTransactionId(String transactionId);
 
+    List<Payment> findByTransactionIdIn(Collection<String> transactionIds);
+
     List<Payment> findByStatus(String status);
 
     List<Payment> findByMethod(String method);
 
     Optional<Payment> findByBookingId(Long bookingId);
+
+    List<Payment> findByBookingIdInAndStatus(Collection<Long> bookingIds, PaymentStatus status);
+
+    @Modifying
+    @Query(value = "DELETE FROM payments WHERE booking_id IN (:bookingIds)", nativeQuery = true)
+    int deleteAllByBookingIdIn(@Param("bookingIds") Collection<Long> bookingIds);
+
+    @Query("SELECT p.id FROM Payment p WHERE p.status = :status ORDER BY p.id")
+    List<Long> findIdsByStatus(@Param("status") PaymentStatus status, Pageable pageable);
+
+    @Modifying
+    @Query("UPDATE Payment p SET p.status = :to WHERE p.id = :id AND p.status = :from")
+    int updateStatusIfCurrent(@Param("id") Long id, @Param("from") PaymentStatus from, @Param("to") PaymentStatus to);
+
+    @Query("SELECT p.id AS id, p.txnRef AS txnRef, p.transactionId AS transactionId, p.status AS status, " +
+            "p.amount AS amount FROM Payment p " +
+            "WHERE p.status IN :statuses AND p.txnRef IS NOT NULL " +
+            "AND p.paymentTime >= :from AND p.paymentTime < :to AND p.id > :afterId ORDER BY p.id")
+    List<ReconciliationView> findReconciliationPage(
+            @Param("statuses") Collection<PaymentStatus> statuses,
+            @Param("from") LocalDateTime from,
+            @Param("to") LocalDateTime to,
+            @Param("afterId") Long afterId,
+            Pageable pageable);
+
+    interface ReconciliationView {
+        Long getId();
+
+        String getTxnRef();
+
+        String getTransactionId();
+
+        PaymentStatus getStatus();
+
+        BigDecimal getAmount();
+    }
 }
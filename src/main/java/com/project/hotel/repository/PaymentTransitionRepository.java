@@ -0,0 +1,16 @@
+package com.project.hotel.repository;
+
+import com.project.hotel.entity.PaymentTransition;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface PaymentTransitionRepository extends JpaRepository<PaymentTransition, Long> {
+
+    List<PaymentTransition> findByPaymentIdOrderByIdAsc(Long paymentId);
+
+    List<PaymentTransition> findByIdGreaterThanOrderByIdAsc(Long afterId, Pageable pageable);
+}
@@ -0,0 +1,55 @@
+package com.project.hotel.repository;
+
+import com.project.hotel.entity.RoomImageVariant;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface RoomImageVariantRepository extends JpaRepository<RoomImageVariant, Long> {
+
+    List<RoomImageVariant> findBySourceFileOrderByWidthAsc(String sourceFile);
+
+    boolean existsBySourceFile(String sourceFile);
+
+    /**
+     * Room photos that have no variants yet (uploaded before the pipeline existed, or
+     * dropped because the worker queue was full).
+     */
+    @Query(value = "SELECT ri.room_id AS roomId, ri.image_url AS imageUrl FROM room_images ri " +
+            "WHERE ri.image_url IS NOT NULL AND NOT EXISTS (SELECT 1 FROM room_image_variants v " +
+            "WHERE v.source_file = SUBSTRING_INDEX(ri.image_url, '/', -1))", nativeQuery = true)
+    List<MissingVariantsView> findImagesWithoutVariants(Pageable pageable);
+
+    @Query(value = "SELECT file_name FROM room_image_variants WHERE file_name IN (:fileNames)", nativeQuery = true)
+    List<String> findExistingFileNames(@Param("fileNames") Collection<String> fileNames);
+
+    /**
+     * Variants whose original is no longer shown by any room (room deleted, photo removed,
+     * or an upload that was never attached).
+     */
+    @Query(value = "SELECT v.id AS id, v.source_file AS sourceFile, v.file_name AS fileName FROM room_image_variants v " +
+            "WHERE v.created_at < :cutoff " +
+            "AND NOT EXISTS (SELECT 1 FROM room_images ri WHERE ri.file_name = v.source_file)", nativeQuery = true)
+    List<OrphanedVariantView> findOrphaned(@Param("cutoff") LocalDateTime cutoff, Pageable pageable);
+
+    interface OrphanedVariantView {
+        Long getId();
+
+        String getSourceFile();
+
+        String getFileName();
+    }
+
+    interface MissingVariantsView {
+        Long getRoomId();
+
+        String getImageUrl();
+    }
+}
@@ -1,11 +1,15 @@
 package com.project.hotel.repository;
 
 import com.project.hotel.entity.Room;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -16,7 +20,17 @@ public interface RoomRepository extends JpaRepository<Room, Long> {
 
     Room findByRoomNumber(String roomNumber);
 
-
+    /**
+     * Marks the given rooms available again unless they still hold an active booking
+     * that has not checked out yet.
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Room r SET r.isAvailable = true WHERE r.id IN :ids AND NOT EXISTS (" +
+            "SELECT 1 FROM Booking b WHERE b.room = r " +
+            "AND b.status IN (com.project.hotel.constant.BookingStatus.PENDING, " +
+            "com.project.hotel.constant.BookingStatus.CONFIRMED) " +
+            "AND b.checkOutDate >= :today)")
+    int releaseRooms(@Param("ids") Collection<Long> ids, @Param("today") LocalDate today);
 
     @Query(value = "SELECT DISTINCT r.* FROM rooms r " +
             "JOIN room_amenities ra ON r.id = ra.room_id " +
@@ -24,4 +38,49 @@ public interface RoomRepository extends JpaRepository<Room, Long> {
             "GROUP BY r.id " +
             "HAVING COUNT(DISTINCT ra.amenity) = :size", nativeQuery = true)
     List<Room> findBySelectedAmenities(@Param("amenities") List<String> amenities, @Param("size") int size);
+
+    @Query(value = "SELECT DISTINCT r.* FROM rooms r JOIN room_images ri ON ri.room_id = r.id " +
+            "WHERE ri.file_name = :fileName", nativeQuery = true)
+    List<Room> findByImageFileName(@Param("fileName") String fileName);
+
+    /**
+     * Which of the given stored file names are used by at least one room.
+     */
+    @Query(value = "SELECT DISTINCT file_name FROM room_images WHERE file_name IN (:fileNames)", nativeQuery = true)
+    List<String> findReferencedFileNames(@Param("fileNames") Collection<String> fileNames);
+
+    @Query("SELECT r.id FROM Room r WHERE r.id > :afterId ORDER BY r.id")
+    List<Long> findIdsAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    @Query(value = "SELECT room_id AS roomId, image_url AS imageUrl FROM room_images WHERE room_id IN (:roomIds)",
+            nativeQuery = true)
+    List<RoomImageView> findImagesByRoomIds(@Param("roomIds") Collection<Long> roomIds);
+
+    @Query(value = "SELECT room_id AS roomId, amenity AS amenity FROM room_amenities WHERE room_id IN (:roomIds)",
+            nativeQuery = true)
+    List<RoomAmenityView> findAmenitiesByRoomIds(@Param("roomIds") Collection<Long> roomIds);
+
+    @Query("SELECT r.id AS id, r.roomNumber AS roomNumber, r.roomType AS roomType FROM Room r " +
+            "WHERE (:roomType IS NULL OR r.roomType = :roomType) ORDER BY r.roomNumber")
+    List<RoomSummaryView> findSummaries(@Param("roomType") String roomType);
+
+    interface RoomSummaryView {
+        Long getId();
+
+        String getRoomNumber();
+
+        String getRoomType();
+    }
+
+    interface RoomImageView {
+        Long getRoomId();
+
+        String getImageUrl();
+    }
+
+    interface RoomAmenityView {
+        Long getRoomId();
+
+        String getAmenity();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,21 @@
+package com.project.hotel.repository;
+
+import com.project.hotel.entity.TokenRevocation;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface TokenRevocationRepository extends JpaRepository<TokenRevocation, Long> {
+
+    List<TokenRevocation> findByIdGreaterThanAndExpiresAtAfterOrderById(Long afterId, LocalDateTime now);
+
+    @Modifying
+    @Query("DELETE FROM TokenRevocation t WHERE t.expiresAt <= :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+}
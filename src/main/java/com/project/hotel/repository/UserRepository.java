@@ -1,9 +1,15 @@
 package com.project.hotel.repository;
 
+import com.project.hotel.constant.UserRole;
 import com.project.hotel.entity.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -11,4 +17,27 @@ public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByEmail(String email);
 
     Boolean existsByEmail(String email);
-}
\ No newline at end of file
+
+    @Query("SELECT u.email FROM User u WHERE u.email IN :emails")
+    List<String> findExistingEmails(@Param("emails") Collection<String> emails);
+
+    @Query("SELECT u.phoneNumber FROM User u WHERE u.phoneNumber IN :phoneNumbers")
+    List<String> findExistingPhoneNumbers(@Param("phoneNumbers") Collection<String> phoneNumbers);
+
+    @Query("SELECT u FROM User u WHERE u.role IN :roles AND u.id > :afterId ORDER BY u.id")
+    List<User> findPage(@Param("roles") Collection<UserRole> roles,
+                        @Param("afterId") Long afterId,
+                        Pageable pageable);
+
+    /**
+     * Prefix match on any of the searchable columns. Each LIKE has no leading wildcard so
+     * MySQL can merge the per-column index ranges; the default collation makes it case-insensitive.
+     */
+    @Query("SELECT u FROM User u WHERE u.role IN :roles AND u.id > :afterId AND (" +
+            "u.email LIKE :prefix ESCAPE '!' OR u.firstName LIKE :prefix ESCAPE '!' " +
+            "OR u.lastName LIKE :prefix ESCAPE '!' OR u.phoneNumber LIKE :prefix ESCAPE '!') ORDER BY u.id")
+    List<User> searchPage(@Param("roles") Collection<UserRole> roles,
+                          @Param("prefix") String prefix,
+                          @Param("afterId") Long afterId,
+                          Pageable pageable);
+}
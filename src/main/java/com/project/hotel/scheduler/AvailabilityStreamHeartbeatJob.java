@@ -0,0 +1,27 @@
+package com.project.hotel.scheduler;
+
+import com.project.hotel.service.AvailabilityStreamService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Giữ các kết nối SSE qua proxy/load balancer và phát hiện client đã ngắt kết nối
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AvailabilityStreamHeartbeatJob {
+
+    private final AvailabilityStreamService availabilityStreamService;
+
+    @Scheduled(fixedDelayString = "${app.availability-stream.heartbeat-interval-ms:15000}")
+    public void sendHeartbeats() {
+        try {
+            availabilityStreamService.sendHeartbeats();
+        } catch (Exception e) {
+            log.error("Availability stream heartbeat failed: {}", e.getMessage(), e);
+        }
+    }
+}
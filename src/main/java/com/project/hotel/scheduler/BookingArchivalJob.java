@@ -0,0 +1,60 @@
+package com.project.hotel.scheduler;
+
+import com.project.hotel.service.BookingArchiveService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+
+/**
+ * Định kỳ chuyển các đơn đặt phòng đã kết thúc sang bảng lưu trữ theo từng lô nhỏ
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class BookingArchivalJob {
+
+    private final BookingArchiveService bookingArchiveService;
+
+    @Value("${app.archive.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.archive.horizon-days:180}")
+    private int horizonDays;
+
+    @Value("${app.archive.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${app.archive.max-chunks-per-run:1000}")
+    private int maxChunksPerRun;
+
+    @Scheduled(cron = "${app.archive.cron:0 30 2 * * *}")
+    public void archiveFinishedBookings() {
+        if (!enabled) {
+            return;
+        }
+
+        LocalDate horizon = LocalDate.now().minusDays(horizonDays);
+        long started = System.currentTimeMillis();
+        int total = 0;
+        int chunks = 0;
+
+        // Each chunk commits on its own so locks are short and a failure only loses one chunk
+        while (chunks < maxChunksPerRun) {
+            int archived = bookingArchiveService.archiveChunk(horizon, chunkSize);
+            total += archived;
+            chunks++;
+            if (archived < chunkSize) {
+                break;
+            }
+        }
+
+        if (total > 0) {
+            log.info("Archived {} bookings older than {} in {} chunks ({} ms)",
+                    total, horizon, chunks, System.currentTimeMillis() - started);
+        }
+    }
+}
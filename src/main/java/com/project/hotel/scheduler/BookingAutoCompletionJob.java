@@ -0,0 +1,56 @@
+package com.project.hotel.scheduler;
+
+import com.project.hotel.service.BookingService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+
+/**
+ * Tự động hoàn thành các đơn đã xác nhận sau ngày trả phòng
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class BookingAutoCompletionJob {
+
+    private final BookingService bookingService;
+
+    @Value("${app.auto-complete.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.auto-complete.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${app.auto-complete.max-chunks-per-run:1000}")
+    private int maxChunksPerRun;
+
+    @Scheduled(cron = "${app.auto-complete.cron:0 5 * * * *}")
+    public void completeCheckedOutBookings() {
+        if (!enabled) {
+            return;
+        }
+
+        LocalDate today = LocalDate.now();
+        long started = System.currentTimeMillis();
+        int total = 0;
+        int chunks = 0;
+
+        while (chunks < maxChunksPerRun) {
+            int completed = bookingService.completeCheckedOutBookings(today, chunkSize);
+            total += completed;
+            chunks++;
+            if (completed < chunkSize) {
+                break;
+            }
+        }
+
+        if (total > 0) {
+            log.info("Auto-completed {} bookings checked out before {} in {} chunks ({} ms)",
+                    total, today, chunks, System.currentTimeMillis() - started);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.project.hotel.scheduler;
+
+import com.project.hotel.service.ImageVariantService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Sinh ảnh thu nhỏ cho các ảnh phòng chưa có (ảnh cũ, hàng đợi đầy, khởi động lại giữa chừng)
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ImageVariantBackfillJob {
+
+    private final ImageVariantService imageVariantService;
+
+    @Value("${app.image-variants.backfill-batch-size:100}")
+    private int batchSize;
+
+    @Scheduled(initialDelayString = "${app.image-variants.backfill-initial-delay-ms:60000}",
+            fixedDelayString = "${app.image-variants.backfill-interval-ms:600000}")
+    public void backfillVariants() {
+        try {
+            imageVariantService.backfill(batchSize);
+        } catch (Exception e) {
+            log.error("Image variant backfill failed: {}", e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.project.hotel.scheduler;
+
+import com.project.hotel.service.PaymentReconciliationService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Đối soát hằng đêm các giao dịch VNPay trong khoảng thời gian gần đây
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PaymentReconciliationJob {
+
+    private final PaymentReconciliationService paymentReconciliationService;
+
+    @Value("${app.reconciliation.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.reconciliation.lookback-days:3}")
+    private int lookbackDays;
+
+    @Scheduled(cron = "${app.reconciliation.cron:0 0 3 * * *}")
+    public void reconcileRecentPayments() {
+        if (!enabled) {
+            return;
+        }
+        LocalDateTime to = LocalDate.now().atStartOfDay();
+        LocalDateTime from = to.minusDays(lookbackDays);
+        try {
+            paymentReconciliationService.reconcile(from, to);
+        } catch (Exception e) {
+            log.error("Payment reconciliation for {} - {} failed: {}", from, to, e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.project.hotel.scheduler;
+
+import com.project.hotel.service.RefundService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Đưa lại vào hàng đợi các giao dịch còn ở trạng thái REFUND_PENDING (sau khi khởi động lại, lỗi bất ngờ)
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RefundSweepJob {
+
+    private final RefundService refundService;
+
+    @Value("${app.refund.sweep-batch-size:500}")
+    private int batchSize;
+
+    @Scheduled(initialDelayString = "${app.refund.sweep-initial-delay-ms:60000}",
+            fixedDelayString = "${app.refund.sweep-interval-ms:300000}")
+    public void resumePendingRefunds() {
+        try {
+            refundService.resumePending(batchSize);
+        } catch (Exception e) {
+            log.error("Resuming pending refunds failed: {}", e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.project.hotel.scheduler;
+
+import com.project.hotel.security.JwtTokenProvider;
+import com.project.hotel.security.TokenRevocationStore;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Xóa các bản ghi thu hồi của token đã hết hạn
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TokenRevocationPurgeJob {
+
+    private final TokenRevocationStore revocationStore;
+    private final JwtTokenProvider tokenProvider;
+
+    @Scheduled(cron = "${app.jwt.revocation-purge-cron:0 15 * * * *}")
+    public void purgeExpiredRevocations() {
+        try {
+            int purged = revocationStore.purgeExpired(tokenProvider.getMaxTokenLifetimeMs());
+            if (purged > 0) {
+                log.info("Purged {} expired token revocations", purged);
+            }
+        } catch (Exception e) {
+            log.error("Purging token revocations failed: {}", e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.project.hotel.scheduler;
+
+import com.project.hotel.security.TokenRevocationStore;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Đọc các bản ghi thu hồi token do instance khác ghi (đăng xuất, thu hồi toàn bộ)
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TokenRevocationRefreshJob {
+
+    private final TokenRevocationStore revocationStore;
+
+    @Scheduled(fixedDelayString = "${app.jwt.revocation-refresh-interval-ms:5000}")
+    public void refreshRevocations() {
+        try {
+            revocationStore.refresh();
+        } catch (Exception e) {
+            log.error("Refreshing token revocations failed: {}", e.getMessage(), e);
+        }
+    }
+}
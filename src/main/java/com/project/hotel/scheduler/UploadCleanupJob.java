@@ -0,0 +1,34 @@
+package com.project.hotel.scheduler;
+
+import com.project.hotel.service.UploadCleanupService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Dọn file upload mồ côi hằng đêm, thay cho việc xóa file ngay trong request xóa phòng/ảnh
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class UploadCleanupJob {
+
+    private final UploadCleanupService uploadCleanupService;
+
+    @Value("${app.upload-cleanup.enabled:true}")
+    private boolean enabled;
+
+    @Scheduled(cron = "${app.upload-cleanup.cron:0 15 4 * * *}")
+    public void cleanUpUploads() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            uploadCleanupService.cleanUp();
+        } catch (Exception e) {
+            log.error("Upload cleanup failed: {}", e.getMessage(), e);
+        }
+    }
+}
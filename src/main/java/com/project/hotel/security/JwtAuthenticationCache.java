@@ -0,0 +1,102 @@
+package com.project.hotel.security;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache token đã xác thực -> principal cho JwtAuthenticationFilter.
+ * <p>
+ * Keyed by the SHA-256 digest of the token so raw tokens are never kept in memory. An entry
+ * lives until the token expires or {@code app.jwt.cache.ttl-ms}, whichever comes first; the
+ * TTL bounds how long a change made outside {@link #evictUser} can go unnoticed. When full,
+ * expired entries are dropped first and then arbitrary ones.
+ */
+@Component
+public class JwtAuthenticationCache {
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ThreadLocal<MessageDigest> digests = ThreadLocal.withInitial(JwtAuthenticationCache::newDigest);
+
+    @Value("${app.jwt.cache.max-entries:10000}")
+    private int maxEntries;
+
+    @Value("${app.jwt.cache.ttl-ms:300000}")
+    private long ttlMs;
+
+    public JwtUserPrincipal get(String token) {
+        String key = digest(token);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAt <= System.currentTimeMillis()) {
+            entries.remove(key, entry);
+            return null;
+        }
+        return entry.principal;
+    }
+
+    public void put(String token, JwtUserPrincipal principal, Date tokenExpiration) {
+        long now = System.currentTimeMillis();
+        long expiresAt = Math.min(tokenExpiration.getTime(), now + ttlMs);
+        if (expiresAt <= now) {
+            return;
+        }
+        if (entries.size() >= maxEntries) {
+            makeRoom(now);
+        }
+        entries.put(digest(token), new Entry(principal, expiresAt));
+    }
+
+    /**
+     * Drops every cached token of the user, e.g. after the account is updated or deleted.
+     */
+    public void evictUser(String username) {
+        entries.values().removeIf(entry -> entry.principal.getUsername().equals(username));
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    private void makeRoom(long now) {
+        entries.values().removeIf(entry -> entry.expiresAt <= now);
+        Iterator<Entry> it = entries.values().iterator();
+        while (entries.size() >= maxEntries && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    private String digest(String token) {
+        MessageDigest md = digests.get();
+        return Base64.getEncoder().encodeToString(md.digest(token.getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static final class Entry {
+        private final JwtUserPrincipal principal;
+        private final long expiresAt;
+
+        private Entry(JwtUserPrincipal principal, long expiresAt) {
+            this.principal = principal;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
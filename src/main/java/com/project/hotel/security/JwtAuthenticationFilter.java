@@ -1,5 +1,7 @@
 package com.project.hotel.security;
 
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -7,8 +9,6 @@ import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
@@ -23,7 +23,10 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     private JwtTokenProvider tokenProvider;
 
     @Autowired
-    private UserDetailsService userDetailsService;
+    private JwtAuthenticationCache authenticationCache;
+
+    @Autowired
+    private TokenRevocationStore revocationStore;
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
@@ -32,17 +35,28 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             String jwt = getJwtFromRequest(request);
 
             if (StringUtils.hasText(jwt)) {
-                String username = tokenProvider.getUsernameFromToken(jwt);
-                UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-                
-                if (tokenProvider.validateToken(jwt, userDetails)) {
+                JwtUserPrincipal principal = authenticationCache.get(jwt);
+                if (principal == null) {
+                    // Verifies signature and expiry once; the user and roles come from the claims
+                    Claims claims = tokenProvider.parseClaims(jwt);
+                    if (tokenProvider.isType(claims, JwtTokenProvider.TYPE_ACCESS)) {
+                        principal = tokenProvider.toPrincipal(claims);
+                        authenticationCache.put(jwt, principal, claims.getExpiration());
+                    }
+                }
+
+                if (principal != null
+                        && !revocationStore.isRevoked(principal.getId(), principal.getTokenId(), principal.getIssuedAt())) {
                     UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
-                            userDetails, null, userDetails.getAuthorities());
+                            principal, null, principal.getAuthorities());
                     authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
 
                     SecurityContextHolder.getContext().setAuthentication(authentication);
                 }
             }
+        } catch (JwtException ex) {
+            // Expired or tampered token: the request continues unauthenticated
+            logger.debug("Rejected JWT: " + ex.getMessage());
         } catch (Exception ex) {
             logger.error("Could not set user authentication in security context", ex);
         }
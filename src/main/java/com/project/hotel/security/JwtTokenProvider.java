@@ -2,78 +2,160 @@ package com.project.hotel.security;
 
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
+import java.util.UUID;
 import java.util.function.Function;
 
+/**
+ * Access tokens (short-lived) carry the user id and roles so requests are authorized from the
+ * token alone; refresh tokens (long-lived) carry only the user id and are exchanged, and
+ * rotated, at {@code /api/auth/refresh}.
+ */
 @Component
 public class JwtTokenProvider {
 
+    public static final String TYPE_ACCESS = "access";
+    public static final String TYPE_REFRESH = "refresh";
+
+    private static final String CLAIM_USER_ID = "uid";
+    private static final String CLAIM_ROLES = "roles";
+    private static final String CLAIM_TYPE = "typ";
+    // iat chỉ có độ chính xác giây; revocation cần so sánh tới mili giây
+    private static final String CLAIM_ISSUED_AT_MS = "iat_ms";
+
     @Value("${app.jwt.secret}")
     private String jwtSecret;
 
-    @Value("${app.jwt.expiration:86400000}") // Default to 24 hours
-    private long jwtExpirationInMs;
+    @Value("${app.jwt.access-expiration:900000}") // Default to 15 minutes
+    private long accessExpirationInMs;
+
+    @Value("${app.jwt.refresh-expiration:604800000}") // Default to 7 days
+    private long refreshExpirationInMs;
+
+    private SecretKey signingKey;
+    private JwtParser parser;
+
+    @PostConstruct
+    void init() {
+        // Key và parser không đổi, chỉ tạo một lần
+        signingKey = Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8));
+        parser = Jwts.parserBuilder().setSigningKey(signingKey).build();
+    }
+
+    public String generateAccessToken(JwtUserPrincipal principal) {
+        List<String> roles = new ArrayList<>(principal.getAuthorities().size());
+        for (GrantedAuthority authority : principal.getAuthorities()) {
+            roles.add(authority.getAuthority());
+        }
+        Date now = new Date();
 
-    private SecretKey getSigningKey() {
-        byte[] keyBytes = jwtSecret.getBytes(StandardCharsets.UTF_8);
-        return Keys.hmacShaKeyFor(keyBytes);
+        return Jwts.builder()
+                .setId(UUID.randomUUID().toString())
+                .setSubject(principal.getUsername())
+                .claim(CLAIM_USER_ID, principal.getId())
+                .claim(CLAIM_ROLES, roles)
+                .claim(CLAIM_TYPE, TYPE_ACCESS)
+                .claim(CLAIM_ISSUED_AT_MS, now.getTime())
+                .setIssuedAt(now)
+                .setExpiration(new Date(now.getTime() + accessExpirationInMs))
+                .signWith(signingKey, SignatureAlgorithm.HS512)
+                .compact();
     }
 
-    public String generateToken(Authentication authentication) {
-        UserDetails userDetails = (UserDetails) authentication.getPrincipal();
+    public String generateRefreshToken(JwtUserPrincipal principal) {
         Date now = new Date();
-        Date expiryDate = new Date(now.getTime() + jwtExpirationInMs);
 
         return Jwts.builder()
-                .setSubject(userDetails.getUsername())
+                .setId(UUID.randomUUID().toString())
+                .setSubject(principal.getUsername())
+                .claim(CLAIM_USER_ID, principal.getId())
+                .claim(CLAIM_TYPE, TYPE_REFRESH)
+                .claim(CLAIM_ISSUED_AT_MS, now.getTime())
                 .setIssuedAt(now)
-                .setExpiration(expiryDate)
-                .signWith(getSigningKey(), SignatureAlgorithm.HS512)
+                .setExpiration(new Date(now.getTime() + refreshExpirationInMs))
+                .signWith(signingKey, SignatureAlgorithm.HS512)
                 .compact();
     }
 
+    public long getAccessExpirationInMs() {
+        return accessExpirationInMs;
+    }
+
+    public long getMaxTokenLifetimeMs() {
+        return Math.max(accessExpirationInMs, refreshExpirationInMs);
+    }
+
     public String getUsernameFromToken(String token) {
         return getClaimFromToken(token, Claims::getSubject);
     }
 
     public boolean validateToken(String token, UserDetails userDetails) {
         try {
-            final String username = getUsernameFromToken(token);
-            return (username.equals(userDetails.getUsername()) && !isTokenExpired(token));
+            final Claims claims = parseClaims(token);
+            return (claims.getSubject().equals(userDetails.getUsername()) && !claims.getExpiration().before(new Date()));
         } catch (JwtException | IllegalArgumentException e) {
             return false;
         }
     }
 
-    private <T> T getClaimFromToken(String token, Function<Claims, T> claimsResolver) {
-        final Claims claims = getAllClaimsFromToken(token);
-        return claimsResolver.apply(claims);
+    /**
+     * Verifies the signature and expiry once and returns the claims.
+     *
+     * @throws JwtException if the token is invalid or expired
+     */
+    public Claims parseClaims(String token) {
+        return parser.parseClaimsJws(token).getBody();
     }
 
-    private Claims getAllClaimsFromToken(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+    public boolean isType(Claims claims, String type) {
+        return type.equals(claims.get(CLAIM_TYPE, String.class));
     }
 
-    private Boolean isTokenExpired(String token) {
-        final Date expiration = getExpirationDateFromToken(token);
-        return expiration.before(new Date());
+    public Long getUserId(Claims claims) {
+        Number userId = claims.get(CLAIM_USER_ID, Number.class);
+        return userId == null ? null : userId.longValue();
     }
 
-    private Date getExpirationDateFromToken(String token) {
-        return getClaimFromToken(token, Claims::getExpiration);
+    /**
+     * Issue time with millisecond precision; tokens issued before the claim existed fall back to iat.
+     */
+    public Instant getIssuedAt(Claims claims) {
+        Number issuedAtMs = claims.get(CLAIM_ISSUED_AT_MS, Number.class);
+        return issuedAtMs != null ? Instant.ofEpochMilli(issuedAtMs.longValue()) : claims.getIssuedAt().toInstant();
+    }
+
+    /**
+     * Builds the principal of an access token without touching the database.
+     */
+    public JwtUserPrincipal toPrincipal(Claims claims) {
+        List<GrantedAuthority> authorities = new ArrayList<>();
+        Object roles = claims.get(CLAIM_ROLES);
+        if (roles instanceof List<?> list) {
+            for (Object role : list) {
+                authorities.add(new SimpleGrantedAuthority(String.valueOf(role)));
+            }
+        }
+        return new JwtUserPrincipal(getUserId(claims), claims.getSubject(), null, authorities,
+                claims.getId(), getIssuedAt(claims));
+    }
+
+    private <T> T getClaimFromToken(String token, Function<Claims, T> claimsResolver) {
+        return claimsResolver.apply(parseClaims(token));
     }
-}
\ No newline at end of file
+}
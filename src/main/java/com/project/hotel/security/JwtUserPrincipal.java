@@ -0,0 +1,79 @@
+package com.project.hotel.security;
+
+import lombok.Getter;
+import org.springframework.security.core.CredentialsContainer;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Authenticated user as carried by an access token: id, email and roles, so requests can be
+ * authorized without loading the {@code User}. Built from the database at login/refresh (with
+ * the password hash, erased after authentication) and from token claims on every other request.
+ */
+@Getter
+public class JwtUserPrincipal implements UserDetails, CredentialsContainer {
+
+    private final Long id;
+    private final String email;
+    private final List<GrantedAuthority> authorities;
+    private final String tokenId;
+    private final Instant issuedAt;
+    private String password;
+
+    public JwtUserPrincipal(Long id, String email, String password, List<GrantedAuthority> authorities) {
+        this(id, email, password, authorities, null, null);
+    }
+
+    public JwtUserPrincipal(Long id, String email, String password, List<GrantedAuthority> authorities,
+                            String tokenId, Instant issuedAt) {
+        this.id = id;
+        this.email = email;
+        this.password = password;
+        this.authorities = List.copyOf(authorities);
+        this.tokenId = tokenId;
+        this.issuedAt = issuedAt;
+    }
+
+    public boolean isAdmin() {
+        return authorities.stream().anyMatch(a -> "ROLE_ADMIN".equals(a.getAuthority()));
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return authorities;
+    }
+
+    @Override
+    public String getUsername() {
+        return email;
+    }
+
+    @Override
+    public boolean isAccountNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isAccountNonLocked() {
+        return true;
+    }
+
+    @Override
+    public boolean isCredentialsNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public void eraseCredentials() {
+        password = null;
+    }
+}
@@ -0,0 +1,170 @@
+package com.project.hotel.security;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-client rate limiting for the expensive write endpoints (login, booking, payment URL).
+ * <p>
+ * Each bucket is a single {@link AtomicLong} holding the GCRA "theoretical arrival time":
+ * a request is allowed when it arrives no earlier than {@code tat - burstTolerance}, and
+ * then advances the TAT by one emission interval with a CAS. That is equivalent to a token
+ * bucket of {@code burst} tokens refilled at {@code limit/period}, with no locks and no
+ * refill bookkeeping. Buckets are keyed by user id when the request carries a valid access
+ * token, by client IP otherwise, and are evicted once they have been full (idle) for a while.
+ */
+@Component
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private final boolean enabled;
+    private final long idleEvictionNanos;
+    private final List<Route> routes;
+
+    public RateLimitFilter(@Value("${app.rate-limit.enabled:true}") boolean enabled,
+                           @Value("${app.rate-limit.idle-eviction-seconds:600}") long idleEvictionSeconds,
+                           @Value("${app.rate-limit.login.limit:10}") int loginLimit,
+                           @Value("${app.rate-limit.login.period-seconds:60}") long loginPeriod,
+                           @Value("${app.rate-limit.login.burst:5}") int loginBurst,
+                           @Value("${app.rate-limit.booking.limit:20}") int bookingLimit,
+                           @Value("${app.rate-limit.booking.period-seconds:60}") long bookingPeriod,
+                           @Value("${app.rate-limit.booking.burst:5}") int bookingBurst,
+                           @Value("${app.rate-limit.payment.limit:20}") int paymentLimit,
+                           @Value("${app.rate-limit.payment.period-seconds:60}") long paymentPeriod,
+                           @Value("${app.rate-limit.payment.burst:5}") int paymentBurst) {
+        this.enabled = enabled;
+        this.idleEvictionNanos = TimeUnit.SECONDS.toNanos(idleEvictionSeconds);
+        Limit login = new Limit(loginLimit, loginPeriod, loginBurst);
+        Limit booking = new Limit(bookingLimit, bookingPeriod, bookingBurst);
+        Limit payment = new Limit(paymentLimit, paymentPeriod, paymentBurst);
+        this.routes = List.of(
+                new Route("/api/auth/login", null, login),
+                new Route("/api/bookings", null, booking),
+                // Tất cả các đường tạo giao dịch thanh toán dùng chung một hạn mức
+                new Route("/api/vnpay/create-payment/", "", payment),
+                new Route("/api/payments/vnpay/create", null, payment),
+                new Route("/api/bookings/", "/payment", payment));
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled || !"POST".equals(request.getMethod());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        Route route = match(request.getRequestURI());
+        if (route != null) {
+            long waitNanos = route.limit.acquire(clientKey(request), System.nanoTime());
+            if (waitNanos > 0) {
+                long retryAfterSeconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999L));
+                response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+                response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+                response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+                response.getWriter().write("{\"message\":\"Too many requests, retry in " + retryAfterSeconds + "s\"}");
+                return;
+            }
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    /**
+     * Drops buckets that have been full for longer than the idle timeout. A request racing
+     * with the removal can at worst get one extra token from a fresh bucket.
+     */
+    @Scheduled(fixedDelayString = "${app.rate-limit.eviction-interval-ms:60000}")
+    public void evictIdleBuckets() {
+        long horizon = System.nanoTime() - idleEvictionNanos;
+        routes.stream().map(route -> route.limit).distinct().forEach(limit ->
+                limit.buckets.entrySet().removeIf(entry -> entry.getValue().get() - horizon < 0));
+    }
+
+    private Route match(String uri) {
+        for (Route route : routes) {
+            if (route.matches(uri)) {
+                return route;
+            }
+        }
+        return null;
+    }
+
+    private Object clientKey(HttpServletRequest request) {
+        // Runs after JwtAuthenticationFilter: user id for authenticated calls, otherwise client IP
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof JwtUserPrincipal principal
+                && principal.getId() != null) {
+            return principal.getId();
+        }
+        // Not X-Forwarded-For: the client controls that header. Behind a trusted proxy Tomcat's
+        // RemoteIpValve (server.forward-headers-strategy) has already resolved the real address.
+        return request.getRemoteAddr();
+    }
+
+    /**
+     * Exact path when {@code suffix} is null, otherwise a prefix whose remainder ends with {@code suffix}.
+     */
+    private static final class Route {
+        private final String path;
+        private final String suffix;
+        private final Limit limit;
+
+        private Route(String path, String suffix, Limit limit) {
+            this.path = path;
+            this.suffix = suffix;
+            this.limit = limit;
+        }
+
+        private boolean matches(String uri) {
+            if (suffix == null) {
+                return uri.equals(path);
+            }
+            return uri.startsWith(path) && uri.length() > path.length() && uri.endsWith(suffix);
+        }
+    }
+
+    private static final class Limit {
+        private final long intervalNanos;
+        private final long toleranceNanos;
+        private final ConcurrentHashMap<Object, AtomicLong> buckets = new ConcurrentHashMap<>();
+
+        private Limit(int limit, long periodSeconds, int burst) {
+            this.intervalNanos = TimeUnit.SECONDS.toNanos(periodSeconds) / Math.max(1, limit);
+            this.toleranceNanos = intervalNanos * (Math.max(1, burst) - 1);
+        }
+
+        /**
+         * @return 0 if the request is allowed, otherwise the nanoseconds until it would be
+         */
+        private long acquire(Object key, long now) {
+            AtomicLong tat = buckets.computeIfAbsent(key, k -> new AtomicLong(now));
+            while (true) {
+                long current = tat.get();
+                long start = current - now > 0 ? current : now;
+                long wait = start - toleranceNanos - now;
+                if (wait > 0) {
+                    return wait;
+                }
+                if (tat.compareAndSet(current, start + intervalNanos)) {
+                    return 0;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.project.hotel.security;
+
+import com.project.hotel.entity.TokenRevocation;
+import com.project.hotel.repository.TokenRevocationRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Thu hồi JWT: kiểm tra trong bộ nhớ, ghi xuống bảng token_revocations để không mất khi khởi động lại.
+ * <p>
+ * Only two things are kept: revoked token ids (until the token would expire) and a per-user
+ * cut-off before which every token of that user is rejected (until the longest-lived token
+ * issued before it would expire). Both are small and checked with one map lookup each.
+ * <p>
+ * Other instances write to the same table, so {@link #refresh()} re-reads it on a schedule
+ * by id high-water mark. Ids can commit out of order, so each range is read on two
+ * consecutive refreshes; applying a revocation twice is harmless.
+ */
+@Slf4j
+@Component
+public class TokenRevocationStore {
+
+    private final TokenRevocationRepository tokenRevocationRepository;
+    private final Map<String, Instant> revokedTokens = new ConcurrentHashMap<>();
+    private final Map<Long, Instant> notBefore = new ConcurrentHashMap<>();
+    private long readFromId;
+    private long seenUpToId;
+
+    public TokenRevocationStore(TokenRevocationRepository tokenRevocationRepository) {
+        this.tokenRevocationRepository = tokenRevocationRepository;
+    }
+
+    @PostConstruct
+    void load() {
+        refresh();
+        log.info("Loaded {} revoked tokens and {} user cut-offs", revokedTokens.size(), notBefore.size());
+    }
+
+    /**
+     * Applies revocations written since the previous refresh, including those of other instances.
+     *
+     * @return number of rows read
+     */
+    public synchronized int refresh() {
+        List<TokenRevocation> revocations = tokenRevocationRepository
+                .findByIdGreaterThanAndExpiresAtAfterOrderById(readFromId, LocalDateTime.now());
+        long maxId = seenUpToId;
+        for (TokenRevocation revocation : revocations) {
+            if (revocation.getTokenId() != null) {
+                revokedTokens.putIfAbsent(revocation.getTokenId(), toInstant(revocation.getExpiresAt()));
+            } else {
+                applyCutOff(revocation.getUserId(), toInstant(revocation.getNotBefore()));
+            }
+            maxId = Math.max(maxId, revocation.getId());
+        }
+        // Đọc lại khoảng id của lần trước: bản ghi id nhỏ hơn có thể commit muộn hơn
+        readFromId = seenUpToId;
+        seenUpToId = maxId;
+        return revocations.size();
+    }
+
+    public boolean isRevoked(Long userId, String tokenId, Instant issuedAt) {
+        if (tokenId != null && revokedTokens.containsKey(tokenId)) {
+            return true;
+        }
+        Instant cutOff = notBefore.get(userId);
+        return cutOff != null && issuedAt != null && issuedAt.isBefore(cutOff);
+    }
+
+    /**
+     * Revokes a single token.
+     *
+     * @return false if it was already revoked (e.g. a refresh token being replayed)
+     */
+    public boolean revokeToken(Long userId, String tokenId, Instant expiresAt) {
+        if (revokedTokens.putIfAbsent(tokenId, expiresAt) != null) {
+            return false;
+        }
+        try {
+            tokenRevocationRepository.save(new TokenRevocation(null, tokenId, userId, null, toLocal(expiresAt)));
+            return true;
+        } catch (DataIntegrityViolationException e) {
+            // Revoked concurrently by another instance
+            return false;
+        }
+    }
+
+    /**
+     * Rejects every token of the user issued before now.
+     *
+     * @param maxTokenLifetimeMs lifetime of the longest-lived token type
+     */
+    public void revokeAllForUser(Long userId, long maxTokenLifetimeMs) {
+        // Compared with the millisecond issue time, so tokens issued earlier in this second are rejected too
+        Instant cutOff = Instant.now();
+        tokenRevocationRepository.save(new TokenRevocation(null, null, userId, toLocal(cutOff),
+                toLocal(cutOff.plusMillis(maxTokenLifetimeMs))));
+        // Trong transaction của caller: chỉ áp dụng vào bộ nhớ khi đã commit
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    applyCutOff(userId, cutOff);
+                }
+            });
+        } else {
+            applyCutOff(userId, cutOff);
+        }
+    }
+
+    private void applyCutOff(Long userId, Instant cutOff) {
+        notBefore.merge(userId, cutOff, (a, b) -> a.isAfter(b) ? a : b);
+    }
+
+    /**
+     * Drops revocations of tokens that have expired anyway.
+     */
+    @Transactional
+    public int purgeExpired(long maxTokenLifetimeMs) {
+        Instant now = Instant.now();
+        revokedTokens.values().removeIf(expiresAt -> !expiresAt.isAfter(now));
+        Instant oldestLiveIssue = now.minusMillis(maxTokenLifetimeMs);
+        notBefore.values().removeIf(cutOff -> !cutOff.isAfter(oldestLiveIssue));
+        return tokenRevocationRepository.deleteExpired(toLocal(now));
+    }
+
+    private static LocalDateTime toLocal(Instant instant) {
+        return LocalDateTime.ofInstant(instant, ZoneId.systemDefault());
+    }
+
+    private static Instant toInstant(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant();
+    }
+}
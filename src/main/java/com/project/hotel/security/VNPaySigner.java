@@ -0,0 +1,213 @@
+package com.project.hotel.security;
+
+import com.project.hotel.config.VNPayConfig;
+import com.project.hotel.exception.PaymentProcessingException;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * HMAC-SHA512 signing for VNPay (API version 2.1.0).
+ * <p>
+ * The canonical string is {@code name=value&...} over the non-empty parameters sorted by
+ * name, with every value form-encoded exactly like {@code URLEncoder.encode(value, US_ASCII)}.
+ * For VNPay parameter names that canonical string is also the query string, so both are
+ * produced in one pass. Signatures are lower-case hex, as VNPay expects.
+ * <p>
+ * Each thread keeps its own initialized {@link Mac} and scratch buffers, so signing only
+ * allocates the returned string.
+ */
+@Component
+public class VNPaySigner {
+
+    public static final String SECURE_HASH = "vnp_SecureHash";
+    public static final String SECURE_HASH_TYPE = "vnp_SecureHashType";
+
+    private static final String ALGORITHM = "HmacSHA512";
+    private static final int DIGEST_LENGTH = 64;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final char[] HEX_UPPER = "0123456789ABCDEF".toCharArray();
+
+    private final SecretKeySpec secretKey;
+    private final ThreadLocal<Mac> macs;
+    private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+
+    public VNPaySigner(VNPayConfig vnPayConfig) {
+        this.secretKey = new SecretKeySpec(vnPayConfig.getHashSecret().getBytes(StandardCharsets.UTF_8), ALGORITHM);
+        this.macs = ThreadLocal.withInitial(this::newMac);
+    }
+
+    /**
+     * Builds the signed query string for parameters whose names are already sorted.
+     *
+     * @param sortedNames parameter names in ascending order
+     * @param values      values aligned with {@code sortedNames}; null or empty values are skipped
+     * @return {@code name=value&...&vnp_SecureHash=<hex>}
+     */
+    public String signedQuery(String[] sortedNames, String[] values) {
+        Scratch s = scratch.get();
+        StringBuilder sb = s.builder();
+        appendCanonical(sb, sortedNames, values, sortedNames.length);
+        int canonicalLength = sb.length();
+
+        hmac(s, sb, canonicalLength);
+        sb.append('&').append(SECURE_HASH).append('=').append(s.hex, 0, DIGEST_LENGTH * 2);
+        return sb.toString();
+    }
+
+    /**
+     * Verifies a signature returned by VNPay (return URL, IPN). The hash fields themselves
+     * are ignored, and the map is not modified.
+     */
+    public boolean verify(Map<String, String> params, String secureHash) {
+        if (secureHash == null || secureHash.length() != DIGEST_LENGTH * 2) {
+            return false;
+        }
+
+        String[] names = new String[params.size()];
+        int count = 0;
+        for (String name : params.keySet()) {
+            if (!SECURE_HASH.equals(name) && !SECURE_HASH_TYPE.equals(name)) {
+                names[count++] = name;
+            }
+        }
+        Arrays.sort(names, 0, count);
+
+        String[] values = new String[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = params.get(names[i]);
+        }
+
+        Scratch s = scratch.get();
+        StringBuilder sb = s.builder();
+        appendCanonical(sb, names, values, count);
+        hmac(s, sb, sb.length());
+        return constantTimeEqualsIgnoreCase(s.hex, secureHash);
+    }
+
+    /**
+     * Signs a pre-built data string, as used by the merchant API (query/refund requests
+     * joined with {@code |}).
+     */
+    public String sign(CharSequence data) {
+        Scratch s = scratch.get();
+        hmac(s, data, data.length());
+        return new String(s.hex, 0, DIGEST_LENGTH * 2);
+    }
+
+    private void appendCanonical(StringBuilder sb, String[] names, String[] values, int count) {
+        boolean first = true;
+        for (int i = 0; i < count; i++) {
+            String value = values[i];
+            if (value == null || value.isEmpty()) {
+                continue;
+            }
+            if (!first) {
+                sb.append('&');
+            }
+            first = false;
+            formEncode(sb, names[i]);
+            sb.append('=');
+            formEncode(sb, value);
+        }
+    }
+
+    private void hmac(Scratch s, CharSequence data, int length) {
+        Mac mac = macs.get();
+        byte[] bytes = s.bytes(length);
+        boolean ascii = true;
+        for (int i = 0; i < length; i++) {
+            char c = data.charAt(i);
+            if (c >= 0x80) {
+                ascii = false;
+                break;
+            }
+            bytes[i] = (byte) c;
+        }
+
+        try {
+            if (ascii) {
+                mac.update(bytes, 0, length);
+            } else {
+                mac.update(data.subSequence(0, length).toString().getBytes(StandardCharsets.UTF_8));
+            }
+            mac.doFinal(s.digest, 0);
+        } catch (ShortBufferException e) {
+            throw new PaymentProcessingException("Error calculating HMAC-SHA512", e);
+        }
+
+        char[] hex = s.hex;
+        for (int i = 0; i < DIGEST_LENGTH; i++) {
+            int b = s.digest[i] & 0xff;
+            hex[i * 2] = HEX[b >>> 4];
+            hex[i * 2 + 1] = HEX[b & 0x0f];
+        }
+    }
+
+    /**
+     * Same output as {@code URLEncoder.encode(value, StandardCharsets.US_ASCII)}: characters
+     * that US-ASCII cannot represent are replaced with {@code ?} before encoding.
+     */
+    private static void formEncode(StringBuilder sb, String value) {
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                    || c == '.' || c == '-' || c == '*' || c == '_') {
+                sb.append(c);
+            } else if (c == ' ') {
+                sb.append('+');
+            } else if (c < 0x80) {
+                sb.append('%').append(HEX_UPPER[c >>> 4]).append(HEX_UPPER[c & 0x0f]);
+            } else {
+                if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    i++;
+                }
+                sb.append("%3F");
+            }
+        }
+    }
+
+    private static boolean constantTimeEqualsIgnoreCase(char[] expected, String actual) {
+        int diff = 0;
+        for (int i = 0; i < DIGEST_LENGTH * 2; i++) {
+            diff |= expected[i] ^ Character.toLowerCase(actual.charAt(i));
+        }
+        return diff == 0;
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(secretKey);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new PaymentProcessingException("Error initializing HMAC-SHA512", e);
+        }
+    }
+
+    private static final class Scratch {
+        private final StringBuilder builder = new StringBuilder(1024);
+        private final byte[] digest = new byte[DIGEST_LENGTH];
+        private final char[] hex = new char[DIGEST_LENGTH * 2];
+        private byte[] bytes = new byte[1024];
+
+        StringBuilder builder() {
+            builder.setLength(0);
+            return builder;
+        }
+
+        byte[] bytes(int length) {
+            if (bytes.length < length) {
+                bytes = new byte[Math.max(length, bytes.length * 2)];
+            }
+            return bytes;
+        }
+    }
+}
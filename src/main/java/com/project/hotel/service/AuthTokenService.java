@@ -0,0 +1,25 @@
+package com.project.hotel.service;
+
+import com.project.hotel.dto.AuthTokensDTO;
+import com.project.hotel.security.JwtUserPrincipal;
+
+public interface AuthTokenService {
+
+    AuthTokensDTO issueTokens(JwtUserPrincipal principal);
+
+    /**
+     * Exchanges a refresh token for a new access/refresh pair. The presented refresh token is
+     * revoked; presenting it again revokes every token of the user (reuse detection).
+     */
+    AuthTokensDTO refresh(String refreshToken);
+
+    /**
+     * Revokes the refresh token and the access token of the current request.
+     */
+    void logout(String refreshToken, JwtUserPrincipal current);
+
+    /**
+     * Invalidates every token issued to the user so far, e.g. after a role or password change.
+     */
+    void revokeAllForUser(Long userId, String email);
+}
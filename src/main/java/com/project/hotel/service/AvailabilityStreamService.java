@@ -0,0 +1,21 @@
+package com.project.hotel.service;
+
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.LocalDate;
+
+public interface AvailabilityStreamService {
+
+    /**
+     * Opens a Server-Sent Events stream of availability changes for one room or one room
+     * type whose stay overlaps {@code [from, to)}. {@code clientKey} identifies the caller
+     * (its remote address) for the per-client stream limit.
+     */
+    SseEmitter subscribe(Long roomId, String roomType, LocalDate from, LocalDate to, String clientKey);
+
+    /**
+     * Sends a comment line to every subscriber so idle proxies keep the connection open and
+     * dead connections are noticed.
+     */
+    void sendHeartbeats();
+}
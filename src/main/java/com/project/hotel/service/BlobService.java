@@ -0,0 +1,49 @@
+package com.project.hotel.service;
+
+import com.project.hotel.storage.StagedBlob;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+
+/**
+ * Reference-counted uploads on top of {@link com.project.hotel.storage.BlobStore}.
+ * Image URLs that are not blob keys (files stored before the blob store) are ignored.
+ */
+public interface BlobService {
+
+    /**
+     * Streams the content to staging and hashes it; call outside any transaction, then
+     * {@link #publish} inside the one that attaches it, and always {@link #discard}.
+     */
+    StagedBlob stage(InputStream content) throws IOException;
+
+    /**
+     * Records the blob (with one reference if {@code referenced}) and makes it visible
+     * under its key. Must run in the transaction that stores the reference.
+     */
+    void publish(StagedBlob blob, boolean referenced) throws IOException;
+
+    void discard(StagedBlob blob);
+
+    /**
+     * Publishes, in its own transaction, an upload that is not attached to anything yet;
+     * it keeps a zero count until a room references it. The staged copy is always discarded.
+     */
+    void store(StagedBlob blob) throws IOException;
+
+    void addReferences(Collection<String> imageUrls);
+
+    /**
+     * Drops one reference per URL; blobs left unreferenced are deleted later by the upload
+     * cleanup job, once they have stayed unreferenced for its grace period.
+     */
+    void releaseReferences(Collection<String> imageUrls);
+
+    /**
+     * Deletes the blob and its record if it still has no references, under the record's row lock.
+     *
+     * @return true if the blob was deleted
+     */
+    boolean deleteIfUnreferenced(String key);
+}
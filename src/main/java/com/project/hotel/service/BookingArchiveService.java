@@ -0,0 +1,22 @@
+package com.project.hotel.service;
+
+import com.project.hotel.entity.ArchivedBooking;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+public interface BookingArchiveService {
+
+    /**
+     * Moves at most {@code chunkSize} completed/cancelled bookings that checked out before
+     * {@code horizon} (and their payments) into the archive tables, in a single transaction.
+     *
+     * @return number of bookings archived
+     */
+    int archiveChunk(LocalDate horizon, int chunkSize);
+
+    Optional<ArchivedBooking> findByBookingReference(String bookingReference);
+
+    List<ArchivedBooking> findByUserId(Long userId);
+}
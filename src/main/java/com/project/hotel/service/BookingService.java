@@ -1,11 +1,14 @@
 package com.project.hotel.service;
 
+import com.project.hotel.dto.AvailabilityCalendarDTO;
+import com.project.hotel.dto.BatchItemDTO;
 import com.project.hotel.dto.BookingDTO;
 import com.project.hotel.entity.Booking;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 
 public interface BookingService {
 
@@ -15,6 +18,12 @@ public interface BookingService {
 
     List<BookingDTO> getAllBookings();
 
+    /**
+     * Resolves up to {@code app.batch-get.max-ids} bookings in one query, in request order,
+     * with a not-found marker for each unknown id.
+     */
+    List<BatchItemDTO<BookingDTO>> getBookingsByIds(List<Long> ids);
+
     List<BookingDTO> getBookingsByUserId(Long userId);
 
     List<BookingDTO> getBookingsByRoomId(Long roomId);
@@ -23,6 +32,14 @@ public interface BookingService {
 
     List<BookingDTO> getBookingsInDateRange(LocalDate startDate, LocalDate endDate);
 
+    /**
+     * Bookings matching at most one of the optional filters, with only the properties named
+     * in {@code fields}; the user filter includes archived bookings like
+     * {@link #getBookingsByUserId(Long)}.
+     */
+    List<Map<String, Object>> getBookingFields(String fields, Long userId, Long roomId, String status,
+                                               LocalDate startDate, LocalDate endDate);
+
 
     @Transactional
     BookingDTO updateBookingStatus(Long bookingId, String status);
@@ -50,4 +67,20 @@ public interface BookingService {
     String getBookingStatus(Long id);
 
     boolean isRoomAvailable(Long roomId, LocalDate checkIn, LocalDate checkOut);
+
+    /**
+     * Which nights of {@code [from, to)} are taken for every room (optionally of one type),
+     * from a single query over the overlapping bookings.
+     *
+     * @param encoding {@code bitmap} or {@code rle}, see {@link AvailabilityCalendarDTO}
+     */
+    AvailabilityCalendarDTO getAvailabilityCalendar(LocalDate from, LocalDate to, String roomType, String encoding);
+
+    /**
+     * Chuyển tối đa {@code chunkSize} đơn CONFIRMED đã qua ngày trả phòng sang COMPLETED
+     *
+     * @return số đơn đã được hoàn thành
+     */
+    @Transactional
+    int completeCheckedOutBookings(LocalDate today, int chunkSize);
 }
\ No newline at end of file
@@ -0,0 +1,20 @@
+package com.project.hotel.service;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+public interface FileServingService {
+
+    /**
+     * Writes {@code file} to the response with conditional-request (ETag / Last-Modified),
+     * single-range and caching support; answers 404 if the file does not exist.
+     *
+     * @param immutable whether the name is never reused for different content, which allows
+     *                  a long-lived {@code immutable} Cache-Control
+     */
+    void serve(Path file, boolean immutable, HttpServletRequest request, HttpServletResponse response)
+            throws IOException;
+}
@@ -0,0 +1,21 @@
+package com.project.hotel.service;
+
+import com.project.hotel.storage.StagedBlob;
+import jakarta.servlet.http.HttpServletRequest;
+
+import java.io.IOException;
+
+public interface ImageUploadService {
+
+    /**
+     * Streams the {@code file} part of a multipart/form-data request into blob staging,
+     * validating it on the way: non-images are rejected from their first bytes and
+     * oversized files as soon as they cross the limit for their type.
+     * The caller must publish or discard the returned blob.
+     *
+     * @throws com.project.hotel.exception.BadRequestException       no image part, or not an image
+     * @throws com.project.hotel.exception.PayloadTooLargeException  over the limit for its type
+     * @throws com.project.hotel.exception.ServiceBusyException      too many uploads in progress
+     */
+    StagedBlob receive(HttpServletRequest request) throws IOException;
+}
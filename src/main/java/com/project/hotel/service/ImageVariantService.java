@@ -0,0 +1,31 @@
+package com.project.hotel.service;
+
+import java.util.Collection;
+
+public interface ImageVariantService {
+
+    /**
+     * Queues generation of every variant of an uploaded original; returns immediately.
+     *
+     * @param roomId   the owning room, or null if the photo is not attached yet
+     * @param fileName stored name of the original under the uploads directory
+     * @return false if the worker queue is full (the backfill job retries later)
+     */
+    boolean submit(Long roomId, String fileName);
+
+    /**
+     * Picks the file to serve for a request of the given width: the smallest variant at
+     * least that wide, otherwise the original.
+     */
+    String resolve(String fileName, Integer width);
+
+    /**
+     * Forgets the cached variant lists of these originals after their variants were deleted.
+     */
+    void evict(Collection<String> sourceFiles);
+
+    /**
+     * Queues photos that have no variants yet; returns how many were queued.
+     */
+    int backfill(int limit);
+}
@@ -0,0 +1,14 @@
+package com.project.hotel.service;
+
+import com.project.hotel.dto.ReconciliationReportDTO;
+
+import java.time.LocalDateTime;
+
+public interface PaymentReconciliationService {
+
+    /**
+     * Compares unresolved and settled VNPay payments created in [from, to) with the gateway
+     * and corrects local state where the gateway is authoritative.
+     */
+    ReconciliationReportDTO reconcile(LocalDateTime from, LocalDateTime to);
+}
@@ -0,0 +1,45 @@
+package com.project.hotel.service;
+
+import com.project.hotel.constant.PaymentStatus;
+import com.project.hotel.constant.PaymentTransitionSource;
+import com.project.hotel.dto.PaymentTransitionDTO;
+import com.project.hotel.entity.Payment;
+
+import java.util.List;
+
+/**
+ * Single entry point for payment status changes. Every change is validated against the
+ * legal transitions and appended to {@code payment_transitions} in the caller's transaction;
+ * {@code payments.status} is kept as the current-state projection.
+ */
+public interface PaymentStateMachine {
+
+    boolean canTransition(PaymentStatus from, PaymentStatus to);
+
+    /**
+     * Records the initial status of newly saved payments.
+     */
+    void recordCreated(List<Payment> payments, PaymentTransitionSource source);
+
+    /**
+     * Moves a managed payment to {@code target}. Does nothing if it is already there.
+     *
+     * @throws com.project.hotel.exception.ValidationException if the transition is not allowed
+     */
+    void transition(Payment payment, PaymentStatus target, PaymentTransitionSource source, String detail);
+
+    /**
+     * Moves the payment to {@code target} only if it is still in {@code expected}, without loading it.
+     *
+     * @return false if the payment was changed concurrently
+     */
+    boolean transitionIfCurrent(Long paymentId, PaymentStatus expected, PaymentStatus target,
+                                PaymentTransitionSource source, String detail);
+
+    List<PaymentTransitionDTO> getHistory(Long paymentId);
+
+    /**
+     * Reads the log in insertion order, for audits and other sequential consumers.
+     */
+    List<PaymentTransitionDTO> readLog(Long afterId, int limit);
+}
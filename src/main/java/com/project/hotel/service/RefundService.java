@@ -0,0 +1,17 @@
+package com.project.hotel.service;
+
+public interface RefundService {
+
+    /**
+     * Queues a refund for a payment in {@code REFUND_PENDING}. Returns immediately; the gateway
+     * call, retries and the final state change happen on the refund workers.
+     */
+    void submit(Long paymentId);
+
+    /**
+     * Re-submits payments left in {@code REFUND_PENDING}, e.g. after a restart.
+     *
+     * @return the number of payments submitted
+     */
+    int resumePending(int limit);
+}
@@ -1,10 +1,12 @@
 package com.project.hotel.service;
 
+import com.project.hotel.dto.BatchItemDTO;
 import com.project.hotel.dto.RoomDTO;
 import com.project.hotel.entity.Room;
-import org.springframework.web.multipart.MultipartFile;
+import com.project.hotel.storage.StagedBlob;
 
 import java.util.List;
+import java.util.Map;
 
 public interface RoomService {
     RoomDTO createRoom(RoomDTO roomDTO);
@@ -13,6 +15,20 @@ public interface RoomService {
 
     List<RoomDTO> getAllRooms();
 
+    /**
+     * Resolves up to {@code app.batch-get.max-ids} rooms in one query, in request order,
+     * with a not-found marker for each unknown id.
+     */
+    List<BatchItemDTO<RoomDTO>> getRoomsByIds(List<Long> ids);
+
+    /**
+     * Rooms matching the optional filters (the same ones as the list endpoints), with only
+     * the properties named in {@code fields}; columns and collections that were not asked
+     * for are not queried.
+     */
+    List<Map<String, Object>> getRoomFields(String fields, Boolean available, String roomType,
+                                            List<String> amenities);
+
     List<RoomDTO> getAvailableRooms();
 
     List<RoomDTO> getRoomsByType(String roomType);
@@ -26,9 +42,20 @@ public interface RoomService {
     Room findRoomEntityById(Long id);
 
 
-    RoomDTO addRoomImage(Long roomId, MultipartFile file);
+    /**
+     * Attaches a staged upload to the room; the staged copy is always discarded.
+     */
+    RoomDTO addRoomImage(Long roomId, StagedBlob blob);
 
     RoomDTO removeRoomImage(Long roomId, String imageUrl);
 
+    /**
+     * Detaches a stored file from every room that shows it; the file itself is removed by
+     * the upload cleanup job once nothing references it.
+     *
+     * @return number of image entries removed
+     */
+    int removeImageFromRooms(String fileName);
+
     List<String> getRoomImages(Long roomId);
 }
\ No newline at end of file
@@ -0,0 +1,13 @@
+package com.project.hotel.service;
+
+import com.project.hotel.dto.UploadCleanupReportDTO;
+
+public interface UploadCleanupService {
+
+    /**
+     * Reconciles room_images, room_image_variants and blob_refs with the files on disk:
+     * unreferenced files are quarantined and deleted once past the grace period, and room
+     * images whose file is missing are reported.
+     */
+    UploadCleanupReportDTO cleanUp();
+}
@@ -0,0 +1,22 @@
+package com.project.hotel.service;
+
+import com.project.hotel.dto.UserImportReportDTO;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+public interface UserImportService {
+
+    enum Format {
+        CSV,
+        NDJSON
+    }
+
+    /**
+     * Streams users from {@code input} and inserts the valid rows in chunks. Invalid or
+     * duplicate rows are skipped and listed in the report; they never abort the import.
+     *
+     * @throws com.project.hotel.exception.ServiceBusyException if another import is running
+     */
+    UserImportReportDTO importUsers(InputStream input, Format format) throws IOException;
+}
@@ -1,6 +1,8 @@
 package com.project.hotel.service;
 
+import com.project.hotel.constant.UserRole;
 import com.project.hotel.dto.UserDTO;
+import com.project.hotel.dto.UserPageDTO;
 import com.project.hotel.entity.User;
 import com.project.hotel.exception.DuplicateResourceException;
 import com.project.hotel.exception.ResourceNotFoundException;
@@ -23,6 +25,19 @@ public interface UserService {
     List<UserDTO> getAllUsers();
 
 
+    /**
+     * Keyset-paged user directory.
+     *
+     * @param query   optional prefix of email, first name, last name or phone number
+     * @param role    optional role filter
+     * @param afterId return users with an id greater than this (0 for the first page)
+     */
+    UserPageDTO searchUsers(String query, UserRole role, long afterId, int limit);
+
+
+    long countUsers();
+
+
     UserDTO updateUser(Long id, UserDTO userDTO)
             throws ResourceNotFoundException, ValidationException, DuplicateResourceException;
 
@@ -0,0 +1,12 @@
+package com.project.hotel.service;
+
+import java.util.Map;
+
+public interface VNPayIpnService {
+
+  /**
+   * Verifies and acknowledges a VNPay IPN call. The payment itself is applied
+   * asynchronously; the returned map is the {@code RspCode}/{@code Message} body VNPay expects.
+   */
+  Map<String, String> handleIpn(Map<String, String> vnpParams);
+}
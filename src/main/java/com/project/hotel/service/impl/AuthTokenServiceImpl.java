@@ -0,0 +1,97 @@
+package com.project.hotel.service.impl;
+
+import com.project.hotel.dto.AuthTokensDTO;
+import com.project.hotel.entity.User;
+import com.project.hotel.exception.AuthenticationException;
+import com.project.hotel.repository.UserRepository;
+import com.project.hotel.security.JwtAuthenticationCache;
+import com.project.hotel.security.JwtTokenProvider;
+import com.project.hotel.security.JwtUserPrincipal;
+import com.project.hotel.security.TokenRevocationStore;
+import com.project.hotel.service.AuthTokenService;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.time.Instant;
+import java.util.List;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AuthTokenServiceImpl implements AuthTokenService {
+
+    private final JwtTokenProvider tokenProvider;
+    private final TokenRevocationStore revocationStore;
+    private final JwtAuthenticationCache authenticationCache;
+    private final UserRepository userRepository;
+
+    @Override
+    public AuthTokensDTO issueTokens(JwtUserPrincipal principal) {
+        return new AuthTokensDTO(
+                tokenProvider.generateAccessToken(principal),
+                tokenProvider.generateRefreshToken(principal),
+                tokenProvider.getAccessExpirationInMs());
+    }
+
+    @Override
+    public AuthTokensDTO refresh(String refreshToken) {
+        Claims claims = parseRefreshToken(refreshToken);
+        Long userId = tokenProvider.getUserId(claims);
+        if (revocationStore.isRevoked(userId, null, tokenProvider.getIssuedAt(claims))) {
+            throw new AuthenticationException("Refresh token has been revoked");
+        }
+
+        if (!revocationStore.revokeToken(userId, claims.getId(), claims.getExpiration().toInstant())) {
+            // Đã được dùng trước đó: có thể token bị lộ, thu hồi toàn bộ phiên của người dùng
+            log.warn("Refresh token reuse detected for user {}, revoking all sessions", userId);
+            revokeAllForUser(userId, claims.getSubject());
+            throw new AuthenticationException("Refresh token has been revoked");
+        }
+
+        // Roles are re-read here, so a role change takes effect at the next refresh at the latest
+        User user = userRepository.findById(userId)
+                .orElseThrow(() -> new AuthenticationException("User no longer exists"));
+        return issueTokens(new JwtUserPrincipal(user.getId(), user.getEmail(), null,
+                List.of(new SimpleGrantedAuthority(user.getRole().name()))));
+    }
+
+    @Override
+    public void logout(String refreshToken, JwtUserPrincipal current) {
+        if (StringUtils.hasText(refreshToken)) {
+            try {
+                Claims claims = parseRefreshToken(refreshToken);
+                revocationStore.revokeToken(tokenProvider.getUserId(claims), claims.getId(),
+                        claims.getExpiration().toInstant());
+            } catch (AuthenticationException e) {
+                log.debug("Ignoring invalid refresh token on logout: {}", e.getMessage());
+            }
+        }
+        if (current != null && current.getTokenId() != null) {
+            revocationStore.revokeToken(current.getId(), current.getTokenId(),
+                    Instant.now().plusMillis(tokenProvider.getAccessExpirationInMs()));
+        }
+    }
+
+    @Override
+    public void revokeAllForUser(Long userId, String email) {
+        revocationStore.revokeAllForUser(userId, tokenProvider.getMaxTokenLifetimeMs());
+        authenticationCache.evictUser(email);
+    }
+
+    private Claims parseRefreshToken(String refreshToken) {
+        try {
+            Claims claims = tokenProvider.parseClaims(refreshToken);
+            if (!tokenProvider.isType(claims, JwtTokenProvider.TYPE_REFRESH)) {
+                throw new AuthenticationException("Not a refresh token");
+            }
+            return claims;
+        } catch (JwtException | IllegalArgumentException e) {
+            throw new AuthenticationException("Invalid refresh token");
+        }
+    }
+}
@@ -0,0 +1,412 @@
+package com.project.hotel.service.impl;
+
+import com.project.hotel.event.AvailabilityChangedEvent;
+import com.project.hotel.event.AvailabilityDelta;
+import com.project.hotel.exception.BadRequestException;
+import com.project.hotel.exception.ServiceBusyException;
+import com.project.hotel.service.AvailabilityStreamService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Đẩy các thay đổi tình trạng phòng tới client qua Server-Sent Events thay cho polling.
+ * <p>
+ * Every committed {@link AvailabilityChangedEvent} is fanned out to the subscribers of the
+ * affected room and room type through an index, so the publishing thread only enqueues.
+ * Each connection has a bounded queue drained by a small sender pool, at most one task per
+ * connection at a time; a client that falls {@code queue-capacity} messages behind is
+ * disconnected rather than buffered without limit, and is expected to reconnect and
+ * re-read availability. Besides the global {@code max-subscribers} cap, one client address
+ * may hold at most {@code max-subscribers-per-client} streams, since the endpoint is public.
+ * <p>
+ * {@code SseEmitter.send} blocks while the socket buffer is full, so a client that stops
+ * reading without closing the connection would pin a sender thread until the connector's
+ * write timeout. The heartbeat pass disconnects any send running longer than
+ * {@code send-timeout-ms} and adds a sender thread for as long as that send stays stuck, so
+ * delivery to everyone else continues; at most {@code max-extra-senders} such threads exist
+ * at once, after which stuck sends are only disconnected. Exported as {@code availability.stream.subscribers},
+ * {@code availability.stream.sent} and {@code availability.stream.evicted}.
+ */
+@Slf4j
+@Service
+public class AvailabilityStreamServiceImpl implements AvailabilityStreamService {
+
+    private static final String POOL_NAME = "availability-stream";
+    private static final Message HEARTBEAT = new Message(0, null);
+    private static final int IDLE = 0;
+    private static final int SENDING = 1;
+    private static final int STALLED = 2;
+    private static final int COMPENSATED = 3;
+
+    private final Map<Long, Set<Subscriber>> byRoom = new ConcurrentHashMap<>();
+    private final Map<String, Set<Subscriber>> byRoomType = new ConcurrentHashMap<>();
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private final Map<String, Integer> perClient = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final ExecutorService sender;
+    private final ThreadPoolExecutor senderPool;
+    private final int maxSubscribers;
+    private final int maxPerClient;
+    private final int queueCapacity;
+    private final long timeoutMs;
+    private final long sendTimeoutNanos;
+    private final int maxExtraSenders;
+    private int extraSenders;
+    private final long maxWindowDays;
+    private final Counter sent;
+    private final Counter evicted;
+
+    public AvailabilityStreamServiceImpl(MeterRegistry meterRegistry,
+                                         @Value("${app.availability-stream.max-subscribers:2000}") int maxSubscribers,
+                                         @Value("${app.availability-stream.max-subscribers-per-client:5}") int maxPerClient,
+                                         @Value("${app.availability-stream.queue-capacity:64}") int queueCapacity,
+                                         @Value("${app.availability-stream.timeout-ms:1800000}") long timeoutMs,
+                                         @Value("${app.availability-stream.send-timeout-ms:10000}") long sendTimeoutMs,
+                                         @Value("${app.availability-stream.max-window-days:366}") long maxWindowDays,
+                                         @Value("${app.availability-stream.senders:2}") int senders,
+                                         @Value("${app.availability-stream.max-extra-senders:4}") int maxExtraSenders) {
+        this.maxSubscribers = maxSubscribers;
+        this.maxPerClient = maxPerClient;
+        this.queueCapacity = queueCapacity;
+        this.timeoutMs = timeoutMs;
+        this.sendTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(sendTimeoutMs);
+        this.maxWindowDays = maxWindowDays;
+        this.maxExtraSenders = maxExtraSenders;
+
+        // Mỗi subscriber có tối đa một tác vụ chờ nên hàng đợi bị chặn bởi max-subscribers
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(senders, senders, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, POOL_NAME + "-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.senderPool = pool;
+        this.sender = ExecutorServiceMetrics.monitor(meterRegistry, pool, POOL_NAME);
+
+        Gauge.builder("availability.stream.subscribers", subscriberCount, AtomicInteger::get)
+                .register(meterRegistry);
+        this.sent = Counter.builder("availability.stream.sent")
+                .description("Availability events written to subscribers")
+                .register(meterRegistry);
+        this.evicted = Counter.builder("availability.stream.evicted")
+                .description("Subscribers disconnected for falling behind or not reading")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        sender.shutdownNow();
+        subscribers.forEach(subscriber -> {
+            remove(subscriber);
+            complete(subscriber);
+        });
+    }
+
+    @Override
+    public SseEmitter subscribe(Long roomId, String roomType, LocalDate from, LocalDate to, String clientKey) {
+        if (roomId == null && (roomType == null || roomType.isBlank())) {
+            throw new BadRequestException("Either roomId or roomType is required");
+        }
+        if (from == null || to == null || !from.isBefore(to)) {
+            throw new BadRequestException("from must be before to");
+        }
+        if (ChronoUnit.DAYS.between(from, to) > maxWindowDays) {
+            throw new BadRequestException("The date window can span at most " + maxWindowDays + " days");
+        }
+        if (!acquireClientSlot(clientKey)) {
+            throw new ServiceBusyException("Too many availability streams from this client, please retry later", 30);
+        }
+        if (subscriberCount.incrementAndGet() > maxSubscribers) {
+            subscriberCount.decrementAndGet();
+            releaseClientSlot(clientKey);
+            throw new ServiceBusyException("Too many availability subscribers, please retry later", 30);
+        }
+
+        SseEmitter emitter = newEmitter(timeoutMs);
+        Subscriber subscriber = new Subscriber(emitter, clientKey, roomId,
+                roomId == null ? roomType.toLowerCase(Locale.ROOT) : null, from, to,
+                new ArrayBlockingQueue<>(queueCapacity));
+        emitter.onCompletion(() -> remove(subscriber));
+        emitter.onTimeout(() -> remove(subscriber));
+        emitter.onError(error -> remove(subscriber));
+
+        subscribers.add(subscriber);
+        if (subscriber.roomId != null) {
+            byRoom.computeIfAbsent(subscriber.roomId, id -> ConcurrentHashMap.newKeySet()).add(subscriber);
+        } else {
+            byRoomType.computeIfAbsent(subscriber.roomType, type -> ConcurrentHashMap.newKeySet()).add(subscriber);
+        }
+        try {
+            // Gửi ngay để header được flush; trình duyệt kết nối lại sau 5 giây nếu bị ngắt
+            emitter.send(SseEmitter.event().reconnectTime(5000).comment("subscribed"));
+        } catch (IOException e) {
+            close(subscriber);
+        }
+        return emitter;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onAvailabilityChanged(AvailabilityChangedEvent event) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        for (AvailabilityDelta delta : event.getDeltas()) {
+            Message message = new Message(sequence.incrementAndGet(), delta);
+            deliver(byRoom.get(delta.getRoomId()), message);
+            if (delta.getRoomType() != null) {
+                deliver(byRoomType.get(delta.getRoomType().toLowerCase(Locale.ROOT)), message);
+            }
+        }
+    }
+
+    @Override
+    public void sendHeartbeats() {
+        long now = System.nanoTime();
+        for (Subscriber subscriber : subscribers) {
+            long started = subscriber.sendStartedNanos;
+            if (subscriber.sendState.get() == SENDING && now - started > sendTimeoutNanos
+                    && subscriber.sendState.compareAndSet(SENDING, STALLED)) {
+                // Client không đọc nữa: ngắt kết nối và, trong giới hạn, bù một luồng gửi cho tới khi send trả về
+                evicted.increment();
+                log.debug("Disconnecting stalled availability subscriber for room {} / type {}",
+                        subscriber.roomId, subscriber.roomType);
+                close(subscriber);
+                if (growSenders() && !subscriber.sendState.compareAndSet(STALLED, COMPENSATED)) {
+                    // Send vừa trả về
+                    shrinkSenders();
+                }
+            } else {
+                enqueue(subscriber, HEARTBEAT);
+            }
+        }
+    }
+
+    private void deliver(Set<Subscriber> targets, Message message) {
+        if (targets == null) {
+            return;
+        }
+        for (Subscriber subscriber : targets) {
+            if (subscriber.overlaps(message.delta)) {
+                enqueue(subscriber, message);
+            }
+        }
+    }
+
+    private void enqueue(Subscriber subscriber, Message message) {
+        if (subscriber.closed.get()) {
+            return;
+        }
+        if (!subscriber.queue.offer(message)) {
+            evicted.increment();
+            log.debug("Disconnecting slow availability subscriber for room {} / type {}",
+                    subscriber.roomId, subscriber.roomType);
+            close(subscriber);
+            return;
+        }
+        schedule(subscriber);
+    }
+
+    private void schedule(Subscriber subscriber) {
+        if (subscriber.draining.compareAndSet(false, true)) {
+            try {
+                sender.execute(() -> drain(subscriber));
+            } catch (RejectedExecutionException e) {
+                subscriber.draining.set(false);
+            }
+        }
+    }
+
+    private void drain(Subscriber subscriber) {
+        try {
+            Message message;
+            while (!subscriber.closed.get() && (message = subscriber.queue.poll()) != null) {
+                if (message == HEARTBEAT) {
+                    send(subscriber, SseEmitter.event().comment("heartbeat"));
+                } else {
+                    send(subscriber, SseEmitter.event()
+                            .id(Long.toString(message.id))
+                            .name("availability")
+                            .data(message.delta, MediaType.APPLICATION_JSON));
+                    sent.increment();
+                }
+            }
+        } catch (Exception e) {
+            // Client đã ngắt kết nối
+            close(subscriber);
+        } finally {
+            subscriber.draining.set(false);
+        }
+        if (subscriber.closed.get()) {
+            // close() không complete khi đang gửi dở để khỏi chờ send bị treo
+            complete(subscriber);
+        } else if (!subscriber.queue.isEmpty()) {
+            // Tin nhắn đến sau lần poll cuối nhưng trước khi cờ được xóa
+            schedule(subscriber);
+        }
+    }
+
+    private void send(Subscriber subscriber, SseEmitter.SseEventBuilder event) throws IOException {
+        subscriber.sendStartedNanos = System.nanoTime();
+        subscriber.sendState.set(SENDING);
+        try {
+            subscriber.emitter.send(event);
+        } finally {
+            if (subscriber.sendState.getAndSet(IDLE) == COMPENSATED) {
+                // Heartbeat đã bù một luồng cho send này
+                shrinkSenders();
+            }
+        }
+    }
+
+    // Tăng max trước core, giảm core trước max: luôn giữ core <= max
+    private synchronized boolean growSenders() {
+        if (extraSenders >= maxExtraSenders) {
+            return false;
+        }
+        extraSenders++;
+        senderPool.setMaximumPoolSize(senderPool.getMaximumPoolSize() + 1);
+        senderPool.setCorePoolSize(senderPool.getCorePoolSize() + 1);
+        return true;
+    }
+
+    private synchronized void shrinkSenders() {
+        extraSenders--;
+        senderPool.setCorePoolSize(senderPool.getCorePoolSize() - 1);
+        senderPool.setMaximumPoolSize(senderPool.getMaximumPoolSize() - 1);
+    }
+
+    SseEmitter newEmitter(long timeoutMs) {
+        return new SseEmitter(timeoutMs);
+    }
+
+    /**
+     * Removes the subscriber and completes its stream, unless a send is in progress: then the
+     * sending thread completes it when the send returns, since {@code complete()} would wait
+     * for that send.
+     */
+    private void close(Subscriber subscriber) {
+        if (!remove(subscriber)) {
+            return;
+        }
+        if (!subscriber.draining.get()) {
+            complete(subscriber);
+        }
+    }
+
+    private static void complete(Subscriber subscriber) {
+        try {
+            subscriber.emitter.complete();
+        } catch (Exception e) {
+            log.debug("Could not complete availability stream: {}", e.getMessage());
+        }
+    }
+
+    private boolean remove(Subscriber subscriber) {
+        if (!subscriber.closed.compareAndSet(false, true)) {
+            return false;
+        }
+        subscribers.remove(subscriber);
+        if (subscriber.roomId != null) {
+            byRoom.computeIfPresent(subscriber.roomId, (id, set) -> {
+                set.remove(subscriber);
+                return set.isEmpty() ? null : set;
+            });
+        } else {
+            byRoomType.computeIfPresent(subscriber.roomType, (type, set) -> {
+                set.remove(subscriber);
+                return set.isEmpty() ? null : set;
+            });
+        }
+        subscriber.queue.clear();
+        subscriberCount.decrementAndGet();
+        releaseClientSlot(subscriber.clientKey);
+        return true;
+    }
+
+    private boolean acquireClientSlot(String clientKey) {
+        boolean[] acquired = new boolean[1];
+        perClient.compute(clientKey, (key, count) -> {
+            int current = count == null ? 0 : count;
+            if (current >= maxPerClient) {
+                return count;
+            }
+            acquired[0] = true;
+            return current + 1;
+        });
+        return acquired[0];
+    }
+
+    private void releaseClientSlot(String clientKey) {
+        perClient.computeIfPresent(clientKey, (key, count) -> count > 1 ? count - 1 : null);
+    }
+
+    private static final class Message {
+        private final long id;
+        private final AvailabilityDelta delta;
+
+        private Message(long id, AvailabilityDelta delta) {
+            this.id = id;
+            this.delta = delta;
+        }
+    }
+
+    private static final class Subscriber {
+        private final SseEmitter emitter;
+        private final String clientKey;
+        private final Long roomId;
+        private final String roomType;
+        private final LocalDate from;
+        private final LocalDate to;
+        private final BlockingQueue<Message> queue;
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private final AtomicInteger sendState = new AtomicInteger(IDLE);
+        private volatile long sendStartedNanos;
+
+        private Subscriber(SseEmitter emitter, String clientKey, Long roomId, String roomType, LocalDate from,
+                           LocalDate to, BlockingQueue<Message> queue) {
+            this.emitter = emitter;
+            this.clientKey = clientKey;
+            this.roomId = roomId;
+            this.roomType = roomType;
+            this.from = from;
+            this.to = to;
+            this.queue = queue;
+        }
+
+        // Khoảng lưu trú [checkIn, checkOut) giao với [from, to)
+        private boolean overlaps(AvailabilityDelta delta) {
+            return delta.getCheckInDate().isBefore(to) && delta.getCheckOutDate().isAfter(from);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.project.hotel.service.impl;
+
+import com.project.hotel.repository.BlobRefRepository;
+import com.project.hotel.service.BlobService;
+import com.project.hotel.storage.BlobKeys;
+import com.project.hotel.storage.BlobStore;
+import com.project.hotel.storage.StagedBlob;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+
+/**
+ * Reference counting for {@link BlobStore}.
+ * <p>
+ * Ordering is what keeps files and counts consistent without a global lock: a writer
+ * increments the count (taking the {@code blob_refs} row lock) before publishing the file,
+ * and a deleter (the upload cleanup job) locks the row, re-checks that the count is still
+ * zero and only then removes the file and the row. Whichever gets the row first wins; the
+ * other sees its result.
+ */
+@Slf4j
+@Service
+public class BlobServiceImpl implements BlobService {
+
+    private final BlobStore blobStore;
+    private final BlobRefRepository blobRefRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate newTransactionTemplate;
+
+    public BlobServiceImpl(BlobStore blobStore, BlobRefRepository blobRefRepository,
+                           PlatformTransactionManager transactionManager) {
+        this.blobStore = blobStore;
+        this.blobRefRepository = blobRefRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.newTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.newTransactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @Override
+    public StagedBlob stage(InputStream content) throws IOException {
+        return blobStore.stage(content);
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void publish(StagedBlob blob, boolean referenced) throws IOException {
+        blobRefRepository.register(blob.getKey(), referenced ? 1 : 0, blob.getSize(), blob.getContentType());
+        blobStore.commit(blob);
+    }
+
+    @Override
+    public void discard(StagedBlob blob) {
+        blobStore.discard(blob);
+    }
+
+    @Override
+    public void store(StagedBlob blob) throws IOException {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                try {
+                    publish(blob, false);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            blobStore.discard(blob);
+        }
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void addReferences(Collection<String> imageUrls) {
+        for (String imageUrl : imageUrls) {
+            String key = BlobKeys.fromUrl(imageUrl);
+            if (key != null && blobRefRepository.addReference(key) == 0) {
+                log.warn("Image {} references an unknown blob", imageUrl);
+            }
+        }
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void releaseReferences(Collection<String> imageUrls) {
+        for (String imageUrl : imageUrls) {
+            String key = BlobKeys.fromUrl(imageUrl);
+            if (key != null && blobRefRepository.releaseReference(key) == 0) {
+                log.warn("Image {} released a blob that had no references", imageUrl);
+            }
+        }
+    }
+
+    @Override
+    public boolean deleteIfUnreferenced(String key) {
+        try {
+            return Boolean.TRUE.equals(newTransactionTemplate.execute(status -> {
+                Integer refCount = blobRefRepository.lockRefCount(key);
+                if (refCount == null || refCount > 0) {
+                    return false;
+                }
+                try {
+                    blobStore.delete(key);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                blobRefRepository.deleteById(key);
+                return true;
+            }));
+        } catch (RuntimeException e) {
+            // Dòng vẫn còn với ref_count = 0; lần dọn sau sẽ thử lại
+            log.warn("Could not delete unreferenced blob {}: {}", key, e.getMessage());
+            return false;
+        }
+    }
+}
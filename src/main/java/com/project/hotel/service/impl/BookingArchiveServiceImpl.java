@@ -0,0 +1,69 @@
+package com.project.hotel.service.impl;
+
+import com.project.hotel.constant.BookingStatus;
+import com.project.hotel.constant.PaymentStatus;
+import com.project.hotel.entity.ArchivedBooking;
+import com.project.hotel.repository.ArchivedBookingRepository;
+import com.project.hotel.repository.BookingRepository;
+import com.project.hotel.repository.PaymentRepository;
+import com.project.hotel.service.BookingArchiveService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BookingArchiveServiceImpl implements BookingArchiveService {
+
+    private static final Set<BookingStatus> ARCHIVABLE_STATUSES =
+            EnumSet.of(BookingStatus.COMPLETED, BookingStatus.CANCELLED);
+    // Giao dịch còn đang xử lý (chờ thanh toán, chờ/lỗi hoàn tiền) phải ở lại bảng chính
+    // để reconciliation, refund sweeper và admin vẫn thấy được
+    private static final Set<PaymentStatus> OPEN_PAYMENT_STATUSES =
+            EnumSet.of(PaymentStatus.PENDING, PaymentStatus.REFUND_PENDING, PaymentStatus.REFUND_FAILED);
+
+    private final BookingRepository bookingRepository;
+    private final PaymentRepository paymentRepository;
+    private final ArchivedBookingRepository archivedBookingRepository;
+
+    @Override
+    @Transactional
+    public int archiveChunk(LocalDate horizon, int chunkSize) {
+        List<Long> ids = bookingRepository.findArchivableIds(
+                ARCHIVABLE_STATUSES, OPEN_PAYMENT_STATUSES, horizon, PageRequest.of(0, chunkSize));
+        if (ids.isEmpty()) {
+            return 0;
+        }
+
+        // Copy first, then delete children before parents so the FK from payments never dangles
+        int payments = archivedBookingRepository.copyPaymentsOfBookings(ids);
+        int bookings = archivedBookingRepository.copyBookings(ids);
+        paymentRepository.deleteAllByBookingIdIn(ids);
+        bookingRepository.deleteAllByIdIn(ids);
+
+        log.debug("Archived {} bookings and {} payments (ids {}..{})",
+                bookings, payments, ids.get(0), ids.get(ids.size() - 1));
+        return bookings;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<ArchivedBooking> findByBookingReference(String bookingReference) {
+        return archivedBookingRepository.findByBookingReference(bookingReference);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<ArchivedBooking> findByUserId(Long userId) {
+        return archivedBookingRepository.findByUserIdOrderByBookingDateDesc(userId);
+    }
+}
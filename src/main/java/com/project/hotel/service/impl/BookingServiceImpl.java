@@ -1,29 +1,54 @@
 package com.project.hotel.service.impl;
 
+import com.project.hotel.dto.AvailabilityCalendarDTO;
+import com.project.hotel.dto.BatchItemDTO;
 import com.project.hotel.dto.BookingDTO;
 import com.project.hotel.dto.RoomDTO;
+import com.project.hotel.entity.ArchivedBooking;
 import com.project.hotel.entity.Booking;
 import com.project.hotel.entity.Room;
 import com.project.hotel.entity.User;
 import com.project.hotel.entity.Payment;
+import com.project.hotel.event.AvailabilityChangedEvent;
+import com.project.hotel.event.AvailabilityDelta;
+import com.project.hotel.event.RefundRequestedEvent;
 import com.project.hotel.repository.BookingRepository;
+import com.project.hotel.repository.FieldProjectionRepository;
+import com.project.hotel.repository.RoomRepository;
+import com.project.hotel.service.BookingArchiveService;
 import com.project.hotel.service.BookingService;
+import com.project.hotel.service.PaymentStateMachine;
 import com.project.hotel.service.RoomService;
 import com.project.hotel.service.UserService;
 import com.project.hotel.constant.BookingStatus;
 import com.project.hotel.constant.PaymentStatus;
+import com.project.hotel.constant.PaymentTransitionSource;
 import com.project.hotel.exception.ResourceNotFoundException;
 import com.project.hotel.exception.ValidationException;
+import com.project.hotel.exception.BadRequestException;
 import com.project.hotel.exception.BookingException;
+import com.project.hotel.util.BatchIds;
+import com.project.hotel.util.FieldSelection;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
 import java.math.BigDecimal;
@@ -37,6 +62,42 @@ public class BookingServiceImpl implements BookingService {
     private final BookingRepository bookingRepository;
     private final UserService userService;
     private final RoomService roomService;
+    private final BookingArchiveService bookingArchiveService;
+    private final RoomRepository roomRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final PaymentStateMachine paymentStateMachine;
+    private final FieldProjectionRepository fieldProjectionRepository;
+
+    @Value("${app.batch-get.max-ids:100}")
+    private int maxBatchIds;
+
+    @Value("${app.calendar.max-days:366}")
+    private int maxCalendarDays;
+
+    // Các thuộc tính của BookingDTO chọn được qua fields=, theo thứ tự trả về
+    private static final Map<String, String> BOOKING_FIELDS = new LinkedHashMap<>();
+    private static final Map<String, String> ARCHIVED_BOOKING_FIELDS = new LinkedHashMap<>();
+
+    static {
+        BOOKING_FIELDS.put("id", "id");
+        BOOKING_FIELDS.put("userId", "user.id");
+        BOOKING_FIELDS.put("roomId", "room.id");
+        BOOKING_FIELDS.put("bookingReference", "bookingReference");
+        BOOKING_FIELDS.put("checkInDate", "checkInDate");
+        BOOKING_FIELDS.put("checkOutDate", "checkOutDate");
+        BOOKING_FIELDS.put("totalPrice", "totalPrice");
+        BOOKING_FIELDS.put("status", "status");
+        BOOKING_FIELDS.put("bookingDate", "bookingDate");
+        BOOKING_FIELDS.put("guestFullName", "guestFullName");
+        BOOKING_FIELDS.put("guestEmail", "guestEmail");
+        BOOKING_FIELDS.put("numOfAdults", "numOfAdults");
+        BOOKING_FIELDS.put("numOfChildren", "numOfChildren");
+        BOOKING_FIELDS.put("totalNumberOfGuest", "numberOfGuests");
+
+        ARCHIVED_BOOKING_FIELDS.putAll(BOOKING_FIELDS);
+        ARCHIVED_BOOKING_FIELDS.put("userId", "userId");
+        ARCHIVED_BOOKING_FIELDS.put("roomId", "roomId");
+    }
 
     @Override
     @Transactional
@@ -70,6 +131,7 @@ public class BookingServiceImpl implements BookingService {
 
             Booking savedBooking = bookingRepository.save(booking);
             updateRoomAvailability(room, false);
+            publishAvailability(AvailabilityDelta.of(savedBooking, false));
 
             log.info("Created new booking with reference: {}", savedBooking.getBookingReference());
             return convertToDTO(savedBooking);
@@ -104,14 +166,28 @@ public class BookingServiceImpl implements BookingService {
         }
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public List<BatchItemDTO<BookingDTO>> getBookingsByIds(List<Long> ids) {
+        Set<Long> distinct = BatchIds.distinct(ids, maxBatchIds);
+        Map<Long, BookingDTO> bookings = bookingRepository.findAllById(distinct).stream()
+                .collect(Collectors.toMap(Booking::getId, this::convertToDTO));
+        return BatchIds.inRequestOrder(ids, bookings);
+    }
+
     @Override
     @Transactional(readOnly = true)
     public List<BookingDTO> getBookingsByUserId(Long userId) {
         try {
             User user = userService.findUserEntityById(userId);
-            return bookingRepository.findByUser(user).stream()
+            List<BookingDTO> bookings = bookingRepository.findByUser(user).stream()
                     .map(this::convertToDTO)
                     .collect(Collectors.toList());
+            // Lịch sử đặt phòng bao gồm cả các đơn đã được lưu trữ
+            bookingArchiveService.findByUserId(userId).stream()
+                    .map(this::convertArchivedToDTO)
+                    .forEach(bookings::add);
+            return bookings;
         } catch (Exception e) {
             log.error("Error getting bookings for user {}: {}", userId, e.getMessage(), e);
             throw new BookingException("Failed to get user bookings: " + e.getMessage(), e);
@@ -162,6 +238,55 @@ public class BookingServiceImpl implements BookingService {
         }
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public List<Map<String, Object>> getBookingFields(String fields, Long userId, Long roomId, String status,
+                                                      LocalDate startDate, LocalDate endDate) {
+        Set<String> selected = FieldSelection.parse(fields, BOOKING_FIELDS.keySet());
+
+        String where = null;
+        Map<String, Object> parameters = new HashMap<>();
+        if (userId != null) {
+            userService.findUserEntityById(userId);
+            where = "e.user.id = :userId";
+            parameters.put("userId", userId);
+        } else if (roomId != null) {
+            roomService.findRoomEntityById(roomId);
+            where = "e.room.id = :roomId";
+            parameters.put("roomId", roomId);
+        } else if (status != null) {
+            try {
+                parameters.put("status", BookingStatus.valueOf(status.toUpperCase()));
+            } catch (IllegalArgumentException e) {
+                throw new ValidationException("Invalid booking status: " + status);
+            }
+            where = "e.status = :status";
+        } else if (startDate != null || endDate != null) {
+            validateDateRange(startDate, endDate);
+            where = "(e.checkInDate BETWEEN :startDate AND :endDate) OR (e.checkOutDate BETWEEN :startDate AND :endDate)";
+            parameters.put("startDate", startDate);
+            parameters.put("endDate", endDate);
+        }
+
+        List<Map<String, Object>> bookings = new ArrayList<>(fieldProjectionRepository.select(
+                "Booking", columnsOf(selected, BOOKING_FIELDS), where, parameters));
+        if (userId != null) {
+            // Lịch sử đặt phòng bao gồm cả các đơn đã được lưu trữ
+            bookings.addAll(fieldProjectionRepository.select("ArchivedBooking",
+                    columnsOf(selected, ARCHIVED_BOOKING_FIELDS), "e.userId = :userId", parameters));
+        }
+        if (selected.contains("status")) {
+            bookings.forEach(booking -> booking.computeIfPresent("status", (key, value) -> ((BookingStatus) value).name()));
+        }
+        return bookings;
+    }
+
+    private static Map<String, String> columnsOf(Set<String> selected, Map<String, String> paths) {
+        Map<String, String> columns = new LinkedHashMap<>();
+        selected.forEach(field -> columns.put(field, paths.get(field)));
+        return columns;
+    }
+
     @Override
     @Transactional
     public BookingDTO updateBookingStatus(Long id, String status) {
@@ -174,6 +299,12 @@ public class BookingServiceImpl implements BookingService {
 
             if (newStatus == BookingStatus.CANCELLED || newStatus == BookingStatus.COMPLETED) {
                 updateRoomAvailability(booking.getRoom(), true);
+                publishAvailability(AvailabilityDelta.of(booking, true));
+            }
+
+            if (newStatus == BookingStatus.CANCELLED && booking.getPayment() != null
+                    && booking.getPayment().getStatus() == PaymentStatus.PAID) {
+                handleRefund(booking.getPayment());
             }
 
             Booking updatedBooking = bookingRepository.save(booking);
@@ -198,10 +329,12 @@ public class BookingServiceImpl implements BookingService {
             if (!booking.getCheckInDate().equals(bookingDTO.getCheckInDate()) ||
                     !booking.getCheckOutDate().equals(bookingDTO.getCheckOutDate())) {
                 validateRoomAvailability(booking.getRoom(), bookingDTO.getCheckInDate(), bookingDTO.getCheckOutDate());
+                AvailabilityDelta released = AvailabilityDelta.of(booking, true);
                 booking.setCheckInDate(bookingDTO.getCheckInDate());
                 booking.setCheckOutDate(bookingDTO.getCheckOutDate());
                 booking.setTotalPrice(calculateTotalPrice(booking.getRoom(),
                         bookingDTO.getCheckInDate(), bookingDTO.getCheckOutDate()));
+                publishAvailability(released, AvailabilityDelta.of(booking, false));
             }
 
             updateBookingFields(booking, bookingDTO);
@@ -221,6 +354,9 @@ public class BookingServiceImpl implements BookingService {
             Booking booking = findBookingEntityById(id);
             updateRoomAvailability(booking.getRoom(), true);
             bookingRepository.deleteById(id);
+            if (booking.getStatus() == BookingStatus.PENDING || booking.getStatus() == BookingStatus.CONFIRMED) {
+                publishAvailability(AvailabilityDelta.of(booking, true));
+            }
             log.info("Deleted booking {}", id);
         } catch (Exception e) {
             log.error("Error deleting booking: {}", e.getMessage(), e);
@@ -232,9 +368,11 @@ public class BookingServiceImpl implements BookingService {
     @Transactional(readOnly = true)
     public BookingDTO getBookingByReference(String reference) {
         try {
-            Booking booking = bookingRepository.findByBookingReference(reference)
+            return bookingRepository.findByBookingReference(reference)
+                    .map(this::convertToDTO)
+                    .or(() -> bookingArchiveService.findByBookingReference(reference)
+                            .map(this::convertArchivedToDTO))
                     .orElseThrow(() -> new ResourceNotFoundException("Booking not found with reference: " + reference));
-            return convertToDTO(booking);
         } catch (Exception e) {
             log.error("Error getting booking by reference: {}", e.getMessage(), e);
             throw new BookingException("Failed to get booking by reference: " + e.getMessage(), e);
@@ -257,8 +395,9 @@ public class BookingServiceImpl implements BookingService {
 
             booking.setStatus(BookingStatus.CANCELLED);
             updateRoomAvailability(booking.getRoom(), true);
+            publishAvailability(AvailabilityDelta.of(booking, true));
 
-            if (booking.getPayment() != null && "SUCCESS".equals(booking.getPayment().getStatus())) {
+            if (booking.getPayment() != null && booking.getPayment().getStatus() == PaymentStatus.PAID) {
                 handleRefund(booking.getPayment());
             }
 
@@ -329,6 +468,100 @@ public class BookingServiceImpl implements BookingService {
         return overlappingBookings.isEmpty();
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public AvailabilityCalendarDTO getAvailabilityCalendar(LocalDate from, LocalDate to, String roomType,
+                                                           String encoding) {
+        String format = encoding == null ? "bitmap" : encoding.toLowerCase();
+        if (!format.equals("bitmap") && !format.equals("rle")) {
+            throw new BadRequestException("Unsupported encoding: " + encoding + ", expected bitmap or rle");
+        }
+        if (from == null || to == null || !from.isBefore(to)) {
+            throw new BadRequestException("from must be before to");
+        }
+        long days = ChronoUnit.DAYS.between(from, to);
+        if (days > maxCalendarDays) {
+            throw new BadRequestException("The calendar can span at most " + maxCalendarDays + " days");
+        }
+
+        // Một lượt qua các đơn giao với khoảng ngày; mỗi đơn chiếm các đêm [checkIn, checkOut)
+        Map<Long, BitSet> taken = new HashMap<>();
+        for (BookingRepository.StayView stay : bookingRepository.findStaysOverlapping(
+                EnumSet.of(BookingStatus.PENDING, BookingStatus.CONFIRMED), from, to, roomType)) {
+            int start = (int) Math.max(0, ChronoUnit.DAYS.between(from, stay.getCheckInDate()));
+            int end = (int) Math.min(days, ChronoUnit.DAYS.between(from, stay.getCheckOutDate()));
+            if (start < end) {
+                taken.computeIfAbsent(stay.getRoomId(), id -> new BitSet((int) days)).set(start, end);
+            }
+        }
+
+        AvailabilityCalendarDTO calendar = new AvailabilityCalendarDTO();
+        calendar.setFrom(from);
+        calendar.setTo(to);
+        calendar.setDays((int) days);
+        calendar.setEncoding(format);
+        BitSet free = new BitSet();
+        for (RoomRepository.RoomSummaryView room : roomRepository.findSummaries(roomType)) {
+            BitSet nights = taken.getOrDefault(room.getId(), free);
+            String booked = format.equals("rle") ? runLengths(nights, (int) days) : bitmap(nights, (int) days);
+            calendar.getRooms().add(new AvailabilityCalendarDTO.RoomRow(room.getId(), room.getRoomNumber(),
+                    room.getRoomType(), booked));
+        }
+        return calendar;
+    }
+
+    private static String bitmap(BitSet nights, int days) {
+        // BitSet.toByteArray() dùng thứ tự little-endian nhưng bỏ các byte 0 ở cuối
+        byte[] bytes = new byte[(days + 7) / 8];
+        byte[] set = nights.toByteArray();
+        System.arraycopy(set, 0, bytes, 0, Math.min(set.length, bytes.length));
+        return Base64.getEncoder().encodeToString(bytes);
+    }
+
+    private static String runLengths(BitSet nights, int days) {
+        StringBuilder runs = new StringBuilder();
+        int position = 0;
+        boolean booked = false;
+        while (position < days) {
+            int next = booked ? nights.nextClearBit(position) : nights.nextSetBit(position);
+            int end = next < 0 ? days : Math.min(next, days);
+            if (runs.length() > 0) {
+                runs.append(',');
+            }
+            runs.append(end - position);
+            position = end;
+            booked = !booked;
+        }
+        return runs.toString();
+    }
+
+    @Override
+    @Transactional
+    public int completeCheckedOutBookings(LocalDate today, int chunkSize) {
+        List<BookingRepository.StayView> stays = bookingRepository.findStaysByStatusAndCheckOutDateBefore(
+                BookingStatus.CONFIRMED, today, PageRequest.of(0, chunkSize));
+        if (stays.isEmpty()) {
+            return 0;
+        }
+
+        List<Long> bookingIds = stays.stream().map(BookingRepository.StayView::getId).collect(Collectors.toList());
+        Set<Long> roomIds = stays.stream().map(BookingRepository.StayView::getRoomId).collect(Collectors.toSet());
+
+        int completed = bookingRepository.updateStatusByIdIn(
+                bookingIds, BookingStatus.CONFIRMED, BookingStatus.COMPLETED, LocalDateTime.now());
+        roomRepository.releaseRooms(roomIds, today);
+
+        // Một sự kiện cho cả lô thay vì một sự kiện cho mỗi đơn
+        List<AvailabilityDelta> deltas = stays.stream()
+                .map(stay -> new AvailabilityDelta(stay.getRoomId(), stay.getRoomType(),
+                        stay.getCheckInDate(), stay.getCheckOutDate(), true))
+                .collect(Collectors.toList());
+        eventPublisher.publishEvent(new AvailabilityChangedEvent(deltas));
+
+        log.debug("Completed {} checked-out bookings across {} rooms", completed, roomIds.size());
+        return completed;
+    }
+
     private void validateBookingDTO(BookingDTO bookingDTO) {
         if (bookingDTO == null) {
             throw new ValidationException("Booking data cannot be null");
@@ -431,10 +664,16 @@ public class BookingServiceImpl implements BookingService {
         roomService.updateRoom(room.getId(), convertRoomToDTO(room));
     }
 
+    // Được gửi tới các client đang theo dõi sau khi transaction commit
+    private void publishAvailability(AvailabilityDelta... deltas) {
+        eventPublisher.publishEvent(new AvailabilityChangedEvent(List.of(deltas)));
+    }
+
     private void handleRefund(Payment payment) {
-        // Implement refund logic here
-        payment.setStatus(PaymentStatus.REFUNDED);
-        // Add additional refund processing as needed
+        // Gọi cổng thanh toán sau khi commit, không giữ transaction trong lúc chờ VNPay
+        paymentStateMachine.transition(payment, PaymentStatus.REFUND_PENDING, PaymentTransitionSource.BOOKING,
+                "Booking " + payment.getBooking().getId() + " cancelled");
+        eventPublisher.publishEvent(new RefundRequestedEvent(payment.getId()));
     }
 
     private String generateBookingReference() {
@@ -469,6 +708,25 @@ public class BookingServiceImpl implements BookingService {
         return dto;
     }
 
+    private BookingDTO convertArchivedToDTO(ArchivedBooking booking) {
+        BookingDTO dto = new BookingDTO();
+        dto.setId(booking.getId());
+        dto.setUserId(booking.getUserId());
+        dto.setRoomId(booking.getRoomId());
+        dto.setBookingReference(booking.getBookingReference());
+        dto.setCheckInDate(booking.getCheckInDate());
+        dto.setCheckOutDate(booking.getCheckOutDate());
+        dto.setTotalPrice(booking.getTotalPrice());
+        dto.setStatus(booking.getStatus().name());
+        dto.setBookingDate(booking.getBookingDate());
+        dto.setGuestFullName(booking.getGuestFullName());
+        dto.setGuestEmail(booking.getGuestEmail());
+        dto.setNumOfAdults(booking.getNumOfAdults());
+        dto.setNumOfChildren(booking.getNumOfChildren());
+        dto.setTotalNumberOfGuest(booking.getNumberOfGuests());
+        return dto;
+    }
+
     private RoomDTO convertRoomToDTO(Room room) {
         RoomDTO dto = new RoomDTO();
         dto.setId(room.getId());
@@ -0,0 +1,331 @@
+package com.project.hotel.service.impl;
+
+import com.project.hotel.service.FileServingService;
+import com.project.hotel.storage.ImageBufferCache;
+import com.project.hotel.util.ImageTypeDetector;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.ServletResponseWrapper;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.catalina.connector.CoyoteOutputStream;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Serves uploaded files without copying them through the JVM heap.
+ * <p>
+ * On Tomcat the body is handed to the connector's sendfile support (the kernel copies
+ * file pages straight to the socket after the servlet returns); elsewhere, or for small
+ * files, it falls back to {@link FileChannel#transferTo}. Images hot enough to be held by
+ * {@link ImageBufferCache} are written from their off-heap buffer instead. ETags are a SHA-256 of the
+ * content, computed once per file version and cached together with the sniffed MIME type,
+ * keyed by path and validated against size and modification time. Anything that is not a
+ * recognised image is sent as an {@code application/octet-stream} attachment.
+ */
+@Service
+public class FileServingServiceImpl implements FileServingService {
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+    private static final String IMMUTABLE_CACHE_CONTROL = "public, max-age=31536000, immutable";
+    private static final String DEFAULT_CACHE_CONTROL = "public, max-age=300, must-revalidate";
+    private static final long[] UNSATISFIABLE = new long[0];
+    private static final String OCTET_STREAM = "application/octet-stream";
+
+    private final Map<Path, FileMetadata> metadataCache;
+    private final long sendfileThreshold;
+    private final ImageBufferCache imageBufferCache;
+
+    public FileServingServiceImpl(ImageBufferCache imageBufferCache,
+                                  @Value("${app.file-serving.metadata-cache-size:10000}") int metadataCacheSize,
+                                  @Value("${app.file-serving.sendfile-threshold-bytes:49152}") long sendfileThreshold) {
+        this.imageBufferCache = imageBufferCache;
+        this.metadataCache = Collections.synchronizedMap(new LinkedHashMap<>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Path, FileMetadata> eldest) {
+                return size() > metadataCacheSize;
+            }
+        });
+        this.sendfileThreshold = sendfileThreshold;
+    }
+
+    @Override
+    public void serve(Path file, boolean immutable, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        FileMetadata metadata;
+        try {
+            metadata = metadata(file);
+        } catch (NoSuchFileException e) {
+            imageBufferCache.invalidate(file);
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        response.setHeader(HttpHeaders.ETAG, metadata.etag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, metadata.lastModified);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, immutable ? IMMUTABLE_CACHE_CONTROL : DEFAULT_CACHE_CONTROL);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        if (notModified(request, metadata)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        long start = 0;
+        long end = metadata.size - 1;
+        long[] range = requestedRange(request, metadata);
+        if (range == UNSATISFIABLE) {
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + metadata.size);
+            response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            return;
+        }
+        if (range != null) {
+            start = range[0];
+            end = range[1];
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + metadata.size);
+        } else {
+            response.setStatus(HttpServletResponse.SC_OK);
+        }
+
+        long length = end - start + 1;
+        response.setContentType(metadata.contentType);
+        response.setHeader("X-Content-Type-Options", "nosniff");
+        if (OCTET_STREAM.equals(metadata.contentType)) {
+            // Không phải ảnh: buộc tải về thay vì hiển thị trong origin của ứng dụng
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment");
+        }
+        response.setContentLengthLong(length);
+        if ("HEAD".equals(request.getMethod()) || length <= 0) {
+            return;
+        }
+
+        if (imageBufferCache.isEnabled() && metadata.contentType.startsWith("image/")) {
+            ByteBuffer cached = imageBufferCache.get(file, metadata.size, metadata.lastModified, length);
+            if (cached != null) {
+                writeBuffer(cached, start, length, response);
+                return;
+            }
+        }
+
+        if (length >= sendfileThreshold && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // Tomcat gửi file bằng sendfile sau khi servlet trả về; không được ghi gì vào body
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            long remaining = length;
+            while (remaining > 0) {
+                long written = channel.transferTo(position, remaining, out);
+                if (written <= 0) {
+                    break; // File bị cắt ngắn trong lúc gửi
+                }
+                position += written;
+                remaining -= written;
+            }
+        }
+    }
+
+    /**
+     * Writes part of a cached buffer. Tomcat's own output stream accepts a ByteBuffer, so large
+     * bodies go from the direct buffer to the socket without being copied into a heap array.
+     */
+    private static void writeBuffer(ByteBuffer content, long start, long length, HttpServletResponse response)
+            throws IOException {
+        ByteBuffer body = content.duplicate();
+        body.position((int) start).limit((int) (start + length));
+
+        ServletResponse raw = response;
+        while (raw instanceof ServletResponseWrapper wrapper) {
+            raw = wrapper.getResponse();
+        }
+        if (raw != response) {
+            // Để các wrapper (header bảo mật của Spring Security) ghi header trước khi bỏ qua chúng
+            response.flushBuffer();
+        }
+        OutputStream out = raw.getOutputStream();
+        if (out instanceof CoyoteOutputStream coyote) {
+            coyote.write(body);
+            return;
+        }
+        WritableByteChannel channel = Channels.newChannel(response.getOutputStream());
+        while (body.hasRemaining()) {
+            channel.write(body);
+        }
+    }
+
+    private FileMetadata metadata(Path file) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        if (!attributes.isRegularFile()) {
+            throw new NoSuchFileException(file.toString());
+        }
+        long size = attributes.size();
+        long lastModified = attributes.lastModifiedTime().toMillis();
+
+        FileMetadata cached = metadataCache.get(file);
+        if (cached != null && cached.size == size && cached.lastModified == lastModified) {
+            return cached;
+        }
+
+        MessageDigest digest = sha256();
+        byte[] header = new byte[ImageTypeDetector.HEADER_LENGTH];
+        int headerLength = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+            while (channel.read(buffer) > 0) {
+                buffer.flip();
+                if (headerLength < header.length) {
+                    int count = Math.min(header.length - headerLength, buffer.remaining());
+                    buffer.duplicate().get(header, headerLength, count);
+                    headerLength += count;
+                }
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+
+        // Chỉ tin vào magic bytes: đoán theo đuôi file (.html, .svg) sẽ cho phép stored XSS
+        String contentType = ImageTypeDetector.detect(header, headerLength);
+        // 128 bit đầu của SHA-256 là đủ để phân biệt các phiên bản của cùng một file
+        String etag = "\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(
+                Arrays.copyOf(digest.digest(), 16)) + "\"";
+        FileMetadata metadata = new FileMetadata(size, lastModified, etag,
+                contentType != null ? contentType : OCTET_STREAM);
+        metadataCache.put(file, metadata);
+        return metadata;
+    }
+
+    private static boolean notModified(HttpServletRequest request, FileMetadata metadata) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            // If-None-Match được ưu tiên hơn If-Modified-Since (RFC 9110)
+            return etagMatches(ifNoneMatch, metadata.etag, true);
+        }
+        long ifModifiedSince = dateHeader(request, HttpHeaders.IF_MODIFIED_SINCE);
+        return ifModifiedSince != -1 && metadata.lastModified / 1000 * 1000 <= ifModifiedSince;
+    }
+
+    /**
+     * @return {start, end} inclusive, null to send the whole file, or {@link #UNSATISFIABLE}
+     */
+    private static long[] requestedRange(HttpServletRequest request, FileMetadata metadata) {
+        String header = request.getHeader(HttpHeaders.RANGE);
+        if (header == null || !header.startsWith("bytes=") || header.indexOf(',') >= 0) {
+            // Nhiều khoảng (multipart/byteranges) hiếm gặp với ảnh: trả cả file là hợp lệ
+            return null;
+        }
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange != null) {
+            boolean current = ifRange.startsWith("\"") || ifRange.startsWith("W/")
+                    ? etagMatches(ifRange, metadata.etag, false)
+                    : metadata.lastModified / 1000 * 1000 <= dateHeader(request, HttpHeaders.IF_RANGE);
+            if (!current) {
+                return null;
+            }
+        }
+
+        String spec = header.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        try {
+            long size = metadata.size;
+            long start;
+            long end;
+            if (dash == 0) {
+                long suffix = Long.parseLong(spec.substring(1));
+                if (suffix <= 0 || size == 0) {
+                    return UNSATISFIABLE;
+                }
+                start = Math.max(0, size - suffix);
+                end = size - 1;
+            } else {
+                start = Long.parseLong(spec.substring(0, dash));
+                end = dash == spec.length() - 1 ? size - 1 : Math.min(Long.parseLong(spec.substring(dash + 1)), size - 1);
+            }
+            if (start >= size || start > end) {
+                return UNSATISFIABLE;
+            }
+            return new long[]{start, end};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static boolean etagMatches(String header, String etag, boolean weakComparison) {
+        for (String candidate : header.split(",")) {
+            String value = candidate.trim();
+            if (value.equals("*")) {
+                return true;
+            }
+            if (value.startsWith("W/")) {
+                if (!weakComparison) {
+                    continue;
+                }
+                value = value.substring(2);
+            }
+            if (value.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long dateHeader(HttpServletRequest request, String name) {
+        try {
+            return request.getDateHeader(name);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static final class FileMetadata {
+        private final long size;
+        private final long lastModified;
+        private final String etag;
+        private final String contentType;
+
+        private FileMetadata(long size, long lastModified, String etag, String contentType) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.etag = etag;
+            this.contentType = contentType;
+        }
+    }
+}
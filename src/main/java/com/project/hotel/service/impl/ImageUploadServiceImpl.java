@@ -0,0 +1,277 @@
+package com.project.hotel.service.impl;
+
+import com.project.hotel.exception.BadRequestException;
+import com.project.hotel.exception.PayloadTooLargeException;
+import com.project.hotel.exception.RequestTimeoutException;
+import com.project.hotel.exception.ServiceBusyException;
+import com.project.hotel.service.BlobService;
+import com.project.hotel.service.ImageUploadService;
+import com.project.hotel.storage.StagedBlob;
+import com.project.hotel.util.ImageTypeDetector;
+import com.project.hotel.util.MultipartStream;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Nhận ảnh upload trực tiếp từ luồng request, thay cho multipart của Spring (đã tắt).
+ * <p>
+ * Spring's multipart support spools the whole request to a temp file before the controller
+ * runs, so a 2GB non-image was written to disk before anyone looked at it. Here the body is
+ * parsed incrementally with {@link MultipartStream}: the image type is sniffed from the
+ * first bytes of the file part, the size limit for that type is enforced while the bytes
+ * are copied into blob staging (same disk as the store, so publishing is a rename), and a
+ * semaphore caps how many uploads stream at once. A slot is held for at most
+ * {@code app.upload.max-duration-ms}, so clients that trickle their body cannot keep every
+ * slot busy. Exported as {@code uploads.active}, {@code uploads.rejected{reason}} and
+ * {@code uploads.size}.
+ */
+@Service
+public class ImageUploadServiceImpl implements ImageUploadService {
+
+    private static final String FILE_FIELD = "file";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // Giới hạn cho các trường không phải file và phần header/boundary của form
+    private static final long FORM_OVERHEAD_BYTES = 64 * 1024;
+
+    private final BlobService blobService;
+    private final Semaphore permits;
+    private final int maxConcurrent;
+    private final long acquireTimeoutMs;
+    private final long maxDurationNanos;
+    private final long maxPhotoBytes;
+    private final long maxGraphicBytes;
+    private final long maxRawBytes;
+    private final long maxRequestBytes;
+    private final MeterRegistry meterRegistry;
+    private final DistributionSummary uploadSize;
+
+    public ImageUploadServiceImpl(BlobService blobService, MeterRegistry meterRegistry,
+                                  @Value("${app.upload.max-concurrent:4}") int maxConcurrent,
+                                  @Value("${app.upload.acquire-timeout-ms:2000}") long acquireTimeoutMs,
+                                  @Value("${app.upload.max-duration-ms:60000}") long maxDurationMs,
+                                  @Value("${app.upload.max-bytes.photo:20MB}") DataSize maxPhotoBytes,
+                                  @Value("${app.upload.max-bytes.graphic:15MB}") DataSize maxGraphicBytes,
+                                  @Value("${app.upload.max-bytes.raw:50MB}") DataSize maxRawBytes) {
+        this.blobService = blobService;
+        this.maxConcurrent = maxConcurrent;
+        this.permits = new Semaphore(maxConcurrent, true);
+        this.acquireTimeoutMs = acquireTimeoutMs;
+        this.maxDurationNanos = TimeUnit.MILLISECONDS.toNanos(maxDurationMs);
+        this.maxPhotoBytes = maxPhotoBytes.toBytes();
+        this.maxGraphicBytes = maxGraphicBytes.toBytes();
+        this.maxRawBytes = maxRawBytes.toBytes();
+        this.maxRequestBytes = Math.max(this.maxPhotoBytes, Math.max(this.maxGraphicBytes, this.maxRawBytes))
+                + FORM_OVERHEAD_BYTES;
+        this.meterRegistry = meterRegistry;
+
+        Gauge.builder("uploads.active", permits, p -> this.maxConcurrent - p.availablePermits())
+                .description("Uploads currently streaming")
+                .register(meterRegistry);
+        Gauge.builder("uploads.waiting", permits, Semaphore::getQueueLength)
+                .description("Uploads waiting for a slot")
+                .register(meterRegistry);
+        this.uploadSize = DistributionSummary.builder("uploads.size")
+                .baseUnit("bytes")
+                .description("Size of accepted uploads")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public StagedBlob receive(HttpServletRequest request) throws IOException {
+        String boundary = MultipartStream.boundaryOf(request.getContentType());
+        if (boundary == null) {
+            reject("malformed");
+            throw new BadRequestException("Expected a multipart/form-data upload");
+        }
+        // Content-Length đã vượt giới hạn: từ chối trước khi đọc byte nào
+        if (request.getContentLengthLong() > maxRequestBytes) {
+            reject("size");
+            throw new PayloadTooLargeException("Upload exceeds the maximum size of "
+                    + DataSize.ofBytes(maxRequestBytes - FORM_OVERHEAD_BYTES).toMegabytes() + "MB");
+        }
+
+        acquire();
+        try {
+            InputStream body = new DeadlineInputStream(request.getInputStream(), System.nanoTime() + maxDurationNanos);
+            MultipartStream parts = new MultipartStream(body, boundary, BUFFER_SIZE);
+            long fieldBytes = 0;
+            MultipartStream.Part part;
+            while ((part = parts.next()) != null) {
+                if (FILE_FIELD.equals(part.getName()) && part.getFileName() != null) {
+                    return stage(part.getInputStream());
+                }
+                fieldBytes += skip(part.getInputStream(), FORM_OVERHEAD_BYTES - fieldBytes);
+            }
+            reject("malformed");
+            throw new BadRequestException("Please select a file to upload");
+        } catch (EOFException e) {
+            reject("malformed");
+            throw new BadRequestException("Upload was interrupted or is not a valid multipart body");
+        } catch (RequestTimeoutException e) {
+            reject("timeout");
+            throw e;
+        } finally {
+            permits.release();
+        }
+    }
+
+    private StagedBlob stage(InputStream part) throws IOException {
+        byte[] header = part.readNBytes(ImageTypeDetector.HEADER_LENGTH);
+        if (header.length == 0) {
+            reject("empty");
+            throw new BadRequestException("Please select a file to upload");
+        }
+        String contentType = ImageTypeDetector.detect(header, header.length);
+        if (contentType == null) {
+            reject("type");
+            throw new BadRequestException("Only JPEG, PNG, GIF, WebP, AVIF, HEIC, BMP and TIFF images can be uploaded");
+        }
+
+        long maxBytes = maxBytesFor(contentType);
+        InputStream content = new SizeLimitedInputStream(
+                new SequenceInputStream(new ByteArrayInputStream(header), part), maxBytes, contentType);
+        StagedBlob blob;
+        try {
+            blob = blobService.stage(content);
+        } catch (PayloadTooLargeException e) {
+            reject("size");
+            throw e;
+        }
+        uploadSize.record(blob.getSize());
+        return blob;
+    }
+
+    private long maxBytesFor(String contentType) {
+        switch (contentType) {
+            case "image/png":
+            case "image/gif":
+                return maxGraphicBytes;
+            case "image/bmp":
+            case "image/tiff":
+                return maxRawBytes;
+            default:
+                return maxPhotoBytes;
+        }
+    }
+
+    private void acquire() {
+        try {
+            if (!permits.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS)) {
+                reject("busy");
+                throw new ServiceBusyException("Too many uploads in progress, please retry shortly", 5);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceBusyException("Upload interrupted", 5);
+        }
+    }
+
+    private long skip(InputStream field, long budget) throws IOException {
+        byte[] buffer = new byte[4096];
+        long total = 0;
+        int read;
+        while ((read = field.read(buffer)) != -1) {
+            total += read;
+            if (total > budget) {
+                reject("malformed");
+                throw new BadRequestException("Form fields are too large");
+            }
+        }
+        return total;
+    }
+
+    private void reject(String reason) {
+        Counter.builder("uploads.rejected")
+                .tag("reason", reason)
+                .description("Uploads rejected before being stored")
+                .register(meterRegistry)
+                .increment();
+    }
+
+    /**
+     * Fails the copy as soon as one byte more than the limit has been read.
+     */
+    private static final class SizeLimitedInputStream extends FilterInputStream {
+        private final long maxBytes;
+        private final String contentType;
+        private long count;
+
+        private SizeLimitedInputStream(InputStream in, long maxBytes, String contentType) {
+            super(in);
+            this.maxBytes = maxBytes;
+            this.contentType = contentType;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                check(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                check(read);
+            }
+            return read;
+        }
+
+        private void check(int read) {
+            count += read;
+            if (count > maxBytes) {
+                throw new PayloadTooLargeException("Images of type " + contentType + " are limited to "
+                        + DataSize.ofBytes(maxBytes).toMegabytes() + "MB");
+            }
+        }
+    }
+
+    /**
+     * Fails the next read once the deadline has passed. A read that blocks on an idle client
+     * is bounded separately by the connector's read timeout (server.tomcat.connection-timeout).
+     */
+    private static final class DeadlineInputStream extends FilterInputStream {
+        private final long deadlineNanos;
+
+        private DeadlineInputStream(InputStream in, long deadlineNanos) {
+            super(in);
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        @Override
+        public int read() throws IOException {
+            check();
+            return super.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            check();
+            return super.read(b, off, len);
+        }
+
+        private void check() {
+            if (System.nanoTime() - deadlineNanos > 0) {
+                throw new RequestTimeoutException("Upload took too long, please retry on a faster connection");
+            }
+        }
+    }
+}
@@ -0,0 +1,346 @@
+package com.project.hotel.service.impl;
+
+import com.project.hotel.constant.ImageVariant;
+import com.project.hotel.entity.RoomImageVariant;
+import com.project.hotel.event.RoomImageUploadedEvent;
+import com.project.hotel.repository.RoomImageVariantRepository;
+import com.project.hotel.service.BlobService;
+import com.project.hotel.service.ImageVariantService;
+import com.project.hotel.storage.BlobKeys;
+import com.project.hotel.storage.BlobStore;
+import com.project.hotel.storage.StagedBlob;
+import com.project.hotel.util.FileUploadUtil;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Sinh ảnh thu nhỏ cho ảnh phòng bằng ImageIO/Java2D, không cần thư viện ngoài.
+ * <p>
+ * Work runs on a small bounded pool after the upload commits. Large originals are decoded
+ * with source subsampling so a 40MP photo never becomes a 160MB raster, then scaled down
+ * by repeated halving (bilinear) to each {@link ImageVariant} width and re-encoded: JPEG
+ * for opaque images, PNG when there is an alpha channel. Variants are stored as blobs through
+ * {@link BlobService}, each {@code room_image_variants} row holding one reference to its blob, so
+ * upload cleanup and the image buffer cache treat them like any other upload. The original is
+ * streamed from the {@link BlobStore} or, for legacy uploads, read from the uploads directory.
+ * <p>
+ * {@link #resolve} runs on every image request, so the variant list of each original is kept
+ * in a bounded LRU map, dropped when variants are generated or deleted.
+ */
+@Slf4j
+@Service
+public class ImageVariantServiceImpl implements ImageVariantService {
+
+    private static final String UPLOAD_DIR = "uploads";
+    private static final String POOL_NAME = "image-variants";
+
+    private final RoomImageVariantRepository variantRepository;
+    private final BlobStore blobStore;
+    private final BlobService blobService;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService executor;
+    private final Path uploadRoot;
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+    // Không phải ảnh hoặc không giải mã được: không thử lại cho tới lần khởi động sau
+    private final Set<String> failed = ConcurrentHashMap.newKeySet();
+    private final long maxSourcePixels;
+    private final float jpegQuality;
+    private final Map<String, List<ResolvedVariant>> resolveCache;
+
+    public ImageVariantServiceImpl(RoomImageVariantRepository variantRepository, BlobStore blobStore,
+                                   BlobService blobService, PlatformTransactionManager transactionManager,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${app.image-variants.workers:2}") int workers,
+                                   @Value("${app.image-variants.queue-capacity:200}") int queueCapacity,
+                                   @Value("${app.image-variants.max-source-pixels:100000000}") long maxSourcePixels,
+                                   @Value("${app.image-variants.jpeg-quality:0.82}") float jpegQuality,
+                                   @Value("${app.image-variants.resolve-cache-size:10000}") int resolveCacheSize) {
+        this.variantRepository = variantRepository;
+        this.blobStore = blobStore;
+        this.blobService = blobService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.uploadRoot = FileUploadUtil.getUploadPath(UPLOAD_DIR).toAbsolutePath().normalize();
+        this.maxSourcePixels = maxSourcePixels;
+        this.jpegQuality = jpegQuality;
+        this.resolveCache = Collections.synchronizedMap(new LinkedHashMap<>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, List<ResolvedVariant>> eldest) {
+                return size() > resolveCacheSize;
+            }
+        });
+
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, POOL_NAME + "-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.NORM_PRIORITY - 1);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        this.executor = ExecutorServiceMetrics.monitor(meterRegistry, pool, POOL_NAME);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        // Ảnh chưa xử lý xong sẽ được ImageVariantBackfillJob sinh lại
+        executor.shutdownNow();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onImageUploaded(RoomImageUploadedEvent event) {
+        submit(event.getRoomId(), event.getFileName());
+    }
+
+    @Override
+    public boolean submit(Long roomId, String fileName) {
+        if (!inFlight.add(fileName)) {
+            return true;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    generate(roomId, fileName);
+                } catch (Exception e) {
+                    failed.add(fileName);
+                    log.warn("Could not generate variants for {}: {}", fileName, e.getMessage());
+                } finally {
+                    inFlight.remove(fileName);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(fileName);
+            log.warn("Image variant queue is full, {} will be picked up by the backfill job", fileName);
+            return false;
+        }
+    }
+
+    @Override
+    public String resolve(String fileName, Integer width) {
+        if (width == null || width <= 0) {
+            return fileName;
+        }
+        List<ResolvedVariant> variants = resolveCache.get(fileName);
+        if (variants == null) {
+            // Danh sách rỗng cũng được nhớ: ảnh chưa có variant sẽ được xoá khỏi cache khi sinh xong
+            variants = variantRepository.findBySourceFileOrderByWidthAsc(fileName).stream()
+                    .map(variant -> new ResolvedVariant(variant.getWidth(), variant.getFileName()))
+                    .collect(Collectors.toList());
+            resolveCache.put(fileName, variants);
+        }
+        for (ResolvedVariant variant : variants) {
+            if (variant.width >= width) {
+                return variant.fileName;
+            }
+        }
+        return fileName;
+    }
+
+    @Override
+    public void evict(Collection<String> sourceFiles) {
+        sourceFiles.forEach(resolveCache::remove);
+    }
+
+    @Override
+    public int backfill(int limit) {
+        int queued = 0;
+        for (RoomImageVariantRepository.MissingVariantsView image
+                : variantRepository.findImagesWithoutVariants(PageRequest.of(0, limit))) {
+            String fileName = image.getImageUrl().substring(image.getImageUrl().lastIndexOf('/') + 1);
+            if (failed.contains(fileName) || inFlight.contains(fileName)) {
+                continue;
+            }
+            if (!submit(image.getRoomId(), fileName)) {
+                break;
+            }
+            queued++;
+        }
+        if (queued > 0) {
+            log.info("Queued {} room photos for variant generation", queued);
+        }
+        return queued;
+    }
+
+    private void generate(Long roomId, String fileName) throws IOException {
+        if (variantRepository.existsBySourceFile(fileName)) {
+            return;
+        }
+
+        BufferedImage image;
+        if (BlobKeys.isBlobKey(fileName)) {
+            try (InputStream content = blobStore.open(fileName)) {
+                image = decode(content);
+            }
+        } else {
+            Path source = uploadRoot.resolve(fileName).normalize();
+            if (!source.startsWith(uploadRoot) || !Files.isRegularFile(source)) {
+                throw new IOException("File not found");
+            }
+            try (InputStream content = Files.newInputStream(source)) {
+                image = decode(content);
+            }
+        }
+        int sourceWidth = image.getWidth();
+        boolean alpha = image.getColorModel().hasAlpha();
+        String format = alpha ? "png" : "jpeg";
+
+        // Từ lớn đến nhỏ, mỗi bản được thu nhỏ từ bản trước đó
+        List<ImageVariant> variants = new ArrayList<>(List.of(ImageVariant.values()));
+        variants.sort(Comparator.comparingInt(ImageVariant::getMaxWidth).reversed());
+        List<RoomImageVariant> records = new ArrayList<>();
+        List<StagedBlob> staged = new ArrayList<>();
+        try {
+            BufferedImage current = image;
+            for (ImageVariant variant : variants) {
+                // Không phóng to; riêng THUMBNAIL luôn có để đánh dấu ảnh đã được xử lý
+                if (sourceWidth <= variant.getMaxWidth() && variant != ImageVariant.THUMBNAIL) {
+                    continue;
+                }
+                current = scaleDown(current, Math.min(variant.getMaxWidth(), current.getWidth()), alpha);
+                StagedBlob blob = blobService.stage(new ByteArrayInputStream(encode(current, format)));
+                staged.add(blob);
+                records.add(new RoomImageVariant(null, roomId, fileName, variant, blob.getKey(),
+                        current.getWidth(), current.getHeight(), blob.getSize(), LocalDateTime.now()));
+            }
+
+            // Mỗi dòng variant giữ một tham chiếu tới blob của nó, ghi cùng transaction
+            transactionTemplate.executeWithoutResult(status -> {
+                for (StagedBlob blob : staged) {
+                    try {
+                        blobService.publish(blob, true);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                variantRepository.saveAll(records);
+            });
+            log.debug("Generated {} variants for {}", records.size(), fileName);
+        } catch (DataIntegrityViolationException e) {
+            // Đã được sinh bởi một lần chạy song song (upload + backfill)
+            log.debug("Variants for {} were already recorded", fileName);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            staged.forEach(blobService::discard);
+            resolveCache.remove(fileName);
+        }
+    }
+
+    private BufferedImage decode(InputStream content) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(content)) {
+            Iterator<ImageReader> readers = input == null ? Collections.emptyIterator() : ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                throw new IOException("Unsupported image format");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > maxSourcePixels) {
+                    throw new IOException("Image is too large: " + width + "x" + height);
+                }
+
+                // Giải mã ở độ phân giải vừa đủ (>= 2 lần bản lớn nhất) để tiết kiệm bộ nhớ
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = Math.max(1, width / (ImageVariant.FULL.getMaxWidth() * 2));
+                if (subsampling > 1) {
+                    param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                }
+                BufferedImage image = reader.read(0, param);
+                if (image == null) {
+                    throw new IOException("Could not decode image");
+                }
+                return image;
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static BufferedImage scaleDown(BufferedImage source, int targetWidth, boolean alpha) {
+        int targetHeight = Math.max(1, (int) Math.round((double) source.getHeight() * targetWidth / source.getWidth()));
+        BufferedImage current = source;
+        int width = source.getWidth();
+        int height = source.getHeight();
+        do {
+            // Thu nhỏ từng nửa một cho chất lượng gần với bicubic nhưng nhanh hơn nhiều
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+            BufferedImage next = new BufferedImage(width, height,
+                    alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = next.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                graphics.drawImage(current, 0, 0, width, height, null);
+            } finally {
+                graphics.dispose();
+            }
+            current = next;
+        } while (width != targetWidth || height != targetHeight);
+        return current;
+    }
+
+    private byte[] encode(BufferedImage image, String format) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ImageWriter writer = ImageIO.getImageWritersByFormatName(format).next();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(bytes)) {
+            writer.setOutput(output);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (param.canWriteCompressed() && !format.equals("png")) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(jpegQuality);
+                param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+            }
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return bytes.toByteArray();
+    }
+
+    private static final class ResolvedVariant {
+        private final int width;
+        private final String fileName;
+
+        private ResolvedVariant(int width, String fileName) {
+            this.width = width;
+            this.fileName = fileName;
+        }
+    }
+}
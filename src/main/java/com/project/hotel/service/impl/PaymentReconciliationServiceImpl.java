@@ -0,0 +1,321 @@
+package com.project.hotel.service.impl;
+
+import com.project.hotel.client.VNPayApiClient;
+import com.project.hotel.constant.BookingStatus;
+import com.project.hotel.constant.PaymentStatus;
+import com.project.hotel.constant.PaymentTransitionSource;
+import com.project.hotel.dto.ReconciliationReportDTO;
+import com.project.hotel.entity.Payment;
+import com.project.hotel.event.AvailabilityChangedEvent;
+import com.project.hotel.event.AvailabilityDelta;
+import com.project.hotel.event.RefundRequestedEvent;
+import com.project.hotel.repository.PaymentRepository;
+import com.project.hotel.service.PaymentReconciliationService;
+import com.project.hotel.service.PaymentStateMachine;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Slf4j
+@Service
+public class PaymentReconciliationServiceImpl implements PaymentReconciliationService {
+
+    private static final Set<PaymentStatus> RECONCILED_STATUSES =
+            EnumSet.of(PaymentStatus.PENDING, PaymentStatus.PAID, PaymentStatus.FAILED);
+    private static final String TRANSACTION_NOT_FOUND = "91";
+    private static final int MAX_REPORT_ENTRIES = 10_000;
+
+    private final PaymentRepository paymentRepository;
+    private final VNPayApiClient vnPayApiClient;
+    private final PaymentStateMachine paymentStateMachine;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ExecutorService executor;
+    private final Semaphore permits;
+    private final int pageSize;
+
+    public PaymentReconciliationServiceImpl(PaymentRepository paymentRepository, VNPayApiClient vnPayApiClient,
+                                            PaymentStateMachine paymentStateMachine,
+                                            PlatformTransactionManager transactionManager,
+                                            ApplicationEventPublisher eventPublisher,
+                                            @Value("${app.reconciliation.concurrency:8}") int concurrency,
+                                            @Value("${app.reconciliation.page-size:200}") int pageSize) {
+        this.paymentRepository = paymentRepository;
+        this.vnPayApiClient = vnPayApiClient;
+        this.paymentStateMachine = paymentStateMachine;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.eventPublisher = eventPublisher;
+        this.pageSize = pageSize;
+        this.permits = new Semaphore(concurrency);
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(concurrency, runnable -> {
+            Thread thread = new Thread(runnable, "payment-reconciliation-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public ReconciliationReportDTO reconcile(LocalDateTime from, LocalDateTime to) {
+        ReconciliationReportDTO report = new ReconciliationReportDTO();
+        report.setFrom(from);
+        report.setTo(to);
+        report.setStartedAt(LocalDateTime.now());
+
+        long afterId = 0;
+        while (true) {
+            List<PaymentRepository.ReconciliationView> page = paymentRepository.findReconciliationPage(
+                    RECONCILED_STATUSES, from, to, afterId, PageRequest.of(0, pageSize));
+            if (page.isEmpty()) {
+                break;
+            }
+            afterId = page.get(page.size() - 1).getId();
+
+            List<Outcome> outcomes = checkAll(page);
+
+            applyCorrections(outcomes.stream().filter(o -> o.target != null).collect(Collectors.toList()));
+            outcomes.forEach(outcome -> record(report, outcome));
+
+            if (page.size() < pageSize) {
+                break;
+            }
+        }
+
+        report.setFinishedAt(LocalDateTime.now());
+        log.info("Reconciled {} payments between {} and {}: {} corrected, {} mismatched, {} errors",
+                report.getChecked(), from, to, report.getCorrected(), report.getMismatched(), report.getErrors());
+        return report;
+    }
+
+    /**
+     * Queries the gateway for every payment of the page, at most {@code concurrency} calls at a
+     * time. A call is only submitted once a permit is free, so it starts immediately and the
+     * client's request timeout ({@code vnpay.api-timeout-ms}) bounds it from that point.
+     */
+    private List<Outcome> checkAll(List<PaymentRepository.ReconciliationView> page) {
+        List<CompletableFuture<Outcome>> futures = new ArrayList<>(page.size());
+        page.forEach(payment -> futures.add(new CompletableFuture<>()));
+        for (int i = 0; i < page.size(); i++) {
+            PaymentRepository.ReconciliationView payment = page.get(i);
+            CompletableFuture<Outcome> future = futures.get(i);
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                // Các lệnh gọi chưa bắt đầu sẽ bỏ qua cổng thanh toán khi thấy future đã xong
+                for (int j = 0; j < page.size(); j++) {
+                    futures.get(j).complete(Outcome.error(page.get(j), "Reconciliation interrupted"));
+                }
+                break;
+            }
+            try {
+                executor.execute(() -> {
+                    try {
+                        if (!future.isDone()) {
+                            future.complete(check(payment));
+                        }
+                    } catch (RuntimeException e) {
+                        future.complete(Outcome.error(payment, e.getClass().getSimpleName() + ": " + e.getMessage()));
+                    } finally {
+                        permits.release();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                permits.release();
+                future.complete(Outcome.error(payment, "Reconciliation pool is shut down"));
+            }
+        }
+        return futures.stream().map(CompletableFuture::join).collect(Collectors.toList());
+    }
+
+    private Outcome check(PaymentRepository.ReconciliationView payment) {
+        Map<String, String> gateway = vnPayApiClient.queryTransaction(payment.getTxnRef(),
+                VNPayApiClient.transactionDateOf(payment.getTxnRef()));
+        String responseCode = gateway.get("vnp_ResponseCode");
+        String transactionStatus = gateway.get("vnp_TransactionStatus");
+        PaymentStatus local = payment.getStatus();
+
+        if (!"00".equals(responseCode)) {
+            if (TRANSACTION_NOT_FOUND.equals(responseCode) && local == PaymentStatus.PAID) {
+                return Outcome.mismatch(payment, "NOT_FOUND", "Paid locally but unknown to the gateway");
+            }
+            if (TRANSACTION_NOT_FOUND.equals(responseCode)) {
+                return Outcome.pending(payment, "NOT_FOUND");
+            }
+            return Outcome.error(payment, "Gateway response code " + responseCode);
+        }
+
+        if ("00".equals(transactionStatus)) {
+            long gatewayAmount = Long.parseLong(gateway.getOrDefault("vnp_Amount", "0")) / 100;
+            if (gatewayAmount != payment.getAmount().longValue()) {
+                return Outcome.mismatch(payment, transactionStatus,
+                        "Amount differs: local " + payment.getAmount() + ", gateway " + gatewayAmount);
+            }
+            if (local == PaymentStatus.PAID) {
+                return Outcome.matched(payment, transactionStatus);
+            }
+            return Outcome.correct(payment, transactionStatus, PaymentStatus.PAID, gateway.get("vnp_TransactionNo"));
+        }
+
+        if ("01".equals(transactionStatus)) {
+            return local == PaymentStatus.PAID
+                    ? Outcome.mismatch(payment, transactionStatus, "Paid locally but still pending at the gateway")
+                    : Outcome.pending(payment, transactionStatus);
+        }
+
+        switch (local) {
+            case FAILED:
+                return Outcome.matched(payment, transactionStatus);
+            case PENDING:
+                return Outcome.correct(payment, transactionStatus, PaymentStatus.FAILED, null);
+            default:
+                return Outcome.mismatch(payment, transactionStatus, "Paid locally but failed at the gateway");
+        }
+    }
+
+    private void applyCorrections(List<Outcome> corrections) {
+        if (corrections.isEmpty()) {
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            Map<Long, Outcome> byId = corrections.stream()
+                    .collect(Collectors.toMap(o -> o.paymentId, Function.identity()));
+            List<Payment> payments = paymentRepository.findAllById(byId.keySet());
+            List<AvailabilityDelta> released = new ArrayList<>();
+            List<Long> refunds = new ArrayList<>();
+            for (Payment payment : payments) {
+                Outcome outcome = byId.get(payment.getId());
+                if (payment.getStatus() != outcome.localStatus) {
+                    // Changed by a callback while we were querying; the newer state wins
+                    outcome.skip("Changed concurrently to " + payment.getStatus());
+                    continue;
+                }
+                if (!paymentStateMachine.canTransition(payment.getStatus(), outcome.target)) {
+                    outcome.skip("Transition to " + outcome.target + " is not allowed");
+                    continue;
+                }
+                paymentStateMachine.transition(payment, outcome.target, PaymentTransitionSource.RECONCILIATION,
+                        "Gateway transaction status " + outcome.gatewayStatus);
+                if (payment.getTransactionId() == null && outcome.transactionNo != null) {
+                    payment.setTransactionId(outcome.transactionNo);
+                }
+                BookingStatus bookingStatus = payment.getBooking().getStatus();
+                if (bookingStatus == BookingStatus.PENDING) {
+                    payment.getBooking().setStatus(outcome.target == PaymentStatus.PAID
+                            ? BookingStatus.CONFIRMED
+                            : BookingStatus.CANCELLED);
+                    if (outcome.target != PaymentStatus.PAID) {
+                        released.add(AvailabilityDelta.of(payment.getBooking(), true));
+                    }
+                } else if (outcome.target == PaymentStatus.PAID && bookingStatus == BookingStatus.CANCELLED) {
+                    // Khách đã bị trừ tiền cho một đơn đã huỷ: hoàn tiền sau khi commit
+                    paymentStateMachine.transition(payment, PaymentStatus.REFUND_PENDING,
+                            PaymentTransitionSource.RECONCILIATION, "Booking " + payment.getBooking().getId()
+                                    + " is cancelled");
+                    refunds.add(payment.getId());
+                    outcome.message += ", refund requested for cancelled booking";
+                } else if (outcome.target == PaymentStatus.PAID) {
+                    outcome.flag("Paid at the gateway but booking is " + bookingStatus + "; needs manual review");
+                }
+            }
+            paymentRepository.saveAll(payments);
+            if (!released.isEmpty()) {
+                eventPublisher.publishEvent(new AvailabilityChangedEvent(released));
+            }
+            refunds.forEach(paymentId -> eventPublisher.publishEvent(new RefundRequestedEvent(paymentId)));
+        });
+    }
+
+    private void record(ReconciliationReportDTO report, Outcome outcome) {
+        report.setChecked(report.getChecked() + 1);
+        switch (outcome.action) {
+            case "MATCHED" -> report.setMatched(report.getMatched() + 1);
+            case "CORRECTED" -> report.setCorrected(report.getCorrected() + 1);
+            case "MISMATCH" -> report.setMismatched(report.getMismatched() + 1);
+            case "PENDING" -> report.setPending(report.getPending() + 1);
+            default -> report.setErrors(report.getErrors() + 1);
+        }
+        if (!"MATCHED".equals(outcome.action) && report.getEntries().size() < MAX_REPORT_ENTRIES) {
+            report.getEntries().add(new ReconciliationReportDTO.Entry(outcome.paymentId, outcome.txnRef,
+                    outcome.localStatus.name(), outcome.gatewayStatus, outcome.action, outcome.message));
+        }
+    }
+
+    private static final class Outcome {
+        private final Long paymentId;
+        private final String txnRef;
+        private final PaymentStatus localStatus;
+        private final String gatewayStatus;
+        private final PaymentStatus target;
+        private final String transactionNo;
+        private String action;
+        private String message;
+
+        private Outcome(PaymentRepository.ReconciliationView payment, String gatewayStatus, String action,
+                        PaymentStatus target, String transactionNo, String message) {
+            this.paymentId = payment.getId();
+            this.txnRef = payment.getTxnRef();
+            this.localStatus = payment.getStatus();
+            this.gatewayStatus = gatewayStatus;
+            this.action = action;
+            this.target = target;
+            this.transactionNo = transactionNo;
+            this.message = message;
+        }
+
+        static Outcome matched(PaymentRepository.ReconciliationView payment, String gatewayStatus) {
+            return new Outcome(payment, gatewayStatus, "MATCHED", null, null, null);
+        }
+
+        static Outcome pending(PaymentRepository.ReconciliationView payment, String gatewayStatus) {
+            return new Outcome(payment, gatewayStatus, "PENDING", null, null, null);
+        }
+
+        static Outcome mismatch(PaymentRepository.ReconciliationView payment, String gatewayStatus, String message) {
+            return new Outcome(payment, gatewayStatus, "MISMATCH", null, null, message);
+        }
+
+        static Outcome correct(PaymentRepository.ReconciliationView payment, String gatewayStatus,
+                               PaymentStatus target, String transactionNo) {
+            return new Outcome(payment, gatewayStatus, "CORRECTED", target, transactionNo,
+                    payment.getStatus() + " -> " + target);
+        }
+
+        static Outcome error(PaymentRepository.ReconciliationView payment, String message) {
+            return new Outcome(payment, null, "ERROR", null, null, message);
+        }
+
+        void skip(String reason) {
+            this.action = "PENDING";
+            this.message = reason;
+        }
+
+        // Đã sửa theo cổng thanh toán nhưng cần người xử lý tiếp
+        void flag(String reason) {
+            this.action = "MISMATCH";
+            this.message = message + ": " + reason;
+        }
+    }
+}
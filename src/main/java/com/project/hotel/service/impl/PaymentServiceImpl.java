@@ -5,17 +5,20 @@ import com.project.hotel.entity.Booking;
 import com.project.hotel.entity.Payment;
 import com.project.hotel.constant.PaymentStatus;
 import com.project.hotel.constant.PaymentMethod;
+import com.project.hotel.constant.PaymentTransitionSource;
 import com.project.hotel.exception.ResourceNotFoundException;
 import com.project.hotel.exception.ValidationException;
 import com.project.hotel.repository.PaymentRepository;
 import com.project.hotel.service.BookingService;
 import com.project.hotel.service.PaymentService;
+import com.project.hotel.service.PaymentStateMachine;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 @Slf4j
 @Service
@@ -25,6 +28,7 @@ public class PaymentServiceImpl implements PaymentService {
 
     private final PaymentRepository paymentRepository;
     private final BookingService bookingService;
+    private final PaymentStateMachine paymentStateMachine;
 
     @Override
     @Transactional
@@ -41,6 +45,7 @@ public class PaymentServiceImpl implements PaymentService {
             payment.setPaymentTime(LocalDateTime.now());
 
             Payment savedPayment = paymentRepository.save(payment);
+            paymentStateMachine.recordCreated(List.of(savedPayment), PaymentTransitionSource.MANUAL);
             log.info("Created payment for booking {} with status {}", bookingId, payment.getStatus());
             return convertToDTO(savedPayment);
         } catch (IllegalArgumentException e) {
@@ -64,6 +69,7 @@ public class PaymentServiceImpl implements PaymentService {
             payment.setPaymentTime(LocalDateTime.now());
 
             Payment savedPayment = paymentRepository.save(payment);
+            paymentStateMachine.recordCreated(List.of(savedPayment), PaymentTransitionSource.MANUAL);
             log.info("Created payment with status {}", payment.getStatus());
             return convertToDTO(savedPayment);
         } catch (IllegalArgumentException e) {
@@ -93,8 +99,7 @@ public class PaymentServiceImpl implements PaymentService {
             Payment payment = findPaymentEntityById(id);
             PaymentStatus newStatus = PaymentStatus.valueOf(status.toUpperCase());
 
-            validateStatusTransition(payment.getStatus(), newStatus);
-            payment.setStatus(newStatus);
+            paymentStateMachine.transition(payment, newStatus, PaymentTransitionSource.MANUAL, null);
 
             Payment updatedPayment = paymentRepository.save(payment);
             log.info("Updated payment {} status to {}", id, newStatus);
@@ -137,15 +142,6 @@ public class PaymentServiceImpl implements PaymentService {
         }
     }
 
-    private void validateStatusTransition(PaymentStatus currentStatus, PaymentStatus newStatus) {
-        if (currentStatus == PaymentStatus.REFUNDED) {
-            throw new ValidationException("Cannot change status of a refunded payment");
-        }
-        if (currentStatus == PaymentStatus.PAID && newStatus == PaymentStatus.PENDING) {
-            throw new ValidationException("Cannot change paid payment back to pending");
-        }
-    }
-
     private PaymentDTO convertToDTO(Payment payment) {
         PaymentDTO dto = new PaymentDTO();
         dto.setId(payment.getId());
@@ -0,0 +1,141 @@
+package com.project.hotel.service.impl;
+
+import com.project.hotel.constant.PaymentStatus;
+import com.project.hotel.constant.PaymentTransitionSource;
+import com.project.hotel.dto.PaymentTransitionDTO;
+import com.project.hotel.entity.Payment;
+import com.project.hotel.entity.PaymentTransition;
+import com.project.hotel.exception.ValidationException;
+import com.project.hotel.repository.PaymentRepository;
+import com.project.hotel.repository.PaymentTransitionRepository;
+import com.project.hotel.service.PaymentStateMachine;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PaymentStateMachineImpl implements PaymentStateMachine {
+
+    private static final Set<PaymentStatus> INITIAL_STATUSES =
+            EnumSet.of(PaymentStatus.PENDING, PaymentStatus.PAID, PaymentStatus.FAILED);
+    private static final Map<PaymentStatus, Set<PaymentStatus>> TRANSITIONS = new EnumMap<>(PaymentStatus.class);
+
+    static {
+        for (PaymentStatus status : PaymentStatus.values()) {
+            TRANSITIONS.put(status, EnumSet.noneOf(PaymentStatus.class));
+        }
+        TRANSITIONS.get(PaymentStatus.PENDING).addAll(EnumSet.of(
+                PaymentStatus.PAID, PaymentStatus.FAILED, PaymentStatus.EXPIRED, PaymentStatus.CANCELLED));
+        // Thanh toán thành công muộn (IPN/đối soát) sau khi đã bị đánh dấu thất bại hoặc hết hạn
+        TRANSITIONS.get(PaymentStatus.FAILED).add(PaymentStatus.PAID);
+        TRANSITIONS.get(PaymentStatus.EXPIRED).add(PaymentStatus.PAID);
+        TRANSITIONS.get(PaymentStatus.PAID).add(PaymentStatus.REFUND_PENDING);
+        TRANSITIONS.get(PaymentStatus.REFUND_PENDING).addAll(EnumSet.of(
+                PaymentStatus.REFUNDED, PaymentStatus.REFUND_FAILED));
+        // Hoàn tiền thất bại có thể được thử lại hoặc xác nhận hoàn thủ công
+        TRANSITIONS.get(PaymentStatus.REFUND_FAILED).addAll(EnumSet.of(
+                PaymentStatus.REFUND_PENDING, PaymentStatus.REFUNDED));
+    }
+
+    private final PaymentRepository paymentRepository;
+    private final PaymentTransitionRepository paymentTransitionRepository;
+
+    @Override
+    public boolean canTransition(PaymentStatus from, PaymentStatus to) {
+        return from == null ? INITIAL_STATUSES.contains(to) : TRANSITIONS.get(from).contains(to);
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordCreated(List<Payment> payments, PaymentTransitionSource source) {
+        LocalDateTime now = LocalDateTime.now();
+        List<PaymentTransition> transitions = new ArrayList<>(payments.size());
+        for (Payment payment : payments) {
+            if (!canTransition(null, payment.getStatus())) {
+                throw new ValidationException("A payment cannot be created as " + payment.getStatus());
+            }
+            transitions.add(new PaymentTransition(null, payment.getId(), null, payment.getStatus(), source, null, now));
+        }
+        paymentTransitionRepository.saveAll(transitions);
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void transition(Payment payment, PaymentStatus target, PaymentTransitionSource source, String detail) {
+        PaymentStatus current = payment.getStatus();
+        if (current == target) {
+            return;
+        }
+        if (!canTransition(current, target)) {
+            throw new ValidationException("Cannot change payment status from " + current + " to " + target);
+        }
+
+        payment.setStatus(target);
+        append(payment.getId(), current, target, source, detail);
+        log.debug("Payment {} {} -> {} ({})", payment.getId(), current, target, source);
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public boolean transitionIfCurrent(Long paymentId, PaymentStatus expected, PaymentStatus target,
+                                       PaymentTransitionSource source, String detail) {
+        if (!canTransition(expected, target)) {
+            throw new ValidationException("Cannot change payment status from " + expected + " to " + target);
+        }
+        if (paymentRepository.updateStatusIfCurrent(paymentId, expected, target) == 0) {
+            return false;
+        }
+        append(paymentId, expected, target, source, detail);
+        return true;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<PaymentTransitionDTO> getHistory(Long paymentId) {
+        return paymentTransitionRepository.findByPaymentIdOrderByIdAsc(paymentId).stream()
+                .map(this::convertToDTO)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<PaymentTransitionDTO> readLog(Long afterId, int limit) {
+        return paymentTransitionRepository.findByIdGreaterThanOrderByIdAsc(afterId, PageRequest.of(0, limit)).stream()
+                .map(this::convertToDTO)
+                .collect(Collectors.toList());
+    }
+
+    private void append(Long paymentId, PaymentStatus from, PaymentStatus to,
+                        PaymentTransitionSource source, String detail) {
+        if (detail != null && detail.length() > 255) {
+            detail = detail.substring(0, 255);
+        }
+        paymentTransitionRepository.save(
+                new PaymentTransition(null, paymentId, from, to, source, detail, LocalDateTime.now()));
+    }
+
+    private PaymentTransitionDTO convertToDTO(PaymentTransition transition) {
+        return new PaymentTransitionDTO(
+                transition.getId(),
+                transition.getPaymentId(),
+                transition.getFromStatus() != null ? transition.getFromStatus().name() : null,
+                transition.getToStatus().name(),
+                transition.getSource().name(),
+                transition.getDetail(),
+                transition.getCreatedAt());
+    }
+}
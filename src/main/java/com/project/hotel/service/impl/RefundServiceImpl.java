@@ -0,0 +1,253 @@
+package com.project.hotel.service.impl;
+
+import com.project.hotel.client.VNPayApiClient;
+import com.project.hotel.constant.PaymentStatus;
+import com.project.hotel.constant.PaymentTransitionSource;
+import com.project.hotel.entity.Payment;
+import com.project.hotel.event.RefundRequestedEvent;
+import com.project.hotel.exception.PaymentProcessingException;
+import com.project.hotel.repository.PaymentRepository;
+import com.project.hotel.service.PaymentStateMachine;
+import com.project.hotel.service.RefundService;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hoàn tiền bất đồng bộ qua VNPay.
+ * <p>
+ * Cancelling only moves the payment to {@code REFUND_PENDING}; once that transaction commits
+ * the refund is handed to a small worker pool, which calls the gateway outside any database
+ * transaction and retries transient failures with exponential backoff. The terminal state is
+ * written with a conditional update so a concurrent change is never overwritten.
+ * <p>
+ * A refund call that timed out may still have reached VNPay, so a retry (and a refund resumed
+ * by the sweeper, which may follow a crash mid-call) first asks {@code querydr} whether a
+ * refund already exists and only sends a new request when it does not.
+ */
+@Slf4j
+@Service
+public class RefundServiceImpl implements RefundService {
+
+    /**
+     * 94: yêu cầu hoàn tiền trùng đang được xử lý, 99: lỗi không xác định phía cổng thanh toán
+     */
+    private static final Set<String> RETRYABLE_CODES = Set.of("94", "99");
+    /**
+     * vnp_TransactionType 02/03: hoàn toàn phần/một phần; vnp_TransactionStatus 05/06: đang hoàn tiền,
+     * 09: hoàn tiền bị từ chối
+     */
+    private static final Set<String> REFUND_TRANSACTION_TYPES = Set.of("02", "03");
+    private static final Set<String> REFUND_IN_PROGRESS_STATUSES = Set.of("05", "06");
+    private static final String REFUND_REJECTED_STATUS = "09";
+    private static final String REFUND_CREATED_BY = "system";
+
+    private final PaymentRepository paymentRepository;
+    private final VNPayApiClient vnPayApiClient;
+    private final PaymentStateMachine paymentStateMachine;
+    private final TransactionTemplate transactionTemplate;
+    private final ScheduledExecutorService executor;
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+    private final int maxAttempts;
+    private final long initialBackoffMs;
+    private final long maxBackoffMs;
+
+    public RefundServiceImpl(PaymentRepository paymentRepository, VNPayApiClient vnPayApiClient,
+                             PaymentStateMachine paymentStateMachine,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${app.refund.workers:2}") int workers,
+                             @Value("${app.refund.max-attempts:6}") int maxAttempts,
+                             @Value("${app.refund.initial-backoff-ms:2000}") long initialBackoffMs,
+                             @Value("${app.refund.max-backoff-ms:300000}") long maxBackoffMs) {
+        this.paymentRepository = paymentRepository;
+        this.vnPayApiClient = vnPayApiClient;
+        this.paymentStateMachine = paymentStateMachine;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMs = initialBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newScheduledThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "refund-worker-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        // Payments still in REFUND_PENDING are picked up again by the sweeper after restart
+        executor.shutdownNow();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onRefundRequested(RefundRequestedEvent event) {
+        submit(event.getPaymentId());
+    }
+
+    @Override
+    public void submit(Long paymentId) {
+        if (!inFlight.add(paymentId)) {
+            return;
+        }
+        schedule(paymentId, 1, 0, false);
+    }
+
+    @Override
+    public int resumePending(int limit) {
+        List<Long> ids = paymentRepository.findIdsByStatus(PaymentStatus.REFUND_PENDING, PageRequest.of(0, limit));
+        int submitted = 0;
+        for (Long id : ids) {
+            // Lần chạy trước có thể đã gửi yêu cầu trước khi dừng: kiểm tra trước khi gửi lại
+            if (inFlight.add(id)) {
+                schedule(id, 1, 0, true);
+                submitted++;
+            }
+        }
+        if (submitted > 0) {
+            log.info("Resumed {} pending refunds", submitted);
+        }
+        return submitted;
+    }
+
+    private void schedule(Long paymentId, int attempt, long delayMs, boolean verifyFirst) {
+        try {
+            executor.schedule(() -> attempt(paymentId, attempt, verifyFirst), delayMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(paymentId);
+            log.warn("Refund for payment {} not scheduled, executor is shut down", paymentId);
+        }
+    }
+
+    private void attempt(Long paymentId, int attempt, boolean verifyFirst) {
+        boolean finished = true;
+        try {
+            Payment payment = paymentRepository.findById(paymentId).orElse(null);
+            if (payment == null || payment.getStatus() != PaymentStatus.REFUND_PENDING) {
+                return;
+            }
+            if (payment.getTxnRef() == null) {
+                log.error("Payment {} has no VNPay TxnRef, refund needs manual handling", paymentId);
+                transition(paymentId, PaymentStatus.REFUND_FAILED, "Missing TxnRef");
+                return;
+            }
+
+            if (verifyFirst) {
+                PriorRefund prior = findPriorRefund(payment);
+                if (prior == PriorRefund.ACCEPTED) {
+                    transition(paymentId, PaymentStatus.REFUNDED, "Refund found at the gateway");
+                    log.info("Refund for payment {} had already reached the gateway", paymentId);
+                    return;
+                }
+                if (prior == PriorRefund.REJECTED) {
+                    transition(paymentId, PaymentStatus.REFUND_FAILED, "Refund rejected by the gateway");
+                    log.error("Refund for payment {} was rejected by the gateway", paymentId);
+                    return;
+                }
+                if (prior == PriorRefund.UNKNOWN) {
+                    // Không biết yêu cầu trước đã tới VNPay hay chưa: không gửi lại
+                    if (attempt < maxAttempts) {
+                        finished = false;
+                        schedule(paymentId, attempt + 1, backoff(attempt), true);
+                    } else {
+                        transition(paymentId, PaymentStatus.REFUND_FAILED,
+                                "Refund outcome unknown after " + attempt + " attempts");
+                        log.error("Could not confirm whether payment {} was refunded, needs manual review",
+                                paymentId);
+                    }
+                    return;
+                }
+            }
+
+            String responseCode;
+            try {
+                Map<String, String> response = vnPayApiClient.refund(payment.getTxnRef(),
+                        payment.getTransactionId(), payment.getAmount().longValue(),
+                        VNPayApiClient.transactionDateOf(payment.getTxnRef()), REFUND_CREATED_BY);
+                responseCode = response.get("vnp_ResponseCode");
+            } catch (PaymentProcessingException e) {
+                log.warn("Refund call for payment {} failed (attempt {}): {}", paymentId, attempt, e.getMessage());
+                responseCode = null;
+            }
+
+            if ("00".equals(responseCode)) {
+                transition(paymentId, PaymentStatus.REFUNDED, "Response code 00");
+                log.info("Refunded payment {}", paymentId);
+            } else if ((responseCode == null || RETRYABLE_CODES.contains(responseCode)) && attempt < maxAttempts) {
+                finished = false;
+                schedule(paymentId, attempt + 1, backoff(attempt), true);
+            } else {
+                transition(paymentId, PaymentStatus.REFUND_FAILED,
+                        "Response code " + responseCode + " after " + attempt + " attempts");
+                log.error("Refund for payment {} failed after {} attempts, last response {}",
+                        paymentId, attempt, responseCode);
+            }
+        } catch (RuntimeException e) {
+            // Left in REFUND_PENDING; the sweeper retries it later
+            log.error("Unexpected error refunding payment {}: {}", paymentId, e.getMessage(), e);
+        } finally {
+            if (finished) {
+                inFlight.remove(paymentId);
+            }
+        }
+    }
+
+    private PriorRefund findPriorRefund(Payment payment) {
+        Map<String, String> response;
+        try {
+            response = vnPayApiClient.queryTransaction(payment.getTxnRef(),
+                    VNPayApiClient.transactionDateOf(payment.getTxnRef()));
+        } catch (PaymentProcessingException e) {
+            log.warn("Refund status query for payment {} failed: {}", payment.getId(), e.getMessage());
+            return PriorRefund.UNKNOWN;
+        }
+        if (!"00".equals(response.get("vnp_ResponseCode"))) {
+            return PriorRefund.UNKNOWN;
+        }
+        String transactionStatus = response.get("vnp_TransactionStatus");
+        if (REFUND_IN_PROGRESS_STATUSES.contains(transactionStatus)) {
+            return PriorRefund.ACCEPTED;
+        }
+        if (REFUND_TRANSACTION_TYPES.contains(response.get("vnp_TransactionType"))) {
+            return REFUND_REJECTED_STATUS.equals(transactionStatus) ? PriorRefund.REJECTED : PriorRefund.ACCEPTED;
+        }
+        return PriorRefund.NONE;
+    }
+
+    private void transition(Long paymentId, PaymentStatus target, String detail) {
+        Boolean updated = transactionTemplate.execute(status -> paymentStateMachine.transitionIfCurrent(
+                paymentId, PaymentStatus.REFUND_PENDING, target, PaymentTransitionSource.REFUND, detail));
+        if (!Boolean.TRUE.equals(updated)) {
+            log.warn("Payment {} left REFUND_PENDING concurrently, not marking it {}", paymentId, target);
+        }
+    }
+
+    private long backoff(int attempt) {
+        long delay = initialBackoffMs << Math.min(attempt - 1, 20);
+        return Math.min(delay, maxBackoffMs);
+    }
+
+    private enum PriorRefund {
+        NONE,
+        ACCEPTED,
+        REJECTED,
+        UNKNOWN
+    }
+}
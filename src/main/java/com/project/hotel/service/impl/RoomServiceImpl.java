@@ -1,5 +1,6 @@
 package com.project.hotel.service.impl;
 
+import com.project.hotel.dto.BatchItemDTO;
 import com.project.hotel.dto.RoomDTO;
 import com.project.hotel.entity.Room;
 import com.project.hotel.entity.Booking;
@@ -11,23 +12,35 @@ import com.project.hotel.constant.BookingStatus;
 import com.project.hotel.exception.ResourceNotFoundException;
 import com.project.hotel.exception.RoomAlreadyExistsException;
 import com.project.hotel.exception.ValidationException;
+import com.project.hotel.repository.FieldProjectionRepository;
 import com.project.hotel.repository.RoomRepository;
 import com.project.hotel.repository.BookingRepository;
+import com.project.hotel.service.BlobService;
 import com.project.hotel.service.RoomService;
 import com.project.hotel.constant.RoomType;
-import com.project.hotel.util.FileUploadUtil;
+import com.project.hotel.event.RoomImageUploadedEvent;
+import com.project.hotel.storage.StagedBlob;
+import com.project.hotel.util.BatchIds;
+import com.project.hotel.util.FieldSelection;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.multipart.MultipartFile;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.UUID;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
-import java.util.ArrayList;
 import com.project.hotel.entity.Booking;
 import com.project.hotel.repository.BookingRepository;
 import org.slf4j.Logger;
@@ -39,13 +52,42 @@ public class RoomServiceImpl implements RoomService {
 
     private final RoomRepository roomRepository;
     private final BookingRepository bookingRepository;
-    private static final String UPLOAD_DIR = "uploads/rooms";
+    private final ApplicationEventPublisher eventPublisher;
+    private final BlobService blobService;
+    private final TransactionTemplate transactionTemplate;
+    private final FieldProjectionRepository fieldProjectionRepository;
     private static final Logger log = LoggerFactory.getLogger(RoomServiceImpl.class);
 
+    @Value("${app.batch-get.max-ids:100}")
+    private int maxBatchIds;
+
+    // Các thuộc tính của RoomDTO chọn được qua fields=, theo thứ tự trả về; null = không phải cột
+    private static final Map<String, String> ROOM_FIELDS = new LinkedHashMap<>();
+
+    static {
+        ROOM_FIELDS.put("id", "id");
+        ROOM_FIELDS.put("roomNumber", "roomNumber");
+        ROOM_FIELDS.put("roomType", "roomType");
+        ROOM_FIELDS.put("price", "price");
+        ROOM_FIELDS.put("available", "isAvailable");
+        ROOM_FIELDS.put("description", "description");
+        ROOM_FIELDS.put("images", null);
+        ROOM_FIELDS.put("amenities", null);
+        ROOM_FIELDS.put("name", null);
+        ROOM_FIELDS.put("type", "roomType");
+    }
+
     @Autowired
-    public RoomServiceImpl(RoomRepository roomRepository, BookingRepository bookingRepository) {
+    public RoomServiceImpl(RoomRepository roomRepository, BookingRepository bookingRepository,
+                           ApplicationEventPublisher eventPublisher, BlobService blobService,
+                           PlatformTransactionManager transactionManager,
+                           FieldProjectionRepository fieldProjectionRepository) {
+        this.fieldProjectionRepository = fieldProjectionRepository;
         this.roomRepository = roomRepository;
         this.bookingRepository = bookingRepository;
+        this.eventPublisher = eventPublisher;
+        this.blobService = blobService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
     @Override
@@ -62,6 +104,7 @@ public class RoomServiceImpl implements RoomService {
         room.setAvailable(true);
 
         Room savedRoom = roomRepository.save(room);
+        blobService.addReferences(savedRoom.getImages());
         return convertToDTO(savedRoom);
     }
 
@@ -78,6 +121,85 @@ public class RoomServiceImpl implements RoomService {
                 .collect(Collectors.toList());
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public List<BatchItemDTO<RoomDTO>> getRoomsByIds(List<Long> ids) {
+        Set<Long> distinct = BatchIds.distinct(ids, maxBatchIds);
+        Map<Long, RoomDTO> rooms = roomRepository.findAllById(distinct).stream()
+                .collect(Collectors.toMap(Room::getId, this::convertToDTO));
+        return BatchIds.inRequestOrder(ids, rooms);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Map<String, Object>> getRoomFields(String fields, Boolean available, String roomType,
+                                                   List<String> amenities) {
+        Set<String> selected = FieldSelection.parse(fields, ROOM_FIELDS.keySet());
+
+        // id luôn được chọn để ghép ảnh/tiện nghi; số phòng cần cho "name"
+        Map<String, String> columns = new LinkedHashMap<>();
+        columns.put("id", "id");
+        if (selected.contains("name")) {
+            columns.put("roomNumber", "roomNumber");
+        }
+        for (String field : selected) {
+            if (ROOM_FIELDS.get(field) != null) {
+                columns.put(field, ROOM_FIELDS.get(field));
+            }
+        }
+
+        List<String> conditions = new ArrayList<>();
+        Map<String, Object> parameters = new HashMap<>();
+        if (available != null) {
+            conditions.add("e.isAvailable = :available");
+            parameters.put("available", available);
+        }
+        if (roomType != null) {
+            conditions.add("e.roomType = :roomType");
+            parameters.put("roomType", roomType);
+        }
+        if (amenities != null) {
+            conditions.add("e.id IN (SELECT r.id FROM Room r JOIN r.amenities a WHERE a IN :amenities " +
+                    "GROUP BY r.id HAVING COUNT(DISTINCT a) = :amenityCount)");
+            parameters.put("amenities", amenities);
+            parameters.put("amenityCount", (long) amenities.size());
+        }
+
+        List<Map<String, Object>> rows = fieldProjectionRepository.select("Room", columns,
+                conditions.isEmpty() ? null : String.join(" AND ", conditions), parameters);
+        List<Long> ids = rows.stream().map(row -> (Long) row.get("id")).collect(Collectors.toList());
+
+        Map<Long, List<String>> images = new HashMap<>();
+        if (selected.contains("images") && !ids.isEmpty()) {
+            roomRepository.findImagesByRoomIds(ids).forEach(image ->
+                    images.computeIfAbsent(image.getRoomId(), id -> new ArrayList<>()).add(image.getImageUrl()));
+        }
+        Map<Long, List<String>> roomAmenities = new HashMap<>();
+        if (selected.contains("amenities") && !ids.isEmpty()) {
+            roomRepository.findAmenitiesByRoomIds(ids).forEach(amenity ->
+                    roomAmenities.computeIfAbsent(amenity.getRoomId(), id -> new ArrayList<>()).add(amenity.getAmenity()));
+        }
+
+        List<Map<String, Object>> result = new ArrayList<>(rows.size());
+        for (Map<String, Object> row : rows) {
+            Long id = (Long) row.get("id");
+            Map<String, Object> room = new LinkedHashMap<>();
+            for (String field : selected) {
+                if (field.equals("images")) {
+                    room.put(field, images.getOrDefault(id, List.of()));
+                } else if (field.equals("amenities")) {
+                    room.put(field, roomAmenities.getOrDefault(id, List.of()));
+                } else if (field.equals("name")) {
+                    room.put(field, "Phòng " + row.get("roomNumber"));
+                } else {
+                    room.put(field, row.get(field));
+                }
+            }
+            result.add(room);
+        }
+        return result;
+    }
+
     @Override
     public List<RoomDTO> getAvailableRooms() {
         return roomRepository.findByIsAvailable(true).stream()
@@ -113,9 +235,15 @@ public class RoomServiceImpl implements RoomService {
 
         validateRoomData(roomDTO);
 
+        List<String> previousImages = new ArrayList<>(room.getImages());
         updateRoomFromDTO(room, roomDTO);
 
         Room updatedRoom = roomRepository.save(room);
+        if (roomDTO.getImages() != null) {
+            // Ảnh giữ nguyên được +1 rồi -1 nên số tham chiếu không đổi
+            blobService.addReferences(updatedRoom.getImages());
+            blobService.releaseReferences(previousImages);
+        }
         return convertToDTO(updatedRoom);
     }
 
@@ -130,16 +258,9 @@ public class RoomServiceImpl implements RoomService {
             bookingRepository.delete(booking);
         }
 
-        // Delete room images if any
+        // File ảnh không còn được tham chiếu sẽ do UploadCleanupJob dọn, không xóa ngay tại đây
         if (room.getImages() != null && !room.getImages().isEmpty()) {
-            for (String imageUrl : room.getImages()) {
-                try {
-                    String fileName = imageUrl.substring(imageUrl.lastIndexOf("/") + 1);
-                    FileUploadUtil.deleteFile(UPLOAD_DIR + "/" + fileName);
-                } catch (IOException e) {
-                    log.warn("Không thể xóa ảnh {}: {}", imageUrl, e.getMessage());
-                }
-            }
+            blobService.releaseReferences(room.getImages());
         }
 
         roomRepository.deleteById(id);
@@ -152,33 +273,39 @@ public class RoomServiceImpl implements RoomService {
                 .orElseThrow(() -> new ResourceNotFoundException("Không tìm thấy phòng với id: " + id));
     }
 
+    /**
+     * The upload has already been streamed and hashed by the caller, so no database
+     * connection is held while the client is sending the file.
+     */
     @Override
-    @Transactional
-    public RoomDTO addRoomImage(Long roomId, MultipartFile file) {
-        Room room = findRoomEntityById(roomId);
-
+    public RoomDTO addRoomImage(Long roomId, StagedBlob blob) {
         try {
+            return transactionTemplate.execute(status -> {
+                Room room = findRoomEntityById(roomId);
+                try {
+                    blobService.publish(blob, true);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
 
-            String originalFilename = file.getOriginalFilename();
-            String extension = originalFilename != null ? originalFilename.substring(originalFilename.lastIndexOf("."))
-                    : "";
-            String fileName = UUID.randomUUID().toString() + extension;
-
-            String filePath = FileUploadUtil.saveFile("uploads", fileName, file);
-
-            String imageUrl = "/api/uploads/" + fileName;
+                String imageUrl = "/api/uploads/" + blob.getKey();
 
-            // Add image URL to room's image list
-            if (room.getImages() == null) {
-                room.setImages(new ArrayList<>());
-            }
-            room.getImages().add(imageUrl);
+                // Add image URL to room's image list
+                if (room.getImages() == null) {
+                    room.setImages(new ArrayList<>());
+                }
+                room.getImages().add(imageUrl);
 
-            // Save updated room
-            Room updatedRoom = roomRepository.save(room);
-            return convertToDTO(updatedRoom);
-        } catch (IOException e) {
-            throw new RuntimeException("Could not upload image: " + e.getMessage());
+                // Save updated room
+                Room updatedRoom = roomRepository.save(room);
+                // Ảnh thu nhỏ được sinh sau khi commit
+                eventPublisher.publishEvent(new RoomImageUploadedEvent(roomId, blob.getKey()));
+                return convertToDTO(updatedRoom);
+            });
+        } catch (UncheckedIOException e) {
+            throw new RuntimeException("Could not upload image: " + e.getCause().getMessage());
+        } finally {
+            blobService.discard(blob);
         }
     }
 
@@ -188,20 +315,29 @@ public class RoomServiceImpl implements RoomService {
         Room room = findRoomEntityById(roomId);
 
         if (room.getImages().remove(imageUrl)) {
-            try {
-
-                String fileName = imageUrl.substring(imageUrl.lastIndexOf("/") + 1);
-                FileUploadUtil.deleteFile("uploads/" + fileName);
-
-                Room updatedRoom = roomRepository.save(room);
-                return convertToDTO(updatedRoom);
-            } catch (IOException e) {
-                throw new RuntimeException("Could not delete image: " + e.getMessage());
-            }
+            blobService.releaseReferences(List.of(imageUrl));
+            Room updatedRoom = roomRepository.save(room);
+            return convertToDTO(updatedRoom);
         }
         throw new ResourceNotFoundException("Image not found in room: " + imageUrl);
     }
 
+    @Override
+    @Transactional
+    public int removeImageFromRooms(String fileName) {
+        int removed = 0;
+        for (Room room : roomRepository.findByImageFileName(fileName)) {
+            List<String> urls = room.getImages().stream()
+                    .filter(url -> url != null && url.substring(url.lastIndexOf('/') + 1).equals(fileName))
+                    .toList();
+            room.getImages().removeAll(urls);
+            blobService.releaseReferences(urls);
+            roomRepository.save(room);
+            removed += urls.size();
+        }
+        return removed;
+    }
+
     @Override
     public List<String> getRoomImages(Long roomId) {
         Room room = findRoomEntityById(roomId);
@@ -0,0 +1,336 @@
+package com.project.hotel.service.impl;
+
+import com.project.hotel.dto.UploadCleanupReportDTO;
+import com.project.hotel.exception.ServiceBusyException;
+import com.project.hotel.repository.BlobRefRepository;
+import com.project.hotel.repository.RoomImageVariantRepository;
+import com.project.hotel.repository.RoomRepository;
+import com.project.hotel.service.BlobService;
+import com.project.hotel.service.ImageVariantService;
+import com.project.hotel.service.UploadCleanupService;
+import com.project.hotel.storage.BlobKeys;
+import com.project.hotel.storage.BlobStore;
+import com.project.hotel.storage.ImageBufferCache;
+import com.project.hotel.util.FileUploadUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Dọn file upload không còn được tham chiếu và phát hiện ảnh phòng trỏ tới file đã mất.
+ * <p>
+ * Nothing is held in memory beyond one batch: directories are read lazily and each batch
+ * of names is checked against {@code room_images.file_name} and {@code room_image_variants}
+ * with an indexed IN query, and rooms are walked in id order for the reverse check. Only
+ * files older than the grace period are considered, so uploads still in flight are never
+ * touched.
+ * <p>
+ * Legacy files in {@code uploads/} are moved to {@code uploads/.quarantine} rather than
+ * deleted, restored if a room turns out to still use them, and purged once they have sat
+ * there for a full grace period. Blobs are reference-counted, so those with a zero count
+ * since before the cutoff go through {@link BlobService#deleteIfUnreferenced}; blob files
+ * that were never registered (the publishing transaction rolled back) are deleted directly.
+ * Variants are blobs too: deleting an orphaned variant row releases its reference, and the
+ * blob follows through the unreferenced-blob step once the grace period has passed.
+ */
+@Slf4j
+@Service
+public class UploadCleanupServiceImpl implements UploadCleanupService {
+
+    private static final String UPLOAD_DIR = "uploads";
+    private static final String QUARANTINE_DIR = ".quarantine";
+
+    private final RoomRepository roomRepository;
+    private final RoomImageVariantRepository variantRepository;
+    private final BlobRefRepository blobRefRepository;
+    private final BlobService blobService;
+    private final BlobStore blobStore;
+    private final ImageBufferCache imageBufferCache;
+    private final ImageVariantService imageVariantService;
+    private final TransactionTemplate transactionTemplate;
+    private final Path uploadRoot;
+    private final Path quarantine;
+    private final Duration gracePeriod;
+    private final int batchSize;
+    private final int maxReported;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public UploadCleanupServiceImpl(RoomRepository roomRepository, RoomImageVariantRepository variantRepository,
+                                    BlobRefRepository blobRefRepository, BlobService blobService,
+                                    BlobStore blobStore, ImageBufferCache imageBufferCache,
+                                    ImageVariantService imageVariantService,
+                                    PlatformTransactionManager transactionManager,
+                                    @Value("${app.upload-cleanup.grace-hours:24}") long graceHours,
+                                    @Value("${app.upload-cleanup.batch-size:500}") int batchSize,
+                                    @Value("${app.upload-cleanup.max-reported:1000}") int maxReported) {
+        this.roomRepository = roomRepository;
+        this.variantRepository = variantRepository;
+        this.blobRefRepository = blobRefRepository;
+        this.blobService = blobService;
+        this.blobStore = blobStore;
+        this.imageBufferCache = imageBufferCache;
+        this.imageVariantService = imageVariantService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.uploadRoot = FileUploadUtil.getUploadPath(UPLOAD_DIR).toAbsolutePath().normalize();
+        this.quarantine = uploadRoot.resolve(QUARANTINE_DIR);
+        this.gracePeriod = Duration.ofHours(graceHours);
+        this.batchSize = batchSize;
+        this.maxReported = maxReported;
+    }
+
+    @Override
+    public UploadCleanupReportDTO cleanUp() {
+        if (!running.compareAndSet(false, true)) {
+            throw new ServiceBusyException("Upload cleanup is already running", 60);
+        }
+        UploadCleanupReportDTO report = new UploadCleanupReportDTO();
+        report.setStartedAt(LocalDateTime.now());
+        try {
+            Instant cutoff = Instant.now().minus(gracePeriod);
+            // Xóa dòng variant mồ côi trước để file của chúng được cách ly ngay trong lần chạy này
+            step("orphaned variants", report, () -> deleteOrphanedVariants(cutoff, report));
+            step("unreferenced blobs", report, () -> deleteUnreferencedBlobs(cutoff, report));
+            step("legacy files", report, () -> quarantineUnreferencedFiles(cutoff, report));
+            step("unregistered blobs", report, () -> deleteUnregisteredBlobs(cutoff, report));
+            step("room images", report, () -> checkRoomImages(report));
+            step("quarantine", report, () -> purgeQuarantine(cutoff, report));
+        } finally {
+            running.set(false);
+        }
+        report.setFinishedAt(LocalDateTime.now());
+
+        log.info("Upload cleanup: scanned {} files, quarantined {}, restored {}, purged {}, deleted {} blobs "
+                        + "and {} variants, {} dangling references, {} errors",
+                report.getFilesScanned(), report.getQuarantined(), report.getRestored(), report.getPurged(),
+                report.getBlobsDeleted(), report.getVariantsDeleted(), report.getDanglingReferences(),
+                report.getErrors());
+        if (report.getDanglingReferences() > 0) {
+            log.warn("{} room images point to missing files, e.g. {}", report.getDanglingReferences(),
+                    report.getDangling().subList(0, Math.min(5, report.getDangling().size())));
+        }
+        return report;
+    }
+
+    private void deleteOrphanedVariants(Instant cutoff, UploadCleanupReportDTO report) {
+        LocalDateTime cutoffTime = LocalDateTime.ofInstant(cutoff, ZoneId.systemDefault());
+        List<RoomImageVariantRepository.OrphanedVariantView> orphans;
+        while (!(orphans = variantRepository.findOrphaned(cutoffTime, PageRequest.of(0, batchSize))).isEmpty()) {
+            List<RoomImageVariantRepository.OrphanedVariantView> batch = orphans;
+            transactionTemplate.executeWithoutResult(status -> {
+                variantRepository.deleteAllByIdInBatch(batch.stream()
+                        .map(RoomImageVariantRepository.OrphanedVariantView::getId)
+                        .collect(Collectors.toList()));
+                // Tên file cũ (không phải blob key) được BlobService bỏ qua và được cách ly như trước
+                blobService.releaseReferences(batch.stream()
+                        .map(RoomImageVariantRepository.OrphanedVariantView::getFileName)
+                        .collect(Collectors.toList()));
+            });
+            imageVariantService.evict(orphans.stream()
+                    .map(RoomImageVariantRepository.OrphanedVariantView::getSourceFile)
+                    .collect(Collectors.toSet()));
+            report.setVariantsDeleted(report.getVariantsDeleted() + orphans.size());
+        }
+    }
+
+    private void deleteUnreferencedBlobs(Instant cutoff, UploadCleanupReportDTO report) {
+        LocalDateTime cutoffTime = LocalDateTime.ofInstant(cutoff, ZoneId.systemDefault());
+        while (true) {
+            List<String> keys = blobRefRepository.findUnreferencedKeys(cutoffTime, PageRequest.of(0, batchSize));
+            if (keys.isEmpty()) {
+                return;
+            }
+            // Phòng trường hợp ref_count bị lệch: không xóa blob vẫn còn phòng dùng
+            Set<String> stillUsed = new HashSet<>(roomRepository.findReferencedFileNames(keys));
+            int deleted = 0;
+            for (String key : keys) {
+                if (stillUsed.contains(key)) {
+                    log.warn("Blob {} has no references recorded but is still used by a room", key);
+                    report.setErrors(report.getErrors() + 1);
+                } else if (blobService.deleteIfUnreferenced(key)) {
+                    deleted++;
+                }
+            }
+            report.setBlobsDeleted(report.getBlobsDeleted() + deleted);
+            if (deleted == 0 || keys.size() < batchSize) {
+                return;
+            }
+        }
+    }
+
+    private void quarantineUnreferencedFiles(Instant cutoff, UploadCleanupReportDTO report) throws IOException {
+        if (!Files.isDirectory(uploadRoot)) {
+            return;
+        }
+        List<Path> batch = new ArrayList<>(batchSize);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(uploadRoot)) {
+            for (Path file : files) {
+                // Bỏ qua thư mục (blobs, .quarantine) và file tạm đang ghi (.variant-*.tmp)
+                if (file.getFileName().toString().startsWith(".")
+                        || !Files.isRegularFile(file, LinkOption.NOFOLLOW_LINKS)) {
+                    continue;
+                }
+                report.setFilesScanned(report.getFilesScanned() + 1);
+                if (Files.getLastModifiedTime(file).toInstant().isAfter(cutoff)) {
+                    continue;
+                }
+                batch.add(file);
+                if (batch.size() >= batchSize) {
+                    quarantine(batch, report);
+                    batch.clear();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            quarantine(batch, report);
+        }
+    }
+
+    private void quarantine(List<Path> batch, UploadCleanupReportDTO report) throws IOException {
+        List<String> names = batch.stream().map(file -> file.getFileName().toString()).toList();
+        Set<String> referenced = new HashSet<>(roomRepository.findReferencedFileNames(names));
+        referenced.addAll(variantRepository.findExistingFileNames(names));
+
+        for (Path file : batch) {
+            String name = file.getFileName().toString();
+            if (referenced.contains(name)) {
+                continue;
+            }
+            Files.createDirectories(quarantine);
+            Path target = quarantine.resolve(name);
+            Files.move(file, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            imageBufferCache.invalidate(file);
+            // Thời gian chờ tính từ lúc cách ly, không phải từ lúc upload
+            Files.setLastModifiedTime(target, FileTime.from(Instant.now()));
+            report.setQuarantined(report.getQuarantined() + 1);
+        }
+    }
+
+    private void deleteUnregisteredBlobs(Instant cutoff, UploadCleanupReportDTO report) throws IOException {
+        try (Stream<String> keys = blobStore.keys()) {
+            Iterator<String> iterator = keys.iterator();
+            List<String> batch = new ArrayList<>(batchSize);
+            while (iterator.hasNext()) {
+                batch.add(iterator.next());
+                if (batch.size() >= batchSize || !iterator.hasNext()) {
+                    report.setFilesScanned(report.getFilesScanned() + batch.size());
+                    Set<String> registered = new HashSet<>(blobRefRepository.findExistingKeys(batch));
+                    for (String key : batch) {
+                        Path path = blobStore.localPath(key);
+                        // Bản ghi blob_refs được tạo trước khi file xuất hiện, nên file mới có thể chưa thấy bản ghi
+                        if (registered.contains(key) || path == null
+                                || Files.getLastModifiedTime(path).toInstant().isAfter(cutoff)) {
+                            continue;
+                        }
+                        if (blobStore.delete(key)) {
+                            report.setBlobsDeleted(report.getBlobsDeleted() + 1);
+                        }
+                    }
+                    batch.clear();
+                }
+            }
+        }
+    }
+
+    private void checkRoomImages(UploadCleanupReportDTO report) throws IOException {
+        Long afterId = 0L;
+        List<Long> roomIds;
+        while (!(roomIds = roomRepository.findIdsAfter(afterId, PageRequest.of(0, batchSize))).isEmpty()) {
+            for (RoomRepository.RoomImageView image : roomRepository.findImagesByRoomIds(roomIds)) {
+                String url = image.getImageUrl();
+                // Chỉ kiểm tra ảnh do hệ thống lưu, không kiểm tra URL bên ngoài
+                if (url == null || !url.contains("/uploads/")) {
+                    continue;
+                }
+                String name = url.substring(url.lastIndexOf('/') + 1);
+                if (fileExists(name)) {
+                    continue;
+                }
+                if (restore(name)) {
+                    report.setRestored(report.getRestored() + 1);
+                    continue;
+                }
+                report.setDanglingReferences(report.getDanglingReferences() + 1);
+                if (report.getDangling().size() < maxReported) {
+                    report.getDangling().add(new UploadCleanupReportDTO.DanglingReference(image.getRoomId(), url));
+                }
+            }
+            afterId = roomIds.get(roomIds.size() - 1);
+        }
+    }
+
+    private boolean fileExists(String name) throws IOException {
+        if (BlobKeys.isBlobKey(name)) {
+            return blobStore.exists(name);
+        }
+        Path file = legacyPath(uploadRoot, name);
+        return file != null && Files.isRegularFile(file);
+    }
+
+    private boolean restore(String name) throws IOException {
+        Path quarantined = legacyPath(quarantine, name);
+        if (quarantined == null || !Files.isRegularFile(quarantined)) {
+            return false;
+        }
+        Files.move(quarantined, uploadRoot.resolve(name), StandardCopyOption.ATOMIC_MOVE);
+        log.info("Restored quarantined upload {} which is still used by a room", name);
+        return true;
+    }
+
+    private void purgeQuarantine(Instant cutoff, UploadCleanupReportDTO report) throws IOException {
+        if (!Files.isDirectory(quarantine)) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(quarantine)) {
+            for (Path file : files) {
+                if (Files.isRegularFile(file, LinkOption.NOFOLLOW_LINKS)
+                        && Files.getLastModifiedTime(file).toInstant().isBefore(cutoff)) {
+                    Files.deleteIfExists(file);
+                    report.setPurged(report.getPurged() + 1);
+                }
+            }
+        }
+    }
+
+    private static Path legacyPath(Path directory, String name) {
+        Path file = directory.resolve(name).normalize();
+        return file.getParent() != null && file.getParent().equals(directory) ? file : null;
+    }
+
+    private void step(String name, UploadCleanupReportDTO report, Step step) {
+        try {
+            step.run();
+        } catch (Exception e) {
+            // Một bước lỗi không chặn các bước còn lại
+            report.setErrors(report.getErrors() + 1);
+            log.error("Upload cleanup step '{}' failed: {}", name, e.getMessage(), e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Step {
+        void run() throws IOException;
+    }
+}
@@ -0,0 +1,424 @@
+package com.project.hotel.service.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.project.hotel.constant.UserRole;
+import com.project.hotel.dto.UserImportReportDTO;
+import com.project.hotel.exception.BadRequestException;
+import com.project.hotel.exception.ServiceBusyException;
+import com.project.hotel.repository.UserRepository;
+import com.project.hotel.security.OffloadingPasswordEncoder;
+import com.project.hotel.service.UserImportService;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Bulk user import from CSV (header row required) or NDJSON (one JSON object per line).
+ * <p>
+ * The upload is read line by line and processed in chunks: rows are validated, emails and
+ * phone numbers are checked against the database with one query each per chunk, passwords
+ * are hashed in parallel on a dedicated pool (values that are already BCrypt hashes are
+ * stored as-is) and the chunk is written with a JDBC batch insert in its own transaction.
+ * Only one import runs at a time.
+ */
+@Slf4j
+@Service
+public class UserImportServiceImpl implements UserImportService {
+
+    private static final Pattern EMAIL_PATTERN = Pattern.compile("^[^@\\s]+@[^@\\s]+\\.[^@\\s]+$");
+    private static final Pattern PHONE_PATTERN = Pattern.compile("^\\+?[0-9]{10,15}$");
+    // Cùng quy tắc với User.password
+    private static final Pattern PASSWORD_PATTERN =
+            Pattern.compile("^(?=.*[0-9])(?=.*[a-z])(?=.*[A-Z])(?=.*[@#$%^&+=])(?=\\S+$).{6,}$");
+    private static final Pattern BCRYPT_PATTERN = Pattern.compile("^\\$2[aby]?\\$\\d{2}\\$[./0-9A-Za-z]{53}$");
+    private static final String INSERT_SQL = "INSERT INTO users (first_name, last_name, email, password, "
+            + "phone_number, role, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final int MAX_REPORT_ERRORS = 10_000;
+
+    private final UserRepository userRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final PasswordEncoder hasher;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService hashingPool;
+    private final Semaphore importPermit = new Semaphore(1);
+    private final int chunkSize;
+
+    public UserImportServiceImpl(UserRepository userRepository, JdbcTemplate jdbcTemplate,
+                                 PasswordEncoder passwordEncoder, ObjectMapper objectMapper,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${app.user-import.hash-threads:0}") int hashThreads,
+                                 @Value("${app.user-import.chunk-size:1000}") int chunkSize) {
+        this.userRepository = userRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        // Băm trên pool riêng để import không chiếm pool dùng cho đăng nhập
+        this.hasher = passwordEncoder instanceof OffloadingPasswordEncoder offloading
+                ? offloading.getDelegate()
+                : passwordEncoder;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+
+        int threads = hashThreads > 0 ? hashThreads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.hashingPool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "user-import-hash-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        hashingPool.shutdownNow();
+    }
+
+    @Override
+    public UserImportReportDTO importUsers(InputStream input, Format format) throws IOException {
+        if (!importPermit.tryAcquire()) {
+            throw new ServiceBusyException("Another user import is already running", 30);
+        }
+        try {
+            UserImportReportDTO report = new UserImportReportDTO();
+            report.setFormat(format.name());
+            report.setStartedAt(LocalDateTime.now());
+
+            BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+            RowParser parser = format == Format.CSV ? new CsvRowParser() : new NdjsonRowParser();
+            List<ImportRow> chunk = new ArrayList<>(chunkSize);
+            long lineNumber = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (lineNumber == 1 && line.startsWith("\uFEFF")) {
+                    line = line.substring(1);
+                }
+                if (line.isBlank()) {
+                    continue;
+                }
+                ImportRow row = parser.parse(lineNumber, line);
+                if (row == null) {
+                    continue; // CSV header
+                }
+                chunk.add(row);
+                if (chunk.size() >= chunkSize) {
+                    processChunk(chunk, report);
+                    chunk.clear();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                processChunk(chunk, report);
+            }
+
+            report.setFinishedAt(LocalDateTime.now());
+            log.info("User import finished: {} rows, {} imported, {} failed",
+                    report.getTotal(), report.getImported(), report.getFailed());
+            return report;
+        } finally {
+            importPermit.release();
+        }
+    }
+
+    private void processChunk(List<ImportRow> chunk, UserImportReportDTO report) {
+        report.setTotal(report.getTotal() + chunk.size());
+
+        List<ImportRow> valid = new ArrayList<>(chunk.size());
+        Set<String> chunkEmails = new HashSet<>();
+        Set<String> chunkPhones = new HashSet<>();
+        for (ImportRow row : chunk) {
+            if (row.error == null) {
+                validate(row);
+            }
+            if (row.error == null && !chunkEmails.add(row.email.toLowerCase(Locale.ROOT))) {
+                row.error = "Duplicate email in upload";
+            }
+            if (row.error == null && row.phoneNumber != null && !chunkPhones.add(row.phoneNumber)) {
+                row.error = "Duplicate phone number in upload";
+            }
+            if (row.error != null) {
+                fail(report, row);
+            } else {
+                valid.add(row);
+            }
+        }
+        if (valid.isEmpty()) {
+            return;
+        }
+
+        // Một truy vấn cho cả chunk thay vì existsByEmail từng dòng
+        Set<String> existingEmails = userRepository.findExistingEmails(
+                        valid.stream().map(row -> row.email).collect(Collectors.toList())).stream()
+                .map(email -> email.toLowerCase(Locale.ROOT))
+                .collect(Collectors.toSet());
+        Set<String> existingPhones = chunkPhones.isEmpty()
+                ? Set.of()
+                : new HashSet<>(userRepository.findExistingPhoneNumbers(chunkPhones));
+
+        List<ImportRow> toInsert = new ArrayList<>(valid.size());
+        for (ImportRow row : valid) {
+            if (existingEmails.contains(row.email.toLowerCase(Locale.ROOT))) {
+                row.error = "Email already exists";
+            } else if (row.phoneNumber != null && existingPhones.contains(row.phoneNumber)) {
+                row.error = "Phone number already exists";
+            }
+            if (row.error != null) {
+                fail(report, row);
+            } else {
+                toInsert.add(row);
+            }
+        }
+        if (toInsert.isEmpty()) {
+            return;
+        }
+
+        hashPasswords(toInsert);
+        insert(toInsert, report);
+    }
+
+    private void hashPasswords(List<ImportRow> rows) {
+        List<CompletableFuture<Void>> futures = new ArrayList<>(rows.size());
+        for (ImportRow row : rows) {
+            if (BCRYPT_PATTERN.matcher(row.password).matches()) {
+                row.encodedPassword = row.password;
+            } else {
+                futures.add(CompletableFuture.runAsync(() -> row.encodedPassword = hasher.encode(row.password),
+                        hashingPool));
+            }
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        for (ImportRow row : rows) {
+            row.password = null;
+        }
+    }
+
+    private void insert(List<ImportRow> rows, UserImportReportDTO report) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    jdbcTemplate.batchUpdate(INSERT_SQL, rows, rows.size(), (ps, row) -> bind(ps, row, now)));
+            report.setImported(report.getImported() + rows.size());
+        } catch (DataIntegrityViolationException e) {
+            // Một user được tạo song song trong lúc import: thử lại từng dòng để chỉ loại dòng trùng
+            log.warn("Batch insert of {} users failed ({}), retrying row by row", rows.size(), e.getMessage());
+            for (ImportRow row : rows) {
+                try {
+                    jdbcTemplate.update(INSERT_SQL, ps -> bind(ps, row, now));
+                    report.setImported(report.getImported() + 1);
+                } catch (DataIntegrityViolationException duplicate) {
+                    row.error = "Email or phone number already exists";
+                    fail(report, row);
+                }
+            }
+        }
+    }
+
+    private static void bind(PreparedStatement ps, ImportRow row, Timestamp now) throws SQLException {
+        ps.setString(1, row.firstName);
+        ps.setString(2, row.lastName);
+        ps.setString(3, row.email);
+        ps.setString(4, row.encodedPassword);
+        ps.setString(5, row.phoneNumber);
+        ps.setString(6, row.role.name());
+        ps.setTimestamp(7, now);
+        ps.setTimestamp(8, now);
+    }
+
+    private static void validate(ImportRow row) {
+        if (row.firstName == null || row.firstName.length() < 2 || row.firstName.length() > 50) {
+            row.error = "First name must be between 2 and 50 characters";
+        } else if (row.lastName == null || row.lastName.length() < 2 || row.lastName.length() > 50) {
+            row.error = "Last name must be between 2 and 50 characters";
+        } else if (row.email == null || !EMAIL_PATTERN.matcher(row.email).matches()) {
+            row.error = "Invalid email format";
+        } else if (row.password == null) {
+            row.error = "Password is required";
+        } else if (!BCRYPT_PATTERN.matcher(row.password).matches()
+                && !PASSWORD_PATTERN.matcher(row.password).matches()) {
+            row.error = "Password must contain at least one digit, one uppercase, one lowercase letter "
+                    + "and one special character";
+        } else if (row.phoneNumber != null && !PHONE_PATTERN.matcher(row.phoneNumber).matches()) {
+            row.error = "Invalid phone number format";
+        } else if (row.role == null) {
+            row.error = "Unknown role";
+        }
+    }
+
+    private static void fail(UserImportReportDTO report, ImportRow row) {
+        report.setFailed(report.getFailed() + 1);
+        if (report.getErrors().size() < MAX_REPORT_ERRORS) {
+            report.getErrors().add(new UserImportReportDTO.RowError(row.line, row.email, row.error));
+        } else {
+            report.setErrorsTruncated(true);
+        }
+    }
+
+    private static UserRole parseRole(String value) {
+        if (value == null) {
+            return UserRole.ROLE_USER;
+        }
+        String name = value.toUpperCase(Locale.ROOT);
+        try {
+            return UserRole.valueOf(name.startsWith("ROLE_") ? name : "ROLE_" + name);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static String clean(String value) {
+        if (value == null) {
+            return null;
+        }
+        String trimmed = value.trim();
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+
+    private static ImportRow row(long line, String firstName, String lastName, String email, String password,
+                                 String phoneNumber, String role) {
+        ImportRow row = new ImportRow(line);
+        row.firstName = clean(firstName);
+        row.lastName = clean(lastName);
+        row.email = clean(email);
+        row.password = clean(password);
+        row.phoneNumber = clean(phoneNumber);
+        row.role = parseRole(clean(role));
+        return row;
+    }
+
+    private interface RowParser {
+        /**
+         * @return the parsed row (possibly carrying a parse error), or null for non-data lines
+         */
+        ImportRow parse(long line, String text);
+    }
+
+    /**
+     * RFC 4180 fields on a single line (quoted fields may contain commas and doubled quotes,
+     * not line breaks). The header names the columns, in any order.
+     */
+    private static final class CsvRowParser implements RowParser {
+        private Map<String, Integer> columns;
+
+        @Override
+        public ImportRow parse(long line, String text) {
+            List<String> fields = split(text);
+            if (columns == null) {
+                columns = new HashMap<>();
+                for (int i = 0; i < fields.size(); i++) {
+                    columns.put(fields.get(i).trim().toLowerCase(Locale.ROOT).replace("_", ""), i);
+                }
+                for (String required : List.of("firstname", "lastname", "email", "password")) {
+                    if (!columns.containsKey(required)) {
+                        throw new BadRequestException(
+                                "CSV header is missing the " + required + " column");
+                    }
+                }
+                return null;
+            }
+            return row(line, field(fields, "firstname"), field(fields, "lastname"), field(fields, "email"),
+                    field(fields, "password"), field(fields, columns.containsKey("phone") ? "phone" : "phonenumber"),
+                    field(fields, "role"));
+        }
+
+        private String field(List<String> fields, String column) {
+            Integer index = columns.get(column);
+            return index == null || index >= fields.size() ? null : fields.get(index);
+        }
+
+        private static List<String> split(String text) {
+            List<String> fields = new ArrayList<>();
+            StringBuilder current = new StringBuilder();
+            boolean quoted = false;
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (quoted) {
+                    if (c == '"' && i + 1 < text.length() && text.charAt(i + 1) == '"') {
+                        current.append('"');
+                        i++;
+                    } else if (c == '"') {
+                        quoted = false;
+                    } else {
+                        current.append(c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(current.toString());
+                    current.setLength(0);
+                } else {
+                    current.append(c);
+                }
+            }
+            fields.add(current.toString());
+            return fields;
+        }
+    }
+
+    private final class NdjsonRowParser implements RowParser {
+        @Override
+        public ImportRow parse(long line, String text) {
+            try {
+                JsonNode node = objectMapper.readTree(text);
+                if (!node.isObject()) {
+                    return invalid(line, "Line is not a JSON object");
+                }
+                return row(line, text(node, "firstName"), text(node, "lastName"), text(node, "email"),
+                        text(node, "password"), text(node, "phoneNumber"), text(node, "role"));
+            } catch (JsonProcessingException e) {
+                return invalid(line, "Malformed JSON: " + e.getOriginalMessage());
+            }
+        }
+
+        private String text(JsonNode node, String field) {
+            JsonNode value = node.get(field);
+            return value == null || value.isNull() ? null : value.asText();
+        }
+
+        private ImportRow invalid(long line, String message) {
+            ImportRow row = new ImportRow(line);
+            row.error = message;
+            return row;
+        }
+    }
+
+    private static final class ImportRow {
+        private final long line;
+        private String firstName;
+        private String lastName;
+        private String email;
+        private String password;
+        private String encodedPassword;
+        private String phoneNumber;
+        private UserRole role;
+        private String error;
+
+        private ImportRow(long line) {
+            this.line = line;
+        }
+    }
+}
@@ -1,18 +1,23 @@
 package com.project.hotel.service.impl;
 
 import com.project.hotel.dto.UserDTO;
+import com.project.hotel.dto.UserPageDTO;
 import com.project.hotel.entity.User;
 import com.project.hotel.repository.UserRepository;
+import com.project.hotel.service.AuthTokenService;
 import com.project.hotel.service.UserService;
 import com.project.hotel.constant.UserRole;
 import com.project.hotel.exception.ResourceNotFoundException;
 import com.project.hotel.exception.DuplicateResourceException;
 import com.project.hotel.exception.ValidationException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.stream.Collectors;
 import java.util.Optional;
@@ -23,11 +28,14 @@ public class UserServiceImpl implements UserService {
 
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final AuthTokenService authTokenService;
 
     @Autowired
-    public UserServiceImpl(UserRepository userRepository, PasswordEncoder passwordEncoder) {
+    public UserServiceImpl(UserRepository userRepository, PasswordEncoder passwordEncoder,
+                           AuthTokenService authTokenService) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
+        this.authTokenService = authTokenService;
     }
 
     @Override
@@ -71,6 +79,33 @@ public class UserServiceImpl implements UserService {
                 .collect(Collectors.toList());
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public UserPageDTO searchUsers(String query, UserRole role, long afterId, int limit) {
+        Collection<UserRole> roles = role != null ? EnumSet.of(role) : EnumSet.allOf(UserRole.class);
+        // Lấy dư một bản ghi để biết còn trang sau hay không
+        PageRequest page = PageRequest.of(0, limit + 1);
+        String trimmed = query == null ? "" : query.trim();
+
+        List<User> users = trimmed.isEmpty()
+                ? userRepository.findPage(roles, afterId, page)
+                : userRepository.searchPage(roles, escapeLike(trimmed) + "%", afterId, page);
+
+        boolean hasMore = users.size() > limit;
+        List<UserDTO> items = users.stream()
+                .limit(limit)
+                .map(this::convertToDTO)
+                .collect(Collectors.toList());
+        Long nextAfterId = hasMore ? items.get(items.size() - 1).getId() : null;
+        return new UserPageDTO(items, nextAfterId);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public long countUsers() {
+        return userRepository.count();
+    }
+
     @Override
     public UserDTO updateUser(Long id, UserDTO userDTO) {
         validateUserDTO(userDTO);
@@ -84,11 +119,18 @@ public class UserServiceImpl implements UserService {
             throw new DuplicateResourceException("Email already exists");
         }
 
+        String previousEmail = existingUser.getEmail();
+        UserRole previousRole = existingUser.getRole();
+        boolean passwordChanged = false;
+
         existingUser.setFirstName(userDTO.getFirstName());
         existingUser.setLastName(userDTO.getLastName());
         existingUser.setEmail(userDTO.getEmail());
-        if (userDTO.getPassword() != null && !userDTO.getPassword().isEmpty()) {
+        // Form sửa hồ sơ luôn gửi kèm mật khẩu: chỉ coi là đổi mật khẩu khi khác mật khẩu hiện tại
+        if (userDTO.getPassword() != null && !userDTO.getPassword().isEmpty()
+                && !passwordEncoder.matches(userDTO.getPassword(), existingUser.getPassword())) {
             existingUser.setPassword(passwordEncoder.encode(userDTO.getPassword()));
+            passwordChanged = true;
         }
         existingUser.setPhoneNumber(userDTO.getPhoneNumber());
         if (userDTO.getRole() != null) {
@@ -96,15 +138,20 @@ public class UserServiceImpl implements UserService {
         }
 
         User updatedUser = userRepository.save(existingUser);
+
+        // Token cũ mang email/quyền đã thay đổi, hoặc mật khẩu đã đổi: buộc đăng nhập lại
+        if (passwordChanged || previousRole != updatedUser.getRole() || !previousEmail.equals(updatedUser.getEmail())) {
+            authTokenService.revokeAllForUser(id, previousEmail);
+        }
         return convertToDTO(updatedUser);
     }
 
     @Override
     public void deleteUser(Long id) {
-        if (!userRepository.existsById(id)) {
-            throw new ResourceNotFoundException("User not found with id: " + id);
-        }
-        userRepository.deleteById(id);
+        User user = userRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("User not found with id: " + id));
+        authTokenService.revokeAllForUser(id, user.getEmail());
+        userRepository.delete(user);
     }
 
     @Override
@@ -149,4 +196,9 @@ public class UserServiceImpl implements UserService {
             throw new ValidationException("Invalid phone number format");
         }
     }
-}
\ No newline at end of file
+
+    // "!" là ký tự escape của LIKE trong UserRepository.searchPage
+    private static String escapeLike(String value) {
+        return value.replace("!", "!!").replace("%", "!%").replace("_", "!_");
+    }
+}
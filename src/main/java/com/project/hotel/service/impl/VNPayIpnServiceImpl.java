@@ -0,0 +1,331 @@
+package com.project.hotel.service.impl;
+
+import com.project.hotel.constant.BookingStatus;
+import com.project.hotel.constant.PaymentStatus;
+import com.project.hotel.constant.PaymentTransitionSource;
+import com.project.hotel.entity.Booking;
+import com.project.hotel.entity.Payment;
+import com.project.hotel.event.AvailabilityChangedEvent;
+import com.project.hotel.event.AvailabilityDelta;
+import com.project.hotel.event.RefundRequestedEvent;
+import com.project.hotel.repository.BookingRepository;
+import com.project.hotel.repository.PaymentRepository;
+import com.project.hotel.security.VNPaySigner;
+import com.project.hotel.service.PaymentStateMachine;
+import com.project.hotel.service.VNPayIpnService;
+import com.project.hotel.util.VNPayOrderCheck;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Server-to-server VNPay IPN handling.
+ * <p>
+ * The request thread verifies the signature, checks the order, amount and booking state
+ * against the database (VNPay codes 01/04/02), drops duplicates (gateway retries, concurrent
+ * browser returns) through a bounded in-memory set and only then enqueues the event and
+ * acknowledges it. Worker threads drain the queue and apply payment/booking changes in
+ * batches; only bookings that are still PENDING are changed, and the unique constraint on
+ * {@code payments.transaction_id} remains the final guard against duplicates.
+ */
+@Slf4j
+@Service
+public class VNPayIpnServiceImpl implements VNPayIpnService {
+
+    private final VNPaySigner vnPaySigner;
+    private final PaymentRepository paymentRepository;
+    private final BookingRepository bookingRepository;
+    private final PaymentStateMachine paymentStateMachine;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${vnpay.ipn.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${vnpay.ipn.workers:2}")
+    private int workerCount;
+
+    @Value("${vnpay.ipn.batch-size:100}")
+    private int batchSize;
+
+    @Value("${vnpay.ipn.dedup-capacity:100000}")
+    private int dedupCapacity;
+
+    private BlockingQueue<IpnEvent> queue;
+    private Set<String> seen;
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean running;
+
+    public VNPayIpnServiceImpl(VNPaySigner vnPaySigner, PaymentRepository paymentRepository,
+                               BookingRepository bookingRepository, PaymentStateMachine paymentStateMachine,
+                               PlatformTransactionManager transactionManager,
+                               ApplicationEventPublisher eventPublisher) {
+        this.vnPaySigner = vnPaySigner;
+        this.eventPublisher = eventPublisher;
+        this.paymentRepository = paymentRepository;
+        this.bookingRepository = bookingRepository;
+        this.paymentStateMachine = paymentStateMachine;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @PostConstruct
+    void start() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        seen = Collections.synchronizedSet(Collections.newSetFromMap(new LinkedHashMap<String, Boolean>(1024, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > dedupCapacity;
+            }
+        }));
+
+        running = true;
+        for (int i = 0; i < workerCount; i++) {
+            Thread worker = new Thread(this::drainLoop, "vnpay-ipn-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+        for (Thread worker : workers) {
+            worker.join(TimeUnit.SECONDS.toMillis(5));
+        }
+        if (!queue.isEmpty()) {
+            log.warn("{} VNPay IPN events were not applied before shutdown; VNPay will retry them", queue.size());
+        }
+    }
+
+    @Override
+    public Map<String, String> handleIpn(Map<String, String> vnpParams) {
+        if (!vnPaySigner.verify(vnpParams, vnpParams.get(VNPaySigner.SECURE_HASH))) {
+            return response("97", "Invalid signature");
+        }
+
+        String txnRef = vnpParams.get("vnp_TxnRef");
+        String transactionNo = vnpParams.get("vnp_TransactionNo");
+        String responseCode = vnpParams.get("vnp_ResponseCode");
+        Long bookingId = parseBookingId(txnRef);
+        if (bookingId == null || !StringUtils.hasText(transactionNo) || !StringUtils.hasText(responseCode)) {
+            return response("01", "Order not found");
+        }
+
+        // Kiểm tra đồng bộ trước khi xác nhận: sau "00" VNPay sẽ không gửi lại IPN
+        Optional<Booking> booking = bookingRepository.findById(bookingId);
+        if (booking.isEmpty()) {
+            return response("01", "Order not found");
+        }
+        VNPayOrderCheck.Result check = VNPayOrderCheck.check(booking.get(), vnpParams.get("vnp_Amount"));
+        if (check == VNPayOrderCheck.Result.INVALID_AMOUNT) {
+            log.warn("VNPay IPN amount {} does not match booking {} total {}",
+                    vnpParams.get("vnp_Amount"), bookingId, booking.get().getTotalPrice());
+            return response("04", "Invalid amount");
+        }
+        if (check == VNPayOrderCheck.Result.NOT_PENDING
+                || paymentRepository.findByTransactionId(transactionNo).isPresent()) {
+            return response("02", "Order already confirmed");
+        }
+
+        String key = txnRef + ":" + transactionNo;
+        if (!seen.add(key)) {
+            return response("02", "Order already confirmed");
+        }
+
+        IpnEvent event = new IpnEvent(key, bookingId, txnRef, transactionNo, responseCode);
+        if (!queue.offer(event)) {
+            // Not acknowledged: forget the key so the gateway retry is accepted later
+            seen.remove(key);
+            log.warn("VNPay IPN queue is full, rejecting transaction {}", transactionNo);
+            return response("99", "Unknown error");
+        }
+        return response("00", "Confirm Success");
+    }
+
+    private void drainLoop() {
+        List<IpnEvent> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                IpnEvent first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                applyBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void applyBatch(List<IpnEvent> batch) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> apply(batch));
+        } catch (RuntimeException e) {
+            // Fall back to one transaction per event so a single bad event cannot sink the batch
+            log.warn("Batch of {} VNPay IPN events failed ({}), retrying individually", batch.size(), e.getMessage());
+            for (IpnEvent event : batch) {
+                try {
+                    transactionTemplate.executeWithoutResult(status -> apply(List.of(event)));
+                } catch (DataIntegrityViolationException duplicate) {
+                    log.info("VNPay transaction {} was already recorded", event.transactionNo);
+                } catch (RuntimeException failure) {
+                    seen.remove(event.key);
+                    log.error("Failed to apply VNPay IPN for transaction {}: {}",
+                            event.transactionNo, failure.getMessage(), failure);
+                }
+            }
+        }
+    }
+
+    private void apply(List<IpnEvent> batch) {
+        Map<String, IpnEvent> byTransactionNo = new LinkedHashMap<>();
+        for (IpnEvent event : batch) {
+            byTransactionNo.putIfAbsent(event.transactionNo, event);
+        }
+        for (Payment existing : paymentRepository.findByTransactionIdIn(byTransactionNo.keySet())) {
+            byTransactionNo.remove(existing.getTransactionId());
+        }
+        if (byTransactionNo.isEmpty()) {
+            return;
+        }
+
+        Set<Long> bookingIds = byTransactionNo.values().stream().map(e -> e.bookingId).collect(Collectors.toSet());
+        Map<Long, Booking> bookings = bookingRepository.findAllById(bookingIds).stream()
+                .collect(Collectors.toMap(Booking::getId, Function.identity()));
+        // Giao dịch PENDING được lưu khi tạo URL thanh toán
+        Map<Long, Payment> pendingByBooking = paymentRepository
+                .findByBookingIdInAndStatus(bookingIds, PaymentStatus.PENDING).stream()
+                .collect(Collectors.toMap(p -> p.getBooking().getId(), Function.identity(), (a, b) -> a));
+
+        List<Payment> payments = new ArrayList<>(byTransactionNo.size());
+        List<Payment> created = new ArrayList<>();
+        List<Payment> toRefund = new ArrayList<>();
+        List<AvailabilityDelta> released = new ArrayList<>();
+        for (IpnEvent event : byTransactionNo.values()) {
+            Booking booking = bookings.get(event.bookingId);
+            if (booking == null) {
+                log.warn("Booking {} not found for VNPay transaction {}", event.bookingId, event.transactionNo);
+                continue;
+            }
+            boolean success = "00".equals(event.responseCode);
+            if (booking.getStatus() != BookingStatus.PENDING && !success) {
+                // Đơn đã được xử lý (huỷ, xác nhận bởi giao dịch khác) kể từ khi IPN được xác nhận
+                log.info("Ignoring failed VNPay transaction {} for {} booking {}",
+                        event.transactionNo, booking.getStatus(), booking.getId());
+                continue;
+            }
+
+            Payment payment = pendingByBooking.remove(booking.getId());
+            boolean isNew = payment == null;
+            if (isNew) {
+                payment = new Payment();
+                payment.setBooking(booking);
+                payment.setAmount(booking.getTotalPrice());
+                created.add(payment);
+            }
+            payment.setTransactionId(event.transactionNo);
+            payment.setTxnRef(event.txnRef);
+            payment.setPaymentTime(LocalDateTime.now());
+            setStatus(payment, success ? PaymentStatus.PAID : PaymentStatus.FAILED, isNew,
+                    event.responseCode);
+
+            if (success) {
+                if (booking.getStatus() == BookingStatus.PENDING) {
+                    booking.setStatus(BookingStatus.CONFIRMED);
+                } else {
+                    // Tiền đã bị trừ nhưng đơn không còn chờ thanh toán: hoàn tiền thay vì xác nhận lại
+                    log.warn("VNPay transaction {} paid {} booking {}, refunding",
+                            event.transactionNo, booking.getStatus(), booking.getId());
+                    toRefund.add(payment);
+                }
+            } else {
+                booking.setStatus(BookingStatus.CANCELLED);
+                released.add(AvailabilityDelta.of(booking, true));
+            }
+            payments.add(payment);
+        }
+
+        paymentRepository.saveAll(payments);
+        paymentStateMachine.recordCreated(created, PaymentTransitionSource.VNPAY_IPN);
+        for (Payment payment : toRefund) {
+            paymentStateMachine.transition(payment, PaymentStatus.REFUND_PENDING, PaymentTransitionSource.VNPAY_IPN,
+                    "Booking " + payment.getBooking().getId() + " is " + payment.getBooking().getStatus());
+            eventPublisher.publishEvent(new RefundRequestedEvent(payment.getId()));
+        }
+        if (!released.isEmpty()) {
+            eventPublisher.publishEvent(new AvailabilityChangedEvent(released));
+        }
+        log.info("Applied {} VNPay IPN payments", payments.size());
+    }
+
+    private void setStatus(Payment payment, PaymentStatus target, boolean created, String responseCode) {
+        if (created) {
+            payment.setStatus(target);
+        } else {
+            paymentStateMachine.transition(payment, target, PaymentTransitionSource.VNPAY_IPN,
+                    "Response code " + responseCode);
+        }
+    }
+
+    private Long parseBookingId(String txnRef) {
+        if (!StringUtils.hasText(txnRef)) {
+            return null;
+        }
+        String[] parts = txnRef.split("-");
+        if (parts.length != 2) {
+            return null;
+        }
+        try {
+            return Long.parseLong(parts[0]);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private Map<String, String> response(String code, String message) {
+        Map<String, String> response = new LinkedHashMap<>();
+        response.put("RspCode", code);
+        response.put("Message", message);
+        return response;
+    }
+
+    private static final class IpnEvent {
+        private final String key;
+        private final Long bookingId;
+        private final String txnRef;
+        private final String transactionNo;
+        private final String responseCode;
+
+        private IpnEvent(String key, Long bookingId, String txnRef, String transactionNo, String responseCode) {
+            this.key = key;
+            this.bookingId = bookingId;
+            this.txnRef = txnRef;
+            this.transactionNo = transactionNo;
+            this.responseCode = responseCode;
+        }
+    }
+}
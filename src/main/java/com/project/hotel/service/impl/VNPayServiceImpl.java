@@ -5,25 +5,32 @@ import com.project.hotel.dto.VNPayRequestDTO;
 import com.project.hotel.dto.VNPayResponseDTO;
 import com.project.hotel.entity.Booking;
 import com.project.hotel.entity.Payment;
+import com.project.hotel.event.AvailabilityChangedEvent;
+import com.project.hotel.event.AvailabilityDelta;
+import com.project.hotel.event.RefundRequestedEvent;
 import com.project.hotel.exception.PaymentProcessingException;
 import com.project.hotel.exception.ResourceNotFoundException;
 import com.project.hotel.repository.BookingRepository;
 import com.project.hotel.repository.PaymentRepository;
+import com.project.hotel.security.VNPaySigner;
+import com.project.hotel.service.PaymentStateMachine;
 import com.project.hotel.service.VNPayService;
+import com.project.hotel.util.ClientIpUtils;
+import com.project.hotel.util.VNPayOrderCheck;
 import com.project.hotel.constant.PaymentStatus;
 import com.project.hotel.constant.BookingStatus;
+import com.project.hotel.constant.PaymentTransitionSource;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
-import java.net.URLEncoder;
-import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
 
@@ -32,20 +39,36 @@ import java.util.*;
 @RequiredArgsConstructor
 public class VNPayServiceImpl implements VNPayService {
 
+    // Thứ tự tăng dần theo tên, khớp với mảng giá trị trong buildPaymentValues
+    private static final String[] PAYMENT_FIELDS = {
+            "vnp_Amount", "vnp_Command", "vnp_CreateDate", "vnp_CurrCode", "vnp_ExpireDate",
+            "vnp_IpAddr", "vnp_Locale", "vnp_OrderInfo", "vnp_OrderType", "vnp_ReturnUrl",
+            "vnp_TmnCode", "vnp_TxnRef", "vnp_Version"
+    };
+    private static final DateTimeFormatter VNPAY_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+
     private final VNPayConfig vnPayConfig;
     private final PaymentRepository paymentRepository;
     private final BookingRepository bookingRepository;
+    private final VNPaySigner vnPaySigner;
+    private final PaymentStateMachine paymentStateMachine;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Override
+    @Transactional
     public String createPaymentUrl(VNPayRequestDTO request) {
         try {
-            validatePaymentRequest(request);
+            Booking booking = validatePaymentRequest(request);
 
-            Map<String, String> vnpParams = buildPaymentParams(request);
-            String queryUrl = buildQueryUrl(vnpParams);
-            String secureHash = calculateSecureHash(vnpParams);
+            // TxnRef and CreateDate come from the same instant so the transaction date can be
+            // recovered from the TxnRef when querying the gateway later
+            long now = System.currentTimeMillis();
+            String txnRef = request.getBookingId() + "-" + now;
+            recordPendingPayment(booking, request.getAmount(), txnRef,
+                    LocalDateTime.ofInstant(Instant.ofEpochMilli(now), ZoneId.systemDefault()));
 
-            String paymentUrl = vnPayConfig.getUrl() + "?" + queryUrl + "&vnp_SecureHash=" + secureHash;
+            String signedQuery = vnPaySigner.signedQuery(PAYMENT_FIELDS, buildPaymentValues(request, txnRef, now));
+            String paymentUrl = vnPayConfig.getUrl() + "?" + signedQuery;
             log.info("Created VNPay payment URL for booking {}: {}", request.getBookingId(), paymentUrl);
             return paymentUrl;
         } catch (Exception e) {
@@ -55,6 +78,7 @@ public class VNPayServiceImpl implements VNPayService {
     }
 
     @Override
+    @Transactional
     public String createPaymentUrl(Long bookingId, HttpServletRequest request) {
         try {
             Booking booking = bookingRepository.findById(bookingId)
@@ -66,7 +90,7 @@ public class VNPayServiceImpl implements VNPayService {
             vnPayRequest.setOrderId("ORDER_" + System.currentTimeMillis());
             vnPayRequest.setAmount(booking.getTotalPrice().longValue());
             vnPayRequest.setOrderInfo("Thanh toan dat phong " + booking.getBookingReference());
-            vnPayRequest.setIpAddress(getClientIp(request));
+            vnPayRequest.setIpAddress(ClientIpUtils.getClientIp(request));
 
             return createPaymentUrl(vnPayRequest);
         } catch (Exception e) {
@@ -138,7 +162,6 @@ public class VNPayServiceImpl implements VNPayService {
     @Transactional(rollbackFor = Exception.class)
     public Payment processPaymentReturn(Map<String, String> vnpParams) {
         try {
-            // Remove vnp_SecureHash before validating
             String vnp_SecureHash = vnpParams.get("vnp_SecureHash");
             String vnp_ResponseCode = vnpParams.get("vnp_ResponseCode");
             String vnp_TxnRef = vnpParams.get("vnp_TxnRef");
@@ -151,47 +174,91 @@ public class VNPayServiceImpl implements VNPayService {
             }
             Long bookingId = Long.parseLong(txnRefParts[0]);
 
-            // Remove hash from params before validation
-            vnpParams.remove("vnp_SecureHash");
-            vnpParams.remove("vnp_SecureHashType");
-
-            // Validate hash
-            String signValue = hashAllFields(vnpParams);
-            if (!signValue.equals(vnp_SecureHash)) {
+            // Validate hash (the hash fields themselves are excluded by the signer)
+            if (!vnPaySigner.verify(vnpParams, vnp_SecureHash)) {
                 throw new PaymentProcessingException("Invalid signature");
             }
 
+            // Check if payment already processed (IPN or an earlier return) before taking the row lock,
+            // so browser refreshes and gateway retries are a single indexed read
+            Optional<Payment> existingPayment = paymentRepository.findByTransactionId(vnp_TransactionNo);
+            if (existingPayment.isPresent()) {
+                log.debug("Payment already processed for transaction {}", vnp_TransactionNo);
+                return existingPayment.get();
+            }
+
             // Get booking with lock
             Booking booking = bookingRepository.findByIdWithLock(bookingId)
                     .orElseThrow(() -> new ResourceNotFoundException("Booking not found"));
 
-            // Check if payment already processed
-            Optional<Payment> existingPayment = paymentRepository.findByTransactionId(vnp_TransactionNo);
+            // Re-check under the lock in case a concurrent request recorded it meanwhile
+            existingPayment = paymentRepository.findByTransactionId(vnp_TransactionNo);
             if (existingPayment.isPresent()) {
-                log.warn("Payment already processed for transaction {}", vnp_TransactionNo);
                 return existingPayment.get();
             }
 
-            // Create payment record
-            Payment payment = new Payment();
-            payment.setBooking(booking);
-            payment.setAmount(booking.getTotalPrice());
+            // Cùng kiểm tra với IPN: sai số tiền thì từ chối, đơn không còn chờ thì không xác nhận lại
+            boolean success = "00".equals(vnp_ResponseCode);
+            VNPayOrderCheck.Result check = VNPayOrderCheck.check(booking, vnpParams.get("vnp_Amount"));
+            if (check == VNPayOrderCheck.Result.INVALID_AMOUNT) {
+                log.warn("VNPay return amount {} does not match booking {} total {}",
+                        vnpParams.get("vnp_Amount"), bookingId, booking.getTotalPrice());
+                throw new PaymentProcessingException("Invalid amount");
+            }
+            boolean pending = check == VNPayOrderCheck.Result.OK;
+            if (!pending && !success) {
+                log.info("Ignoring failed VNPay transaction {} for {} booking {}",
+                        vnp_TransactionNo, booking.getStatus(), bookingId);
+                throw new PaymentProcessingException("Booking is no longer pending");
+            }
+
+            // Complete the PENDING payment recorded when the URL was created; older bookings may not have one
+            Payment payment = paymentRepository.findByBookingId(bookingId)
+                    .filter(p -> p.getStatus() == PaymentStatus.PENDING)
+                    .orElse(null);
+            boolean created = payment == null;
+            if (created) {
+                payment = new Payment();
+                payment.setBooking(booking);
+                payment.setAmount(booking.getTotalPrice());
+            }
             payment.setTransactionId(vnp_TransactionNo);
+            payment.setTxnRef(vnp_TxnRef);
             payment.setPaymentTime(LocalDateTime.now());
 
             // Update status based on response code
-            if ("00".equals(vnp_ResponseCode)) {
+            PaymentStatus target = success ? PaymentStatus.PAID : PaymentStatus.FAILED;
+            if (created) {
+                payment.setStatus(target);
+            } else {
+                paymentStateMachine.transition(payment, target, PaymentTransitionSource.VNPAY_RETURN,
+                        "Response code " + vnp_ResponseCode);
+            }
+            if (success && !pending) {
+                // Tiền đã bị trừ nhưng đơn không còn chờ thanh toán: hoàn tiền thay vì xác nhận lại
+                log.warn("VNPay transaction {} paid {} booking {}, refunding",
+                        vnp_TransactionNo, booking.getStatus(), bookingId);
+            } else if (success) {
                 booking.setStatus(BookingStatus.CONFIRMED);
-                payment.setStatus(PaymentStatus.PAID);
                 log.info("Payment successful for booking {}", bookingId);
             } else {
                 booking.setStatus(BookingStatus.CANCELLED);
-                payment.setStatus(PaymentStatus.FAILED);
+                eventPublisher.publishEvent(new AvailabilityChangedEvent(List.of(AvailabilityDelta.of(booking, true))));
                 log.warn("Payment failed for booking {} with response code {}", bookingId, vnp_ResponseCode);
             }
 
             bookingRepository.save(booking);
-            return paymentRepository.save(payment);
+            Payment savedPayment = paymentRepository.save(payment);
+            if (created) {
+                paymentStateMachine.recordCreated(List.of(savedPayment), PaymentTransitionSource.VNPAY_RETURN);
+            }
+            if (success && !pending) {
+                paymentStateMachine.transition(savedPayment, PaymentStatus.REFUND_PENDING,
+                        PaymentTransitionSource.VNPAY_RETURN, "Booking " + bookingId + " is " + booking.getStatus());
+                savedPayment = paymentRepository.save(savedPayment);
+                eventPublisher.publishEvent(new RefundRequestedEvent(savedPayment.getId()));
+            }
+            return savedPayment;
         } catch (Exception e) {
             log.error("Error processing payment return: {}", e.getMessage(), e);
             throw new PaymentProcessingException("Failed to process payment return", e);
@@ -206,14 +273,10 @@ public class VNPayServiceImpl implements VNPayService {
                 return false;
             }
 
-            Map<String, String> params = new HashMap<>(vnpParams);
-            params.remove("vnp_SecureHash");
-
-            String calculatedHash = calculateSecureHash(params);
-            boolean isValid = calculatedHash.equals(vnpSecureHash);
+            boolean isValid = vnPaySigner.verify(vnpParams, vnpSecureHash);
 
             if (!isValid) {
-                log.warn("Invalid secure hash. Expected: {}, Got: {}", calculatedHash, vnpSecureHash);
+                log.warn("Invalid secure hash: {}", vnpSecureHash);
             }
 
             return isValid;
@@ -225,7 +288,7 @@ public class VNPayServiceImpl implements VNPayService {
 
     // Private helper methods
 
-    private void validatePaymentRequest(VNPayRequestDTO request) {
+    private Booking validatePaymentRequest(VNPayRequestDTO request) {
         if (request == null) {
             throw new IllegalArgumentException("Payment request cannot be null");
         }
@@ -254,10 +317,35 @@ public class VNPayServiceImpl implements VNPayService {
             throw new PaymentProcessingException("Booking is not in pending state");
         }
 
-        // Check if payment already exists
-        if (paymentRepository.findByBookingId(request.getBookingId()).isPresent()) {
+        // A PENDING payment is a previous attempt that was never completed and may be retried
+        if (paymentRepository.findByBookingId(request.getBookingId())
+                .filter(payment -> payment.getStatus() != PaymentStatus.PENDING)
+                .isPresent()) {
             throw new PaymentProcessingException("Payment already exists for this booking");
         }
+        return booking;
+    }
+
+    /**
+     * Lưu giao dịch PENDING cùng TxnRef trước khi chuyển khách sang VNPay, để đối soát vẫn
+     * tìm thấy giao dịch khi cả return lẫn IPN đều không về. Lần thử lại dùng chung bản ghi.
+     */
+    private void recordPendingPayment(Booking booking, long amount, String txnRef, LocalDateTime createdAt) {
+        Payment payment = paymentRepository.findByBookingId(booking.getId()).orElse(null);
+        boolean created = payment == null;
+        if (created) {
+            payment = new Payment();
+            payment.setBooking(booking);
+            payment.setStatus(PaymentStatus.PENDING);
+        }
+        payment.setAmount(java.math.BigDecimal.valueOf(amount));
+        payment.setTxnRef(txnRef);
+        payment.setPaymentTime(createdAt);
+
+        Payment saved = paymentRepository.save(payment);
+        if (created) {
+            paymentStateMachine.recordCreated(List.of(saved), PaymentTransitionSource.CHECKOUT);
+        }
     }
 
     private void validateBooking(Booking booking) {
@@ -272,215 +360,40 @@ public class VNPayServiceImpl implements VNPayService {
         }
     }
 
-    private Map<String, String> buildPaymentParams(VNPayRequestDTO request) {
-        String txnRef = request.getBookingId() + "-" + System.currentTimeMillis();
-
-        Map<String, String> vnpParams = new HashMap<>();
-        vnpParams.put("vnp_Version", vnPayConfig.getVersion());
-        vnpParams.put("vnp_Command", vnPayConfig.getCommand());
-        vnpParams.put("vnp_TmnCode", vnPayConfig.getTmnCode());
-        vnpParams.put("vnp_Amount", String.valueOf(request.getAmount() * 100)); // Convert to VND (x100)
-        vnpParams.put("vnp_CurrCode", vnPayConfig.getCurrencyCode());
-        vnpParams.put("vnp_TxnRef", txnRef);
-        vnpParams.put("vnp_OrderInfo", request.getOrderInfo());
-        vnpParams.put("vnp_OrderType", vnPayConfig.getOrderType());
-        vnpParams.put("vnp_Locale", vnPayConfig.getLocale());
-        vnpParams.put("vnp_ReturnUrl", vnPayConfig.getReturnUrl());
-        vnpParams.put("vnp_IpAddr", request.getIpAddress());
-
-        // Add create date
-        LocalDateTime now = LocalDateTime.now();
-        String createDate = now.format(DateTimeFormatter.ofPattern("yyyyMMddHHmmss"));
-        vnpParams.put("vnp_CreateDate", createDate);
-
-        // Add expire date (15 minutes from now)
-        LocalDateTime expireDate = now.plusMinutes(15);
-        vnpParams.put("vnp_ExpireDate", expireDate.format(DateTimeFormatter.ofPattern("yyyyMMddHHmmss")));
-
-        // Sort params before calculating secure hash
-        List<String> fieldNames = new ArrayList<>(vnpParams.keySet());
-        Collections.sort(fieldNames);
-
-        // Build hash data
-        StringBuilder hashData = new StringBuilder();
-        StringBuilder query = new StringBuilder();
-        Iterator<String> itr = fieldNames.iterator();
-        while (itr.hasNext()) {
-            String fieldName = itr.next();
-            String fieldValue = vnpParams.get(fieldName);
-            if ((fieldValue != null) && (fieldValue.length() > 0)) {
-                // Build hash data
-                hashData.append(fieldName);
-                hashData.append('=');
-                hashData.append(URLEncoder.encode(fieldValue, StandardCharsets.US_ASCII));
-
-                // Build query
-                query.append(URLEncoder.encode(fieldName, StandardCharsets.US_ASCII));
-                query.append('=');
-                query.append(URLEncoder.encode(fieldValue, StandardCharsets.US_ASCII));
-
-                if (itr.hasNext()) {
-                    query.append('&');
-                    hashData.append('&');
-                }
-            }
-        }
-
-        String queryUrl = query.toString();
-        String vnp_SecureHash = hmacSHA512(vnPayConfig.getHashSecret(), hashData.toString());
-        queryUrl += "&vnp_SecureHash=" + vnp_SecureHash;
-
-        String paymentUrl = vnPayConfig.getUrl() + "?" + queryUrl;
-        return vnpParams;
-    }
-
-    private String hmacSHA512(String key, String data) {
-        try {
-            Mac sha512_HMAC = Mac.getInstance("HmacSHA512");
-            byte[] hmacKeyBytes = key.getBytes();
-            SecretKeySpec secretKey = new SecretKeySpec(hmacKeyBytes, "HmacSHA512");
-            sha512_HMAC.init(secretKey);
-            byte[] dataBytes = data.getBytes(StandardCharsets.UTF_8);
-            byte[] result = sha512_HMAC.doFinal(dataBytes);
-            StringBuilder sb = new StringBuilder();
-            for (byte b : result) {
-                sb.append(String.format("%02x", b));
-            }
-            return sb.toString();
-        } catch (Exception e) {
-            throw new PaymentProcessingException("Error calculating HMAC-SHA512", e);
-        }
-    }
-
-    private String buildQueryUrl(Map<String, String> vnpParams) {
-        List<String> fieldNames = new ArrayList<>(vnpParams.keySet());
-        Collections.sort(fieldNames);
-
-        StringBuilder query = new StringBuilder();
-        for (String fieldName : fieldNames) {
-            String fieldValue = vnpParams.get(fieldName);
-            if (StringUtils.hasText(fieldValue)) {
-                if (query.length() > 0) {
-                    query.append('&');
-                }
-                query.append(URLEncoder.encode(fieldName, StandardCharsets.US_ASCII))
-                        .append('=')
-                        .append(URLEncoder.encode(fieldValue, StandardCharsets.US_ASCII));
-            }
-        }
-        return query.toString();
-    }
-
-    private String calculateSecureHash(Map<String, String> vnpParams) {
-        try {
-            List<String> fieldNames = new ArrayList<>(vnpParams.keySet());
-            Collections.sort(fieldNames);
-
-            StringBuilder hashData = new StringBuilder();
-            for (String fieldName : fieldNames) {
-                String fieldValue = vnpParams.get(fieldName);
-                if (StringUtils.hasText(fieldValue)) {
-                    if (hashData.length() > 0) {
-                        hashData.append('&');
-                    }
-                    hashData.append(fieldName).append('=').append(fieldValue);
-                }
-            }
-
-            String calculatedHash = calculateHmacSHA512(vnPayConfig.getHashSecret(), hashData.toString());
-            return calculatedHash;
-        } catch (Exception e) {
-            throw new PaymentProcessingException("Error calculating secure hash", e);
-        }
+    private String[] buildPaymentValues(VNPayRequestDTO request, String txnRef, long now) {
+        LocalDateTime createDate = LocalDateTime.ofInstant(Instant.ofEpochMilli(now), ZoneId.systemDefault());
+
+        return new String[] {
+                String.valueOf(request.getAmount() * 100), // vnp_Amount: VND x100
+                vnPayConfig.getCommand(),                   // vnp_Command
+                createDate.format(VNPAY_DATE_FORMAT),       // vnp_CreateDate
+                vnPayConfig.getCurrencyCode(),              // vnp_CurrCode
+                createDate.plusMinutes(15).format(VNPAY_DATE_FORMAT), // vnp_ExpireDate
+                request.getIpAddress(),                     // vnp_IpAddr
+                vnPayConfig.getLocale(),                    // vnp_Locale
+                request.getOrderInfo(),                     // vnp_OrderInfo
+                vnPayConfig.getOrderType(),                 // vnp_OrderType
+                vnPayConfig.getReturnUrl(),                 // vnp_ReturnUrl
+                vnPayConfig.getTmnCode(),                   // vnp_TmnCode
+                txnRef,                                     // vnp_TxnRef
+                vnPayConfig.getVersion()                    // vnp_Version
+        };
     }
 
     private void updatePaymentStatus(Payment payment, String responseCode) {
         if ("00".equals(responseCode)) {
-            payment.setStatus(PaymentStatus.PAID);
+            paymentStateMachine.transition(payment, PaymentStatus.PAID, PaymentTransitionSource.VNPAY_RETURN,
+                    "Response code " + responseCode);
             payment.getBooking().setStatus(BookingStatus.CONFIRMED);
             log.info("Payment successful for booking {}: {}", payment.getBooking().getId(), payment.getStatus());
         } else {
-            payment.setStatus(PaymentStatus.FAILED);
+            paymentStateMachine.transition(payment, PaymentStatus.FAILED, PaymentTransitionSource.VNPAY_RETURN,
+                    "Response code " + responseCode);
             payment.getBooking().setStatus(BookingStatus.CANCELLED);
+            eventPublisher.publishEvent(new AvailabilityChangedEvent(
+                    List.of(AvailabilityDelta.of(payment.getBooking(), true))));
             log.warn("Payment failed for booking {} with response code: {}", payment.getBooking().getId(),
                     responseCode);
         }
     }
-
-    private String getClientIp(HttpServletRequest request) {
-        // Try X-Forwarded-For first
-        String xForwardedFor = request.getHeader("X-Forwarded-For");
-        if (xForwardedFor != null && !xForwardedFor.isEmpty()) {
-            // Get the first IP in the chain
-            return xForwardedFor.split(",")[0].trim();
-        }
-
-        // Try Proxy-Client-IP
-        String proxyClientIp = request.getHeader("Proxy-Client-IP");
-        if (proxyClientIp != null && !proxyClientIp.isEmpty()) {
-            return proxyClientIp;
-        }
-
-        // Try WL-Proxy-Client-IP
-        String wlProxyClientIp = request.getHeader("WL-Proxy-Client-IP");
-        if (wlProxyClientIp != null && !wlProxyClientIp.isEmpty()) {
-            return wlProxyClientIp;
-        }
-
-        // Fallback to remote address
-        return request.getRemoteAddr();
-    }
-
-    private boolean verifyHash(Map<String, String> params) {
-        String vnp_SecureHash = params.remove("vnp_SecureHash");
-        String signValue = calculateHmacSHA512(vnPayConfig.getHashSecret(),
-                createRawHash(new TreeMap<>(params)));
-        return signValue.equals(vnp_SecureHash);
-    }
-
-    private String createRawHash(Map<String, String> params) {
-        StringBuilder hashData = new StringBuilder();
-        params.forEach((key, value) -> {
-            if (value != null && !value.isEmpty()) {
-                hashData.append(key).append('=').append(value).append('&');
-            }
-        });
-        if (hashData.length() > 0) {
-            hashData.setLength(hashData.length() - 1);
-        }
-        return hashData.toString();
-    }
-
-    private String calculateHmacSHA512(String key, String data) {
-        try {
-            Mac sha512Hmac = Mac.getInstance("HmacSHA512");
-            SecretKeySpec secretKey = new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), "HmacSHA512");
-            sha512Hmac.init(secretKey);
-            byte[] hmacData = sha512Hmac.doFinal(data.getBytes(StandardCharsets.UTF_8));
-            return Base64.getEncoder().encodeToString(hmacData);
-        } catch (Exception e) {
-            log.error("Error calculating HMAC-SHA512", e);
-            throw new RuntimeException("Error calculating hash", e);
-        }
-    }
-
-    private String hashAllFields(Map<String, String> fields) {
-        List<String> fieldNames = new ArrayList<>(fields.keySet());
-        Collections.sort(fieldNames);
-        StringBuilder sb = new StringBuilder();
-        Iterator<String> itr = fieldNames.iterator();
-        while (itr.hasNext()) {
-            String fieldName = itr.next();
-            String fieldValue = fields.get(fieldName);
-            if ((fieldValue != null) && (fieldValue.length() > 0)) {
-                sb.append(fieldName);
-                sb.append("=");
-                sb.append(fieldValue);
-                if (itr.hasNext()) {
-                    sb.append("&");
-                }
-            }
-        }
-        return calculateHmacSHA512(vnPayConfig.getHashSecret(), sb.toString());
-    }
-}
\ No newline at end of file
+}
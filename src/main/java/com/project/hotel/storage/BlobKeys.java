@@ -0,0 +1,36 @@
+package com.project.hotel.storage;
+
+import java.util.regex.Pattern;
+
+/**
+ * Quy ước đặt tên blob: {sha256 hex}{.ext}, lưu theo thư mục phân mảnh ab/cd/{key}
+ */
+public final class BlobKeys {
+
+    private static final Pattern KEY_PATTERN = Pattern.compile("^[0-9a-f]{64}(\\.[a-z0-9]{1,5})?$");
+
+    private BlobKeys() {
+    }
+
+    public static boolean isBlobKey(String name) {
+        return name != null && KEY_PATTERN.matcher(name).matches();
+    }
+
+    /**
+     * Relative path of a blob under the store root, e.g. {@code 9f/86/9f86d0...}.
+     */
+    public static String shardedPath(String key) {
+        return key.substring(0, 2) + "/" + key.substring(2, 4) + "/" + key;
+    }
+
+    /**
+     * Blob key of an image URL such as {@code /api/uploads/{key}}, or null for legacy names.
+     */
+    public static String fromUrl(String url) {
+        if (url == null) {
+            return null;
+        }
+        String name = url.substring(url.lastIndexOf('/') + 1);
+        return isBlobKey(name) ? name : null;
+    }
+}
@@ -0,0 +1,51 @@
+package com.project.hotel.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed storage for uploaded files.
+ * <p>
+ * A blob's key is the lowercase hex SHA-256 of its content plus the extension of its
+ * sniffed type (e.g. {@code 9f86d0...0a08.jpg}), so identical uploads share one copy.
+ * Writing is two-phase: {@link #stage} streams the content to a private temporary
+ * location while hashing it, {@link #commit} publishes it under its key. Callers record
+ * the reference between the two so a concurrent delete of the same content can never
+ * remove a blob that has just been referenced again (see {@code BlobServiceImpl}).
+ * Reference counting itself is not the store's concern.
+ */
+public interface BlobStore {
+
+    StagedBlob stage(InputStream content) throws IOException;
+
+    /**
+     * Publishes the staged content under its key; a no-op if that content is already stored.
+     */
+    void commit(StagedBlob blob) throws IOException;
+
+    /**
+     * Drops the temporary copy; safe to call after {@link #commit} and more than once.
+     */
+    void discard(StagedBlob blob);
+
+    boolean exists(String key) throws IOException;
+
+    InputStream open(String key) throws IOException;
+
+    /**
+     * @return the file backing the blob for zero-copy serving, or null for remote stores
+     */
+    Path localPath(String key);
+
+    /**
+     * @return false if there was nothing to delete
+     */
+    boolean delete(String key) throws IOException;
+
+    /**
+     * Every stored key, listed lazily; the stream must be closed.
+     */
+    Stream<String> keys() throws IOException;
+}
@@ -0,0 +1,305 @@
+package com.project.hotel.storage;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Giữ nội dung các ảnh được xem nhiều nhất trong bộ nhớ ngoài heap (direct ByteBuffer).
+ * <p>
+ * Entries are evicted in LRU order, but a new file only displaces the LRU victim when a
+ * TinyLFU frequency sketch says it has been requested more often, so a burst of one-off
+ * requests (a crawler, a backfill) cannot flush the photos every visitor sees. Entries are
+ * validated against the file's size and modification time on each hit and dropped
+ * explicitly when a file is deleted. Evicted buffers are released by the GC once no
+ * response is still writing from them, so the JVM needs {@code -XX:MaxDirectMemorySize}
+ * somewhat above {@code app.image-cache.max-size}.
+ * <p>
+ * Exported as {@code image.cache.requests{result}}, {@code image.cache.hit.ratio},
+ * {@code image.cache.bytes.saved}, {@code image.cache.size}, {@code image.cache.entries}
+ * and {@code image.cache.evictions}.
+ */
+@Component
+public class ImageBufferCache {
+
+    private final boolean enabled;
+    private final long maxBytes;
+    private final long maxEntryBytes;
+    // Guarded by this
+    private final LinkedHashMap<Path, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    // Guarded by this; loads in progress, so concurrent misses on one file allocate one buffer
+    private final Map<Path, Load> loading = new HashMap<>();
+    private final FrequencySketch sketch;
+    private volatile long usedBytes;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder bytesSaved = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public ImageBufferCache(@Value("${app.image-cache.enabled:false}") boolean enabled,
+                            @Value("${app.image-cache.max-size:256MB}") DataSize maxSize,
+                            @Value("${app.image-cache.max-entry-size:4MB}") DataSize maxEntrySize,
+                            MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.maxBytes = maxSize.toBytes();
+        this.maxEntryBytes = Math.min(maxEntrySize.toBytes(), Integer.MAX_VALUE);
+        // Ước lượng số ảnh có thể chứa với kích thước trung bình ~32KB
+        this.sketch = new FrequencySketch((int) Math.min(1 << 20, Math.max(1024, maxBytes / (32 * 1024))));
+
+        FunctionCounter.builder("image.cache.requests", hits, LongAdder::sum).tag("result", "hit")
+                .register(meterRegistry);
+        FunctionCounter.builder("image.cache.requests", misses, LongAdder::sum).tag("result", "miss")
+                .register(meterRegistry);
+        Gauge.builder("image.cache.hit.ratio", this, ImageBufferCache::hitRatio)
+                .register(meterRegistry);
+        FunctionCounter.builder("image.cache.bytes.saved", bytesSaved, LongAdder::sum).baseUnit("bytes")
+                .description("Bytes served from memory instead of disk")
+                .register(meterRegistry);
+        Gauge.builder("image.cache.size", this, cache -> cache.usedBytes).baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("image.cache.entries", this, ImageBufferCache::entryCount)
+                .register(meterRegistry);
+        FunctionCounter.builder("image.cache.evictions", evictions, LongAdder::sum)
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns the file's content from the cache, loading it first if it is popular enough
+     * to be admitted. Concurrent misses on the same file share a single load.
+     *
+     * @param servedBytes how much of the content the caller is about to send (less than
+     *                    {@code size} for range requests), counted towards bytes saved on a hit
+     * @return a read-only buffer positioned at 0, or null to serve the file from disk
+     */
+    public ByteBuffer get(Path file, long size, long lastModified, long servedBytes) throws IOException {
+        if (!enabled || size <= 0 || size > maxEntryBytes) {
+            return null;
+        }
+        Path key = file.toAbsolutePath().normalize();
+        Load load;
+        boolean leader = false;
+        synchronized (this) {
+            sketch.increment(key);
+            Entry entry = entries.get(key);
+            if (entry != null && entry.size == size && entry.lastModified == lastModified) {
+                hits.increment();
+                bytesSaved.add(servedBytes);
+                return entry.buffer.duplicate();
+            }
+            misses.increment();
+            load = loading.get(key);
+            if (load == null) {
+                if (!canAdmit(key, size)) {
+                    return null;
+                }
+                load = new Load(size, lastModified);
+                loading.put(key, load);
+                leader = true;
+            }
+        }
+
+        if (!leader) {
+            // Một request khác đang đọc file này: chờ kết quả thay vì cấp phát thêm một buffer
+            if (load.size != size || load.lastModified != lastModified) {
+                return null;
+            }
+            ByteBuffer shared = load.result.join();
+            return shared != null ? shared.duplicate() : null;
+        }
+
+        ByteBuffer buffer = null;
+        try {
+            buffer = read(key, size, lastModified);
+        } finally {
+            synchronized (this) {
+                // Kiểm tra lại: các request khác có thể đã thay đổi cache trong lúc đọc file,
+                // và invalidate() trong lúc đọc đã gỡ load này khỏi loading
+                if (loading.remove(key, load) && buffer != null && canAdmit(key, size)) {
+                    remove(key);
+                    while (usedBytes + size > maxBytes) {
+                        evictEldest();
+                    }
+                    entries.put(key, new Entry(buffer, size, lastModified));
+                    usedBytes += size;
+                }
+            }
+            load.result.complete(buffer);
+        }
+        return buffer != null ? buffer.duplicate() : null;
+    }
+
+    /**
+     * Drops a file that was deleted or moved away.
+     */
+    public synchronized void invalidate(Path file) {
+        if (file != null) {
+            Path key = file.toAbsolutePath().normalize();
+            remove(key);
+            loading.remove(key);
+        }
+    }
+
+    /**
+     * TinyLFU admission: walks victims in LRU order until enough room is found, refusing if
+     * any of them is requested at least as often as the candidate.
+     */
+    private boolean canAdmit(Path key, long size) {
+        Entry current = entries.get(key);
+        long needed = usedBytes - (current != null ? current.size : 0) + size - maxBytes;
+        if (needed <= 0) {
+            return true;
+        }
+        int candidateFrequency = sketch.frequency(key);
+        Iterator<Map.Entry<Path, Entry>> eldest = entries.entrySet().iterator();
+        while (needed > 0 && eldest.hasNext()) {
+            Map.Entry<Path, Entry> victim = eldest.next();
+            if (victim.getKey().equals(key)) {
+                continue;
+            }
+            if (sketch.frequency(victim.getKey()) >= candidateFrequency) {
+                return false;
+            }
+            needed -= victim.getValue().size;
+        }
+        return needed <= 0;
+    }
+
+    private void evictEldest() {
+        Iterator<Map.Entry<Path, Entry>> eldest = entries.entrySet().iterator();
+        Entry victim = eldest.next().getValue();
+        eldest.remove();
+        usedBytes -= victim.size;
+        evictions.increment();
+    }
+
+    private void remove(Path key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) {
+            usedBytes -= removed.size;
+        }
+    }
+
+    private synchronized int entryCount() {
+        return entries.size();
+    }
+
+    private double hitRatio() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    private static ByteBuffer read(Path file, long size, long lastModified) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect((int) size);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    return null;
+                }
+            }
+            // File bị ghi đè trong lúc đọc: không lưu nội dung lẫn lộn
+            if (channel.size() != size || Files.getLastModifiedTime(file).toMillis() != lastModified) {
+                return null;
+            }
+        }
+        buffer.flip();
+        return buffer.asReadOnlyBuffer();
+    }
+
+    private static final class Entry {
+        private final ByteBuffer buffer;
+        private final long size;
+        private final long lastModified;
+
+        private Entry(ByteBuffer buffer, long size, long lastModified) {
+            this.buffer = buffer;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+    }
+
+    private static final class Load {
+        private final long size;
+        private final long lastModified;
+        private final CompletableFuture<ByteBuffer> result = new CompletableFuture<>();
+
+        private Load(long size, long lastModified) {
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+    }
+
+    /**
+     * Count-min sketch with 4 rows of counters saturating at 15; all counters are halved
+     * after every {@code 10 * width} increments so old popularity fades.
+     */
+    private static final class FrequencySketch {
+        private static final int DEPTH = 4;
+        private static final int MAX_COUNT = 15;
+        private static final int[] SEEDS = {0x9E3779B1, 0x85EBCA77, 0xC2B2AE3D, 0x27D4EB2F};
+
+        private final int[] table;
+        private final int width;
+        private final int sampleSize;
+        private int additions;
+
+        private FrequencySketch(int expectedEntries) {
+            this.width = Integer.highestOneBit(Math.max(64, expectedEntries - 1) * 2);
+            this.table = new int[DEPTH * width];
+            this.sampleSize = 10 * width;
+        }
+
+        private void increment(Object key) {
+            int hash = key.hashCode();
+            boolean added = false;
+            for (int row = 0; row < DEPTH; row++) {
+                int index = index(hash, row);
+                if (table[index] < MAX_COUNT) {
+                    table[index]++;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                for (int i = 0; i < table.length; i++) {
+                    table[i] >>>= 1;
+                }
+                additions /= 2;
+            }
+        }
+
+        private int frequency(Object key) {
+            int hash = key.hashCode();
+            int frequency = MAX_COUNT;
+            for (int row = 0; row < DEPTH; row++) {
+                frequency = Math.min(frequency, table[index(hash, row)]);
+            }
+            return frequency;
+        }
+
+        private int index(int hash, int row) {
+            int h = (hash ^ (hash >>> 16)) * SEEDS[row];
+            h ^= h >>> 15;
+            return row * width + (h & (width - 1));
+        }
+    }
+}
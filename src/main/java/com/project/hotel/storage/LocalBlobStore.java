@@ -0,0 +1,143 @@
+package com.project.hotel.storage;
+
+import com.project.hotel.util.FileUploadUtil;
+import com.project.hotel.util.ImageTypeDetector;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.stream.Stream;
+
+/**
+ * {@link BlobStore} on the local filesystem: {@code <root>/ab/cd/<key>}, with staging
+ * files in {@code <root>/.staging} so the final move is an atomic rename on the same disk.
+ * Two-level sharding keeps every directory small (65,536 leaf directories).
+ */
+@Slf4j
+@Component
+public class LocalBlobStore implements BlobStore {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path root;
+    private final Path staging;
+    private final ImageBufferCache imageBufferCache;
+
+    public LocalBlobStore(@Value("${app.storage.local.root:uploads/blobs}") String root,
+                          ImageBufferCache imageBufferCache) throws IOException {
+        this.imageBufferCache = imageBufferCache;
+        this.root = FileUploadUtil.getUploadPath(root).toAbsolutePath().normalize();
+        this.staging = this.root.resolve(".staging");
+        Files.createDirectories(staging);
+    }
+
+    @Override
+    public StagedBlob stage(InputStream content) throws IOException {
+        MessageDigest digest = sha256();
+        Path temp = Files.createTempFile(staging, "upload-", ".tmp");
+        byte[] header = new byte[ImageTypeDetector.HEADER_LENGTH];
+        int headerLength = 0;
+        long size = 0;
+        try (OutputStream out = Files.newOutputStream(temp)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = content.read(buffer)) != -1) {
+                if (headerLength < header.length) {
+                    int count = Math.min(header.length - headerLength, read);
+                    System.arraycopy(buffer, 0, header, headerLength, count);
+                    headerLength += count;
+                }
+                digest.update(buffer, 0, read);
+                out.write(buffer, 0, read);
+                size += read;
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+
+        String contentType = ImageTypeDetector.detect(header, headerLength);
+        String key = HexFormat.of().formatHex(digest.digest())
+                + (contentType != null ? ImageTypeDetector.extensionFor(contentType) : "");
+        return new StagedBlob(key, size, contentType, temp);
+    }
+
+    @Override
+    public void commit(StagedBlob blob) throws IOException {
+        Path target = resolve(blob.getKey());
+        if (Files.exists(target)) {
+            return; // Cùng nội dung đã có sẵn
+        }
+        Files.createDirectories(target.getParent());
+        try {
+            Files.move(blob.getTempFile(), target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            // Một upload song song với cùng nội dung đã ghi trước
+        }
+    }
+
+    @Override
+    public void discard(StagedBlob blob) {
+        try {
+            Files.deleteIfExists(blob.getTempFile());
+        } catch (IOException e) {
+            log.warn("Could not delete staging file {}: {}", blob.getTempFile(), e.getMessage());
+        }
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return Files.isRegularFile(resolve(key));
+    }
+
+    @Override
+    public InputStream open(String key) throws IOException {
+        return Files.newInputStream(resolve(key));
+    }
+
+    @Override
+    public Path localPath(String key) {
+        return resolve(key);
+    }
+
+    @Override
+    public boolean delete(String key) throws IOException {
+        Path file = resolve(key);
+        imageBufferCache.invalidate(file);
+        return Files.deleteIfExists(file);
+    }
+
+    @Override
+    public Stream<String> keys() throws IOException {
+        // Chỉ 3 cấp (ab/cd/key); thư mục .staging bị loại vì tên file tạm không phải key
+        return Files.walk(root, 3)
+                .filter(path -> BlobKeys.isBlobKey(path.getFileName().toString()))
+                .filter(Files::isRegularFile)
+                .map(path -> path.getFileName().toString());
+    }
+
+    private Path resolve(String key) {
+        if (!BlobKeys.isBlobKey(key)) {
+            throw new IllegalArgumentException("Invalid blob key: " + key);
+        }
+        return root.resolve(BlobKeys.shardedPath(key));
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.project.hotel.storage;
+
+import lombok.Value;
+
+import java.nio.file.Path;
+
+/**
+ * Nội dung đã được ghi tạm và tính hash, chưa hiển thị dưới key của nó
+ */
+@Value
+public class StagedBlob {
+    String key;
+    long size;
+    // Null nếu không nhận diện được định dạng ảnh
+    String contentType;
+    Path tempFile;
+}
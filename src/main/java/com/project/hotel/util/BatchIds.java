@@ -0,0 +1,49 @@
+package com.project.hotel.util;
+
+import com.project.hotel.dto.BatchItemDTO;
+import com.project.hotel.exception.BadRequestException;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Hỗ trợ các API đọc theo danh sách id (rooms?ids=, bookings/batch-get)
+ */
+public final class BatchIds {
+
+    private BatchIds() {
+    }
+
+    /**
+     * @return the distinct ids to query, in request order
+     * @throws BadRequestException if an id is null or there are more than {@code maxIds} of them
+     */
+    public static Set<Long> distinct(List<Long> ids, int maxIds) {
+        if (ids == null || ids.isEmpty()) {
+            throw new BadRequestException("At least one id is required");
+        }
+        if (ids.size() > maxIds) {
+            throw new BadRequestException("At most " + maxIds + " ids can be requested at once");
+        }
+        Set<Long> distinct = new LinkedHashSet<>(ids);
+        if (distinct.contains(null)) {
+            throw new BadRequestException("Ids must not be null");
+        }
+        return distinct;
+    }
+
+    /**
+     * One entry per requested id, duplicates included, marking the ids that were not found.
+     */
+    public static <T> List<BatchItemDTO<T>> inRequestOrder(List<Long> ids, Map<Long, T> found) {
+        List<BatchItemDTO<T>> items = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            T data = found.get(id);
+            items.add(new BatchItemDTO<>(id, data != null, data));
+        }
+        return items;
+    }
+}
@@ -0,0 +1,37 @@
+package com.project.hotel.util;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+/**
+ * Xác định IP của client phía sau proxy/load balancer
+ */
+public final class ClientIpUtils {
+
+    private ClientIpUtils() {
+    }
+
+    public static String getClientIp(HttpServletRequest request) {
+        // Try X-Forwarded-For first
+        String xForwardedFor = request.getHeader("X-Forwarded-For");
+        if (xForwardedFor != null && !xForwardedFor.isEmpty()) {
+            // Get the first IP in the chain
+            int comma = xForwardedFor.indexOf(',');
+            return (comma < 0 ? xForwardedFor : xForwardedFor.substring(0, comma)).trim();
+        }
+
+        // Try Proxy-Client-IP
+        String proxyClientIp = request.getHeader("Proxy-Client-IP");
+        if (proxyClientIp != null && !proxyClientIp.isEmpty()) {
+            return proxyClientIp;
+        }
+
+        // Try WL-Proxy-Client-IP
+        String wlProxyClientIp = request.getHeader("WL-Proxy-Client-IP");
+        if (wlProxyClientIp != null && !wlProxyClientIp.isEmpty()) {
+            return wlProxyClientIp;
+        }
+
+        // Fallback to remote address
+        return request.getRemoteAddr();
+    }
+}
@@ -0,0 +1,40 @@
+package com.project.hotel.util;
+
+import com.project.hotel.exception.BadRequestException;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Phân tích tham số {@code fields=a,b,c} của các API danh sách
+ */
+public final class FieldSelection {
+
+    private FieldSelection() {
+    }
+
+    /**
+     * @return the requested fields, in the order of {@code allowed}
+     * @throws BadRequestException if a field is unknown or none is given
+     */
+    public static Set<String> parse(String fields, Collection<String> allowed) {
+        Set<String> requested = new LinkedHashSet<>();
+        for (String field : fields.split(",")) {
+            String name = field.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            if (!allowed.contains(name)) {
+                throw new BadRequestException("Unknown field '" + name + "', expected one of " + allowed);
+            }
+            requested.add(name);
+        }
+        if (requested.isEmpty()) {
+            throw new BadRequestException("At least one field must be requested");
+        }
+        Set<String> ordered = new LinkedHashSet<>(allowed);
+        ordered.retainAll(requested);
+        return ordered;
+    }
+}
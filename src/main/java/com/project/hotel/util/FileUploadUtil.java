@@ -1,31 +1,15 @@
 package com.project.hotel.util;
 
-import org.springframework.web.multipart.MultipartFile;
-
 import java.io.IOException;
-import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
 
 public class FileUploadUtil {
     private static final String ROOT_PATH = System.getProperty("user.dir");
 
-    public static String saveFile(String uploadDir, String fileName, MultipartFile multipartFile) throws IOException {
-        Path uploadPath = Paths.get(ROOT_PATH, uploadDir);
-
-        if (!Files.exists(uploadPath)) {
-            Files.createDirectories(uploadPath);
-        }
-
-        try (InputStream inputStream = multipartFile.getInputStream()) {
-            Path filePath = uploadPath.resolve(fileName);
-            Files.copy(inputStream, filePath, StandardCopyOption.REPLACE_EXISTING);
-            return filePath.toString();
-        } catch (IOException e) {
-            throw new IOException("Could not save file: " + fileName, e);
-        }
+    public static Path getUploadPath(String uploadDir) {
+        return Paths.get(ROOT_PATH, uploadDir);
     }
 
     public static void deleteFile(String filePath) throws IOException {
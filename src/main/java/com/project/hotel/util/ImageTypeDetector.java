@@ -0,0 +1,104 @@
+package com.project.hotel.util;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Nhận diện định dạng ảnh từ các byte đầu tiên (magic bytes), không tin vào phần mở rộng
+ * tên file hay Content-Type do client gửi lên
+ */
+public final class ImageTypeDetector {
+
+    /**
+     * Number of leading bytes needed to recognise every supported format.
+     */
+    public static final int HEADER_LENGTH = 16;
+
+    private ImageTypeDetector() {
+    }
+
+    /**
+     * @return the MIME type of the image, or null if the bytes are not a supported image
+     */
+    public static String detect(byte[] header, int length) {
+        if (startsWith(header, length, 0xFF, 0xD8, 0xFF)) {
+            return "image/jpeg";
+        }
+        if (startsWith(header, length, 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A)) {
+            return "image/png";
+        }
+        if (startsWith(header, length, 'G', 'I', 'F', '8') && length >= 6
+                && (header[4] == '7' || header[4] == '9') && header[5] == 'a') {
+            return "image/gif";
+        }
+        if (startsWith(header, length, 'R', 'I', 'F', 'F') && ascii(header, length, 8, "WEBP")) {
+            return "image/webp";
+        }
+        if (ascii(header, length, 4, "ftyp")) {
+            if (ascii(header, length, 8, "avif") || ascii(header, length, 8, "avis")) {
+                return "image/avif";
+            }
+            if (ascii(header, length, 8, "heic") || ascii(header, length, 8, "heix")
+                    || ascii(header, length, 8, "mif1")) {
+                return "image/heic";
+            }
+        }
+        if (startsWith(header, length, 'B', 'M')) {
+            return "image/bmp";
+        }
+        if (startsWith(header, length, 'I', 'I', 0x2A, 0x00) || startsWith(header, length, 'M', 'M', 0x00, 0x2A)) {
+            return "image/tiff";
+        }
+        return null;
+    }
+
+    /**
+     * Canonical file extension (with the dot) for a type returned by {@link #detect}.
+     */
+    public static String extensionFor(String mimeType) {
+        switch (mimeType) {
+            case "image/jpeg":
+                return ".jpg";
+            case "image/png":
+                return ".png";
+            case "image/gif":
+                return ".gif";
+            case "image/webp":
+                return ".webp";
+            case "image/avif":
+                return ".avif";
+            case "image/heic":
+                return ".heic";
+            case "image/bmp":
+                return ".bmp";
+            case "image/tiff":
+                return ".tiff";
+            default:
+                return "";
+        }
+    }
+
+    private static boolean startsWith(byte[] header, int length, int... signature) {
+        if (length < signature.length) {
+            return false;
+        }
+        for (int i = 0; i < signature.length; i++) {
+            if ((header[i] & 0xFF) != signature[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean ascii(byte[] header, int length, int offset, String text) {
+        byte[] expected = text.getBytes(StandardCharsets.US_ASCII);
+        if (length < offset + expected.length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if (header[offset + i] != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
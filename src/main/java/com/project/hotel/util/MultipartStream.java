@@ -0,0 +1,286 @@
+package com.project.hotel.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Đọc tuần tự một body multipart/form-data (RFC 7578) mà không đệm cả part vào bộ nhớ
+ * hay ra file tạm.
+ * <p>
+ * Parts are returned one at a time; each part's stream ends at the next boundary, and
+ * {@link #next()} skips whatever the caller did not read. Memory use is one fixed buffer
+ * regardless of the upload size. A part body that hits end of input before its closing
+ * boundary fails with {@link EOFException}, so truncated uploads are never taken as complete.
+ */
+public final class MultipartStream {
+
+    private static final int MAX_HEADER_BYTES = 8 * 1024;
+
+    private final InputStream in;
+    private final byte[] delimiter;
+    private final byte[] buffer;
+    private int head;
+    private int tail;
+    private boolean eof;
+    private boolean finished;
+    private PartInputStream current;
+
+    public MultipartStream(InputStream in, String boundary, int bufferSize) {
+        this.in = in;
+        this.delimiter = ("\r\n--" + boundary).getBytes(StandardCharsets.ISO_8859_1);
+        this.buffer = new byte[Math.max(bufferSize, delimiter.length * 4)];
+        // Boundary đầu tiên không có CRLF phía trước: thêm vào để mọi delimiter có cùng dạng
+        buffer[0] = '\r';
+        buffer[1] = '\n';
+        this.tail = 2;
+        // Phần mở đầu (preamble) trước boundary đầu tiên được bỏ qua như một part không tên
+        this.current = new PartInputStream();
+    }
+
+    /**
+     * @return the boundary parameter of a multipart Content-Type, or null if there is none
+     */
+    public static String boundaryOf(String contentType) {
+        if (contentType == null || !contentType.toLowerCase(Locale.ROOT).startsWith("multipart/")) {
+            return null;
+        }
+        String boundary = parameter(contentType, "boundary");
+        return boundary == null || boundary.isEmpty() || boundary.length() > 70 ? null : boundary;
+    }
+
+    /**
+     * @return the next part, or null after the closing boundary
+     */
+    public Part next() throws IOException {
+        if (finished) {
+            return null;
+        }
+        current.skipRemaining();
+        if (readByte() == '-' && readByte() == '-') {
+            finished = true;
+            return null;
+        }
+        // Sau boundary là CRLF (có thể có khoảng trắng đệm phía trước)
+        skipLine();
+
+        String disposition = null;
+        String contentType = null;
+        int headerBytes = 0;
+        String line;
+        while (!(line = readHeaderLine()).isEmpty()) {
+            headerBytes += line.length();
+            if (headerBytes > MAX_HEADER_BYTES) {
+                throw new IOException("Multipart part headers are too large");
+            }
+            int colon = line.indexOf(':');
+            if (colon <= 0) {
+                continue;
+            }
+            String name = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+            String value = line.substring(colon + 1).trim();
+            if (name.equals("content-disposition")) {
+                disposition = value;
+            } else if (name.equals("content-type")) {
+                contentType = value;
+            }
+        }
+
+        current = new PartInputStream();
+        return new Part(disposition != null ? parameter(disposition, "name") : null,
+                disposition != null ? parameter(disposition, "filename") : null, contentType, current);
+    }
+
+    private int readByte() throws IOException {
+        if (head == tail) {
+            head = 0;
+            tail = 0;
+            int read = in.read(buffer, 0, buffer.length);
+            if (read <= 0) {
+                throw new EOFException("Unexpected end of multipart body");
+            }
+            tail = read;
+        }
+        return buffer[head++] & 0xFF;
+    }
+
+    private void skipLine() throws IOException {
+        int count = 0;
+        while (readByte() != '\n') {
+            if (++count > MAX_HEADER_BYTES) {
+                throw new IOException("Malformed multipart boundary line");
+            }
+        }
+    }
+
+    private String readHeaderLine() throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+        int b;
+        while ((b = readByte()) != '\n') {
+            if (line.size() > MAX_HEADER_BYTES) {
+                throw new IOException("Multipart part headers are too large");
+            }
+            line.write(b);
+        }
+        // Trình duyệt gửi tên file dạng UTF-8 thô trong header
+        String text = line.toString(StandardCharsets.UTF_8);
+        return text.endsWith("\r") ? text.substring(0, text.length() - 1) : text;
+    }
+
+    /**
+     * Ensures at least one delimiter's worth of bytes is buffered unless the input has ended.
+     */
+    private void fill() throws IOException {
+        if (tail - head >= delimiter.length || eof) {
+            return;
+        }
+        if (head > 0) {
+            System.arraycopy(buffer, head, buffer, 0, tail - head);
+            tail -= head;
+            head = 0;
+        }
+        while (tail < delimiter.length && !eof) {
+            int read = in.read(buffer, tail, buffer.length - tail);
+            if (read == -1) {
+                eof = true;
+            } else {
+                tail += read;
+            }
+        }
+    }
+
+    private int indexOfDelimiter() {
+        int last = tail - delimiter.length;
+        outer:
+        for (int i = head; i <= last; i++) {
+            for (int j = 0; j < delimiter.length; j++) {
+                if (buffer[i + j] != delimiter[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private static String parameter(String header, String name) {
+        int i = 0;
+        int length = header.length();
+        while (i < length) {
+            int semicolon = nextSemicolon(header, i);
+            String token = header.substring(i, semicolon).trim();
+            int equals = token.indexOf('=');
+            if (equals > 0 && token.substring(0, equals).trim().equalsIgnoreCase(name)) {
+                String value = token.substring(equals + 1).trim();
+                if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+                    value = value.substring(1, value.length() - 1).replace("\\\"", "\"").replace("\\\\", "\\");
+                }
+                return value;
+            }
+            i = semicolon + 1;
+        }
+        return null;
+    }
+
+    private static int nextSemicolon(String header, int from) {
+        boolean quoted = false;
+        for (int i = from; i < header.length(); i++) {
+            char c = header.charAt(i);
+            if (c == '\\' && quoted) {
+                i++;
+            } else if (c == '"') {
+                quoted = !quoted;
+            } else if (c == ';' && !quoted) {
+                return i;
+            }
+        }
+        return header.length();
+    }
+
+    public static final class Part {
+        private final String name;
+        private final String fileName;
+        private final String contentType;
+        private final InputStream inputStream;
+
+        private Part(String name, String fileName, String contentType, InputStream inputStream) {
+            this.name = name;
+            this.fileName = fileName;
+            this.contentType = contentType;
+            this.inputStream = inputStream;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the client-supplied file name, or null for a plain form field
+         */
+        public String getFileName() {
+            return fileName;
+        }
+
+        /**
+         * @return the client-declared type; never trust it for validation
+         */
+        public String getContentType() {
+            return contentType;
+        }
+
+        public InputStream getInputStream() {
+            return inputStream;
+        }
+    }
+
+    private final class PartInputStream extends InputStream {
+        private boolean done;
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            int read = read(single, 0, 1);
+            return read == -1 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (done || current != this) {
+                return -1;
+            }
+            if (len == 0) {
+                return 0;
+            }
+            fill();
+            int delimiterAt = indexOfDelimiter();
+            int end;
+            if (delimiterAt >= 0) {
+                end = delimiterAt;
+            } else if (eof) {
+                throw new EOFException("Multipart body ended before the closing boundary");
+            } else {
+                // Giữ lại phần cuối có thể là đầu của delimiter
+                end = tail - delimiter.length + 1;
+            }
+            if (end == head) {
+                head += delimiter.length;
+                done = true;
+                return -1;
+            }
+            int count = Math.min(len, end - head);
+            System.arraycopy(buffer, head, b, off, count);
+            head += count;
+            return count;
+        }
+
+        private void skipRemaining() throws IOException {
+            byte[] skip = new byte[4096];
+            while (read(skip, 0, skip.length) != -1) {
+                // bỏ qua
+            }
+        }
+    }
+}
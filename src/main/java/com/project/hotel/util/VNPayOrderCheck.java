@@ -0,0 +1,47 @@
+package com.project.hotel.util;
+
+import com.project.hotel.constant.BookingStatus;
+import com.project.hotel.entity.Booking;
+import org.springframework.util.StringUtils;
+
+import java.math.BigDecimal;
+
+/**
+ * Kiểm tra kết quả VNPay với đơn đặt phòng, dùng chung cho IPN và return URL
+ * <p>
+ * A signed response only proves that VNPay sent it; the amount must still match the booking
+ * total and the booking must still be waiting for payment before it may be confirmed.
+ */
+public final class VNPayOrderCheck {
+
+    public enum Result {
+        OK,
+        INVALID_AMOUNT,
+        NOT_PENDING
+    }
+
+    private VNPayOrderCheck() {
+    }
+
+    public static Result check(Booking booking, String vnpAmount) {
+        if (!amountMatches(vnpAmount, booking.getTotalPrice())) {
+            return Result.INVALID_AMOUNT;
+        }
+        if (booking.getStatus() != BookingStatus.PENDING) {
+            return Result.NOT_PENDING;
+        }
+        return Result.OK;
+    }
+
+    // vnp_Amount là số tiền VND nhân 100
+    public static boolean amountMatches(String vnpAmount, BigDecimal totalPrice) {
+        if (!StringUtils.hasText(vnpAmount) || totalPrice == null) {
+            return false;
+        }
+        try {
+            return new BigDecimal(vnpAmount).compareTo(totalPrice.movePointRight(2)) == 0;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+-- Resized copies of uploaded room photos, generated in the background after upload.
+-- source_file is the stored name of the original under uploads/; room_id is null for
+-- photos uploaded before being attached to a room.
+
+CREATE TABLE IF NOT EXISTS room_image_variants (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    room_id BIGINT,
+    source_file VARCHAR(255) NOT NULL,
+    variant VARCHAR(16) NOT NULL,
+    file_name VARCHAR(255) NOT NULL,
+    width INT NOT NULL,
+    height INT NOT NULL,
+    size_bytes BIGINT NOT NULL,
+    created_at DATETIME(6) NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_room_image_variants_source_variant UNIQUE (source_file, variant)
+) ENGINE = InnoDB;
+
+CREATE INDEX idx_room_image_variants_room ON room_image_variants (room_id);
@@ -0,0 +1,14 @@
+-- Reference counts of content-addressed uploads (storage.BlobStore). A blob is deleted once
+-- its count drops to zero; rows with zero references are also swept by the uploads GC.
+
+CREATE TABLE IF NOT EXISTS blob_refs (
+    blob_key VARCHAR(80) NOT NULL,
+    ref_count INT NOT NULL,
+    size_bytes BIGINT NOT NULL,
+    content_type VARCHAR(64),
+    created_at DATETIME(6) NOT NULL,
+    updated_at DATETIME(6) NOT NULL,
+    PRIMARY KEY (blob_key)
+) ENGINE = InnoDB;
+
+CREATE INDEX idx_blob_refs_unreferenced ON blob_refs (ref_count, updated_at);
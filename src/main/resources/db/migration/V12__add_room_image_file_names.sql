@@ -0,0 +1,8 @@
+-- Stored file name of each room image (last segment of image_url), so the upload cleanup
+-- job can match files on disk against room_images by index instead of scanning the table.
+
+ALTER TABLE room_images
+    ADD COLUMN file_name VARCHAR(255) GENERATED ALWAYS AS (SUBSTRING_INDEX(image_url, '/', -1)) STORED;
+
+CREATE INDEX idx_room_images_file_name ON room_images (file_name);
+CREATE INDEX idx_room_image_variants_file_name ON room_image_variants (file_name);
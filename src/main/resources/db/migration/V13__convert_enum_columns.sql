@@ -0,0 +1,5 @@
+-- Databases created by Hibernate store the remaining @Enumerated(STRING) columns as native
+-- ENUMs; convert them to VARCHAR(32) like the baseline schema (payments.status: see V6).
+ALTER TABLE bookings MODIFY COLUMN status VARCHAR(32) NOT NULL;
+ALTER TABLE users MODIFY COLUMN role VARCHAR(32) NOT NULL;
+ALTER TABLE payments MODIFY COLUMN method VARCHAR(32) NOT NULL;
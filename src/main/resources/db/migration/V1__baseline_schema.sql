@@ -0,0 +1,78 @@
+-- Baseline schema, matching the tables previously generated by Hibernate (ddl-auto=update),
+-- except that @Enumerated(STRING) columns are VARCHAR(32) instead of Hibernate's native MySQL
+-- ENUM, so new enum constants need no migration (existing databases are converted by V6 and V13).
+
+CREATE TABLE IF NOT EXISTS users (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    first_name VARCHAR(255) NOT NULL,
+    last_name VARCHAR(255) NOT NULL,
+    email VARCHAR(255) NOT NULL,
+    password VARCHAR(255) NOT NULL,
+    phone_number VARCHAR(255),
+    role VARCHAR(32) NOT NULL,
+    created_at DATETIME,
+    updated_at DATETIME,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_users_email UNIQUE (email),
+    CONSTRAINT uk_users_phone_number UNIQUE (phone_number)
+) ENGINE = InnoDB;
+
+CREATE TABLE IF NOT EXISTS rooms (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    room_number VARCHAR(255) NOT NULL,
+    room_type VARCHAR(255) NOT NULL,
+    price DECIMAL(38, 2) NOT NULL,
+    is_available BIT NOT NULL,
+    description VARCHAR(1000),
+    PRIMARY KEY (id),
+    CONSTRAINT uk_rooms_room_number UNIQUE (room_number)
+) ENGINE = InnoDB;
+
+CREATE TABLE IF NOT EXISTS room_images (
+    room_id BIGINT NOT NULL,
+    image_url VARCHAR(255),
+    CONSTRAINT fk_room_images_room FOREIGN KEY (room_id) REFERENCES rooms (id)
+) ENGINE = InnoDB;
+
+CREATE TABLE IF NOT EXISTS room_amenities (
+    room_id BIGINT NOT NULL,
+    amenity VARCHAR(255),
+    CONSTRAINT fk_room_amenities_room FOREIGN KEY (room_id) REFERENCES rooms (id)
+) ENGINE = InnoDB;
+
+CREATE TABLE IF NOT EXISTS bookings (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    user_id BIGINT NOT NULL,
+    room_id BIGINT NOT NULL,
+    check_in_date DATE NOT NULL,
+    check_out_date DATE NOT NULL,
+    total_price DECIMAL(10, 2) NOT NULL,
+    booking_reference VARCHAR(255) NOT NULL,
+    guest_full_name VARCHAR(255) NOT NULL,
+    guest_email VARCHAR(255) NOT NULL,
+    num_of_adults INT NOT NULL,
+    num_of_children INT,
+    total_num_of_guests INT NOT NULL,
+    special_requests VARCHAR(500),
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL,
+    updated_at DATETIME(6),
+    booking_date DATETIME(6) NOT NULL,
+    status VARCHAR(32) NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_bookings_booking_reference UNIQUE (booking_reference),
+    CONSTRAINT fk_bookings_user FOREIGN KEY (user_id) REFERENCES users (id),
+    CONSTRAINT fk_bookings_room FOREIGN KEY (room_id) REFERENCES rooms (id)
+) ENGINE = InnoDB;
+
+CREATE TABLE IF NOT EXISTS payments (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    amount DECIMAL(38, 2) NOT NULL,
+    payment_time DATETIME(6) NOT NULL,
+    transaction_id VARCHAR(255),
+    method VARCHAR(32) NOT NULL,
+    status VARCHAR(32) NOT NULL,
+    booking_id BIGINT NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_payments_transaction_id UNIQUE (transaction_id),
+    CONSTRAINT fk_payments_booking FOREIGN KEY (booking_id) REFERENCES bookings (id)
+) ENGINE = InnoDB;
@@ -0,0 +1,20 @@
+-- Composite indexes for the hot repository queries
+
+-- BookingRepository.findOverlappingBookings: room_id equality, status filter, date range
+CREATE INDEX idx_bookings_room_status_dates ON bookings (room_id, status, check_in_date, check_out_date);
+
+-- BookingRepository.findByStatus / findByCheckInDateBetweenAndStatus
+CREATE INDEX idx_bookings_status_check_in ON bookings (status, check_in_date);
+
+-- BookingRepository.findByUser (ordered history per user)
+CREATE INDEX idx_bookings_user_booking_date ON bookings (user_id, booking_date);
+
+-- BookingRepository.findBookingsWithCheckInOrCheckOutInRange (index merge on both dates)
+CREATE INDEX idx_bookings_check_in ON bookings (check_in_date);
+CREATE INDEX idx_bookings_check_out_status ON bookings (check_out_date, status);
+
+-- PaymentRepository.findByBookingId / findByBooking
+CREATE INDEX idx_payments_booking_status ON payments (booking_id, status);
+
+-- PaymentRepository.findByStatus
+CREATE INDEX idx_payments_status_time ON payments (status, payment_time);
@@ -0,0 +1,42 @@
+-- Archive tier for bookings that reached a terminal status (COMPLETED / CANCELLED).
+-- No foreign keys: archived rows must survive deletion of the referenced room or user.
+
+CREATE TABLE IF NOT EXISTS bookings_archive (
+    id BIGINT NOT NULL,
+    user_id BIGINT NOT NULL,
+    room_id BIGINT NOT NULL,
+    check_in_date DATE NOT NULL,
+    check_out_date DATE NOT NULL,
+    total_price DECIMAL(10, 2) NOT NULL,
+    booking_reference VARCHAR(255) NOT NULL,
+    guest_full_name VARCHAR(255) NOT NULL,
+    guest_email VARCHAR(255) NOT NULL,
+    num_of_adults INT NOT NULL,
+    num_of_children INT,
+    total_num_of_guests INT NOT NULL,
+    special_requests VARCHAR(500),
+    created_at TIMESTAMP NULL,
+    updated_at DATETIME(6),
+    booking_date DATETIME(6) NOT NULL,
+    status VARCHAR(32) NOT NULL,
+    archived_at DATETIME(6) NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_bookings_archive_booking_reference UNIQUE (booking_reference)
+) ENGINE = InnoDB;
+
+CREATE INDEX idx_bookings_archive_user_booking_date ON bookings_archive (user_id, booking_date);
+
+CREATE TABLE IF NOT EXISTS payments_archive (
+    id BIGINT NOT NULL,
+    amount DECIMAL(38, 2) NOT NULL,
+    payment_time DATETIME(6) NOT NULL,
+    transaction_id VARCHAR(255),
+    method VARCHAR(32) NOT NULL,
+    status VARCHAR(32) NOT NULL,
+    booking_id BIGINT NOT NULL,
+    archived_at DATETIME(6) NOT NULL,
+    PRIMARY KEY (id)
+) ENGINE = InnoDB;
+
+CREATE INDEX idx_payments_archive_booking ON payments_archive (booking_id);
+CREATE INDEX idx_payments_archive_transaction ON payments_archive (transaction_id);
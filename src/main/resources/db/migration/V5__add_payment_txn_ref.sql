@@ -0,0 +1,5 @@
+-- Gateway order reference (vnp_TxnRef) needed to query VNPay for a payment's status
+ALTER TABLE payments ADD COLUMN txn_ref VARCHAR(64);
+ALTER TABLE payments_archive ADD COLUMN txn_ref VARCHAR(64);
+
+CREATE INDEX idx_payments_txn_ref ON payments (txn_ref);
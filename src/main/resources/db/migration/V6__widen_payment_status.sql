@@ -0,0 +1,5 @@
+-- Databases created by Hibernate store payments.status as an ENUM of the original values;
+-- widen it so the refund states (REFUND_PENDING, REFUND_FAILED) can be stored.
+ALTER TABLE payments MODIFY COLUMN status VARCHAR(32) NOT NULL;
+
+CREATE INDEX idx_payments_status_id ON payments (status, id);
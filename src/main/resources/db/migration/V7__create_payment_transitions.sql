@@ -0,0 +1,19 @@
+-- Append-only log of payment status transitions; payments.status is the current-state projection.
+-- No foreign key: the history must outlive payments moved to payments_archive.
+
+CREATE TABLE IF NOT EXISTS payment_transitions (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    payment_id BIGINT NOT NULL,
+    from_status VARCHAR(32),
+    to_status VARCHAR(32) NOT NULL,
+    source VARCHAR(32) NOT NULL,
+    detail VARCHAR(255),
+    created_at DATETIME(6) NOT NULL,
+    PRIMARY KEY (id)
+) ENGINE = InnoDB;
+
+CREATE INDEX idx_payment_transitions_payment ON payment_transitions (payment_id, id);
+
+-- Seed the log with the state every existing payment is in today
+INSERT INTO payment_transitions (payment_id, from_status, to_status, source, detail, created_at)
+SELECT id, NULL, status, 'MIGRATION', NULL, payment_time FROM payments ORDER BY id;
@@ -0,0 +1,14 @@
+-- Revoked JWT ids (rotated/logged-out refresh tokens, logged-out access tokens) and per-user
+-- "not before" cut-offs. Rows are only needed until the tokens they cover would expire anyway.
+
+CREATE TABLE IF NOT EXISTS token_revocations (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    token_id VARCHAR(64),
+    user_id BIGINT NOT NULL,
+    not_before DATETIME(6),
+    expires_at DATETIME(6) NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_token_revocations_token_id UNIQUE (token_id)
+) ENGINE = InnoDB;
+
+CREATE INDEX idx_token_revocations_expires_at ON token_revocations (expires_at);
@@ -0,0 +1,8 @@
+-- Indexes for the admin user directory (UserRepository.searchPage / findPage)
+
+-- Role filter with keyset pagination on id
+CREATE INDEX idx_users_role_id ON users (role, id);
+
+-- Prefix search on names; email and phone_number are already covered by their unique keys
+CREATE INDEX idx_users_first_name ON users (first_name);
+CREATE INDEX idx_users_last_name ON users (last_name);
@@ -0,0 +1,210 @@
+package com.project.hotel.client;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.project.hotel.config.VNPayConfig;
+import com.project.hotel.exception.PaymentProcessingException;
+import com.project.hotel.security.VNPaySigner;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs {@link VNPayApiClient} against a local HTTP stub of the merchant API: request checksums,
+ * response signature verification, HTTP errors and the call timeout.
+ */
+class VNPayApiClientTest {
+
+    private static final String SECRET = "TESTSECRETKEY0123456789ABCDEFGHIJ";
+    private static final String TMN_CODE = "TESTTMN1";
+    private static final String TXN_REF = "1234-1780315200000";
+    private static final TypeReference<Map<String, String>> JSON_MAP = new TypeReference<>() {
+    };
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicReference<Map<String, String>> received = new AtomicReference<>();
+    private final AtomicReference<StubResponse> reply = new AtomicReference<>();
+
+    private HttpServer server;
+    private VNPaySigner signer;
+    private VNPayApiClient client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/merchant_webapi/api/transaction", this::handle);
+        server.start();
+
+        VNPayConfig config = new VNPayConfig();
+        ReflectionTestUtils.setField(config, "hashSecret", SECRET);
+        ReflectionTestUtils.setField(config, "tmnCode", TMN_CODE);
+        ReflectionTestUtils.setField(config, "apiUrl",
+                "http://127.0.0.1:" + server.getAddress().getPort() + "/merchant_webapi/api/transaction");
+        ReflectionTestUtils.setField(config, "apiTimeoutMs", 500);
+        signer = new VNPaySigner(config);
+        client = new VNPayApiClient(config, signer, objectMapper);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void queryTransactionSignsTheRequestAndReturnsTheVerifiedResponse() {
+        reply.set(new StubResponse(200, signedQueryResponse("00", "00"), 0));
+
+        Map<String, String> result = client.queryTransaction(TXN_REF, VNPayApiClient.transactionDateOf(TXN_REF));
+
+        Map<String, String> request = received.get();
+        assertEquals("querydr", request.get("vnp_Command"));
+        assertEquals(TXN_REF, request.get("vnp_TxnRef"));
+        assertEquals(TMN_CODE, request.get("vnp_TmnCode"));
+        assertEquals(signer.sign(String.join("|", request.get("vnp_RequestId"), request.get("vnp_Version"),
+                        "querydr", TMN_CODE, TXN_REF, request.get("vnp_TransactionDate"), request.get("vnp_CreateDate"),
+                        request.get("vnp_IpAddr"), request.get("vnp_OrderInfo"))),
+                request.get("vnp_SecureHash"));
+        assertEquals("00", result.get("vnp_TransactionStatus"));
+        assertEquals("15000000", result.get("vnp_Amount"));
+    }
+
+    @Test
+    void refundSignsTheRequestAndReturnsTheVerifiedResponse() {
+        reply.set(new StubResponse(200, signedRefundResponse(), 0));
+
+        Map<String, String> result = client.refund(TXN_REF, "14422574", 150000,
+                LocalDateTime.of(2026, 6, 1, 12, 0), "admin@example.com");
+
+        Map<String, String> request = received.get();
+        assertEquals("refund", request.get("vnp_Command"));
+        assertEquals("15000000", request.get("vnp_Amount"));
+        assertEquals("20260601120000", request.get("vnp_TransactionDate"));
+        assertEquals(signer.sign(String.join("|", request.get("vnp_RequestId"), request.get("vnp_Version"),
+                        "refund", TMN_CODE, "02", TXN_REF, "15000000", "14422574", "20260601120000",
+                        "admin@example.com", request.get("vnp_CreateDate"), request.get("vnp_IpAddr"),
+                        request.get("vnp_OrderInfo"))),
+                request.get("vnp_SecureHash"));
+        assertEquals("00", result.get("vnp_ResponseCode"));
+    }
+
+    @Test
+    void rejectsAResponseWithAnInvalidSignature() {
+        Map<String, String> response = signedQueryResponse("00", "00");
+        response.put("vnp_Amount", "1500000000");
+        reply.set(new StubResponse(200, response, 0));
+
+        PaymentProcessingException e = assertThrows(PaymentProcessingException.class,
+                () -> client.queryTransaction(TXN_REF, VNPayApiClient.transactionDateOf(TXN_REF)));
+        assertTrue(e.getMessage().contains("Invalid signature"), e.getMessage());
+    }
+
+    @Test
+    void rejectsNonOkHttpStatus() {
+        reply.set(new StubResponse(502, Map.of(), 0));
+
+        PaymentProcessingException e = assertThrows(PaymentProcessingException.class,
+                () -> client.queryTransaction(TXN_REF, VNPayApiClient.transactionDateOf(TXN_REF)));
+        assertTrue(e.getMessage().contains("HTTP 502"), e.getMessage());
+    }
+
+    @Test
+    void givesUpAfterTheCallTimeout() {
+        reply.set(new StubResponse(200, signedQueryResponse("00", "00"), 2_000));
+
+        long started = System.nanoTime();
+        assertThrows(PaymentProcessingException.class,
+                () -> client.queryTransaction(TXN_REF, VNPayApiClient.transactionDateOf(TXN_REF)));
+        long elapsedMs = (System.nanoTime() - started) / 1_000_000;
+        assertTrue(elapsedMs < 1_500, "call took " + elapsedMs + " ms");
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        received.set(objectMapper.readValue(exchange.getRequestBody(), JSON_MAP));
+        StubResponse stub = reply.get();
+        if (stub.delayMs > 0) {
+            try {
+                Thread.sleep(stub.delayMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        byte[] body = objectMapper.writeValueAsBytes(stub.body);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        try {
+            exchange.sendResponseHeaders(stub.status, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (IOException e) {
+            // Client đã ngắt kết nối sau timeout
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private Map<String, String> signedQueryResponse(String responseCode, String transactionStatus) {
+        Map<String, String> response = baseResponse("querydr", responseCode, transactionStatus);
+        response.put("vnp_SecureHash", signer.sign(String.join("|",
+                response.get("vnp_ResponseId"), "querydr", responseCode, response.get("vnp_Message"), TMN_CODE,
+                TXN_REF, response.get("vnp_Amount"), response.get("vnp_BankCode"), response.get("vnp_PayDate"),
+                response.get("vnp_TransactionNo"), response.get("vnp_TransactionType"), transactionStatus,
+                response.get("vnp_OrderInfo"), "", "")));
+        return response;
+    }
+
+    private Map<String, String> signedRefundResponse() {
+        Map<String, String> response = baseResponse("refund", "00", "05");
+        response.put("vnp_TransactionType", "02");
+        response.put("vnp_SecureHash", signer.sign(String.join("|",
+                response.get("vnp_ResponseId"), "refund", "00", response.get("vnp_Message"), TMN_CODE,
+                TXN_REF, response.get("vnp_Amount"), response.get("vnp_BankCode"), response.get("vnp_PayDate"),
+                response.get("vnp_TransactionNo"), "02", "05", response.get("vnp_OrderInfo"))));
+        return response;
+    }
+
+    private static Map<String, String> baseResponse(String command, String responseCode, String transactionStatus) {
+        Map<String, String> response = new LinkedHashMap<>();
+        response.put("vnp_ResponseId", "4f1b4c2e9d7a4b0c8e3f6a5d2c1b0a99");
+        response.put("vnp_Command", command);
+        response.put("vnp_ResponseCode", responseCode);
+        response.put("vnp_Message", "OK");
+        response.put("vnp_TmnCode", TMN_CODE);
+        response.put("vnp_TxnRef", TXN_REF);
+        response.put("vnp_Amount", "15000000");
+        response.put("vnp_BankCode", "NCB");
+        response.put("vnp_PayDate", "20260601120512");
+        response.put("vnp_TransactionNo", "14422574");
+        response.put("vnp_TransactionType", "01");
+        response.put("vnp_TransactionStatus", transactionStatus);
+        response.put("vnp_OrderInfo", "Truy van giao dich " + TXN_REF);
+        return response;
+    }
+
+    private static final class StubResponse {
+        private final int status;
+        private final Map<String, String> body;
+        private final long delayMs;
+
+        private StubResponse(int status, Map<String, String> body, long delayMs) {
+            this.status = status;
+            this.body = body;
+            this.delayMs = delayMs;
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package com.project.hotel.repository;
+
+import ch.vorburger.mariadb4j.DB;
+import ch.vorburger.mariadb4j.DBConfigurationBuilder;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Applies the Flyway migrations to an embedded MariaDB, loads a realistically skewed data
+ * set and fails if EXPLAIN shows a full table scan for one of the hot repository queries.
+ * <p>
+ * The SQL mirrors what Hibernate generates for each repository method, with the parameter
+ * values the services pass (e.g. every status in {@code RECONCILED_STATUSES}) and enum
+ * values as they are stored; keep it in sync when a query or a caller changes.
+ */
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class QueryPlanTest {
+
+    private static final int USERS = 500;
+    private static final int ROOMS = 100;
+    private static final int BOOKINGS = 20_000;
+    private static final LocalDate TODAY = LocalDate.of(2026, 6, 1);
+    // Tiền tố hiếm: nếu không dùng index theo cột, MySQL sẽ duyệt khóa chính và lọc từng dòng
+    private static final String SEARCH_PAGE_SQL =
+            "SELECT u.id FROM users u WHERE u.role IN ('ROLE_USER', 'ROLE_ADMIN', 'ROLE_STAFF') AND u.id > 0 " +
+                    "AND (u.email LIKE 'zq%' ESCAPE '!' OR u.first_name LIKE 'zq%' ESCAPE '!' " +
+                    "OR u.last_name LIKE 'zq%' ESCAPE '!' OR u.phone_number LIKE 'zq%' ESCAPE '!') " +
+                    "ORDER BY u.id LIMIT 51";
+
+    private DB db;
+    private Connection connection;
+
+    @BeforeAll
+    void startDatabase() throws Exception {
+        DBConfigurationBuilder config = DBConfigurationBuilder.newBuilder();
+        config.setPort(0);
+        // MariaDB từ chối chạy dưới quyền root nếu không chỉ định --user
+        config.addArg("--user=root");
+        db = DB.newEmbeddedDB(config.build());
+        db.start();
+        try (Connection admin = DriverManager.getConnection(
+                "jdbc:mysql://localhost:" + config.getPort() + "/", "root", "");
+             Statement statement = admin.createStatement()) {
+            statement.execute("CREATE DATABASE hotel");
+        }
+
+        String url = "jdbc:mysql://localhost:" + config.getPort() + "/hotel?rewriteBatchedStatements=true";
+        Flyway.configure().dataSource(url, "root", "").locations("classpath:db/migration").load().migrate();
+
+        connection = DriverManager.getConnection(url, "root", "");
+        seed();
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("ANALYZE TABLE users, rooms, bookings, payments, token_revocations");
+        }
+    }
+
+    @AfterAll
+    void stopDatabase() throws Exception {
+        if (connection != null) {
+            connection.close();
+        }
+        if (db != null) {
+            db.stop();
+        }
+    }
+
+    static Stream<Arguments> hotQueries() {
+        return Stream.of(
+                Arguments.of("BookingRepository.findOverlappingBookings",
+                        "SELECT * FROM bookings b WHERE b.room_id = 7 AND b.status NOT IN ('CANCELLED', 'COMPLETED') " +
+                                "AND ((b.check_in_date BETWEEN '2026-06-10' AND '2026-06-14') " +
+                                "OR (b.check_out_date BETWEEN '2026-06-10' AND '2026-06-14') " +
+                                "OR ('2026-06-10' BETWEEN b.check_in_date AND b.check_out_date))"),
+                Arguments.of("BookingRepository.findByStatus",
+                        "SELECT * FROM bookings b WHERE b.status = 'PENDING'"),
+                Arguments.of("BookingRepository.findByUser",
+                        "SELECT * FROM bookings b WHERE b.user_id = 42"),
+                Arguments.of("BookingRepository.findByCheckInDateBetweenAndStatus",
+                        "SELECT * FROM bookings b WHERE b.check_in_date BETWEEN '2026-06-01' AND '2026-06-07' " +
+                                "AND b.status = 'CONFIRMED'"),
+                Arguments.of("BookingRepository.findBookingsWithCheckInOrCheckOutInRange",
+                        "SELECT * FROM bookings b WHERE (b.check_in_date BETWEEN '2026-06-01' AND '2026-06-07') " +
+                                "OR (b.check_out_date BETWEEN '2026-06-01' AND '2026-06-07')"),
+                Arguments.of("BookingRepository.findStaysByStatusAndCheckOutDateBefore",
+                        "SELECT b.id, b.room_id FROM bookings b WHERE b.status = 'CONFIRMED' " +
+                                "AND b.check_out_date < '2026-06-01' ORDER BY b.id LIMIT 500"),
+                Arguments.of("BookingRepository.findArchivableIds",
+                        "SELECT b.id FROM bookings b WHERE b.status IN ('COMPLETED', 'CANCELLED') " +
+                                "AND b.check_out_date < '2025-06-01' AND NOT EXISTS (SELECT p.id FROM payments p " +
+                                "WHERE p.booking_id = b.id AND p.status IN ('PENDING', 'REFUND_PENDING', 'REFUND_FAILED')) " +
+                                "ORDER BY b.id LIMIT 500"),
+                Arguments.of("BookingRepository.findStaysOverlapping",
+                        "SELECT b.id, b.room_id FROM bookings b WHERE b.status IN ('PENDING', 'CONFIRMED') " +
+                                "AND b.check_out_date > '2026-06-01' AND b.check_in_date < '2026-08-30'"),
+                Arguments.of("PaymentRepository.findByBookingId",
+                        "SELECT * FROM payments p WHERE p.booking_id = 1234"),
+                Arguments.of("PaymentRepository.findByTransactionId",
+                        "SELECT * FROM payments p WHERE p.transaction_id = 'TX00001234'"),
+                Arguments.of("PaymentRepository.findIdsByStatus",
+                        "SELECT p.id FROM payments p WHERE p.status = 'REFUND_PENDING' ORDER BY p.id LIMIT 500"),
+                Arguments.of("PaymentRepository.findReconciliationPage",
+                        "SELECT p.id FROM payments p WHERE p.status IN ('PENDING', 'PAID', 'FAILED') " +
+                                "AND p.txn_ref IS NOT NULL AND p.payment_time >= '2026-05-01' " +
+                                "AND p.payment_time < '2026-06-01' AND p.id > 0 ORDER BY p.id LIMIT 200"),
+                Arguments.of("TokenRevocationRepository.deleteExpired",
+                        "SELECT t.id FROM token_revocations t WHERE t.expires_at <= '2026-06-01 00:00:00'"),
+                Arguments.of("UserRepository.searchPage", SEARCH_PAGE_SQL),
+                Arguments.of("UserRepository.findPage (role filter)",
+                        "SELECT u.id FROM users u WHERE u.role IN ('ROLE_ADMIN') AND u.id > 0 ORDER BY u.id LIMIT 51"));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("hotQueries")
+    void hotQueryDoesNotScanTheTable(String name, String sql) throws SQLException {
+        List<String> fullScans = new ArrayList<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet plan = statement.executeQuery("EXPLAIN " + sql)) {
+            while (plan.next()) {
+                if ("ALL".equalsIgnoreCase(plan.getString("type"))) {
+                    fullScans.add(plan.getString("table") + " (" + plan.getString("rows") + " rows)");
+                }
+            }
+        }
+        assertTrue(fullScans.isEmpty(), name + " plans a full scan of " + fullScans);
+    }
+
+    /**
+     * Walking the primary key for {@code id > :afterId} is not a full scan but still reads every
+     * user, so the search has to be answered from the per-column prefix indexes.
+     */
+    @Test
+    void searchPageMergesThePerColumnPrefixIndexes() throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet plan = statement.executeQuery("EXPLAIN " + SEARCH_PAGE_SQL)) {
+            assertTrue(plan.next());
+            String type = plan.getString("type");
+            String key = plan.getString("key");
+            assertEquals("index_merge", type, "searchPage plans " + type + " on " + key);
+            assertTrue(key.contains("idx_users_first_name") && key.contains("idx_users_last_name"),
+                    "searchPage merges " + key);
+        }
+    }
+
+    /**
+     * Phân bố gần với thực tế: phần lớn đơn đã hoàn thành, ít đơn đang chờ thanh toán
+     */
+    private void seed() throws SQLException {
+        Random random = new Random(42);
+        connection.setAutoCommit(false);
+        try (PreparedStatement users = connection.prepareStatement(
+                "INSERT INTO users (first_name, last_name, email, password, role) VALUES (?, ?, ?, 'x', ?)")) {
+            for (int i = 1; i <= USERS; i++) {
+                users.setString(1, "First" + i);
+                users.setString(2, "Last" + i);
+                users.setString(3, "user" + i + "@example.com");
+                users.setString(4, i <= 5 ? "ROLE_ADMIN" : i <= 20 ? "ROLE_STAFF" : "ROLE_USER");
+                users.addBatch();
+            }
+            users.executeBatch();
+        }
+        try (PreparedStatement rooms = connection.prepareStatement(
+                "INSERT INTO rooms (room_number, room_type, price, is_available) VALUES (?, ?, 100, 1)")) {
+            for (int i = 1; i <= ROOMS; i++) {
+                rooms.setString(1, String.valueOf(100 + i));
+                rooms.setString(2, i % 3 == 0 ? "SUITE" : "STANDARD");
+                rooms.addBatch();
+            }
+            rooms.executeBatch();
+        }
+        try (PreparedStatement bookings = connection.prepareStatement(
+                "INSERT INTO bookings (user_id, room_id, check_in_date, check_out_date, total_price, " +
+                        "booking_reference, guest_full_name, guest_email, num_of_adults, total_num_of_guests, " +
+                        "booking_date, status) VALUES (?, ?, ?, ?, 100, ?, 'Guest', 'g@example.com', 1, 1, ?, ?)");
+             PreparedStatement payments = connection.prepareStatement(
+                     "INSERT INTO payments (amount, payment_time, transaction_id, txn_ref, method, status, booking_id) " +
+                             "VALUES (100, ?, ?, ?, 'VNPAY', ?, ?)")) {
+            for (int i = 1; i <= BOOKINGS; i++) {
+                LocalDate checkIn = TODAY.minusDays(730).plusDays(random.nextInt(820));
+                LocalDate checkOut = checkIn.plusDays(1 + random.nextInt(5));
+                String status;
+                if (checkOut.isBefore(TODAY)) {
+                    status = random.nextInt(10) == 0 ? "CANCELLED" : "COMPLETED";
+                } else {
+                    status = random.nextInt(4) == 0 ? "PENDING" : "CONFIRMED";
+                }
+                LocalDateTime bookedAt = checkIn.minusDays(random.nextInt(60)).atStartOfDay();
+                bookings.setLong(1, 1 + random.nextInt(USERS));
+                bookings.setLong(2, 1 + random.nextInt(ROOMS));
+                bookings.setDate(3, Date.valueOf(checkIn));
+                bookings.setDate(4, Date.valueOf(checkOut));
+                bookings.setString(5, String.format("BK%08d", i));
+                bookings.setTimestamp(6, Timestamp.valueOf(bookedAt));
+                bookings.setString(7, status);
+                bookings.addBatch();
+
+                // Đơn PENDING có giao dịch PENDING từ lúc tạo URL thanh toán, đôi khi đã thất bại
+                String paymentStatus;
+                if (status.equals("PENDING")) {
+                    paymentStatus = random.nextInt(5) == 0 ? "FAILED" : "PENDING";
+                } else if (status.equals("CANCELLED")) {
+                    paymentStatus = random.nextInt(20) == 0 ? "REFUND_PENDING" : "REFUNDED";
+                } else {
+                    paymentStatus = "PAID";
+                }
+                LocalDateTime paidAt = bookedAt.plusMinutes(5);
+                payments.setTimestamp(1, Timestamp.valueOf(paidAt));
+                // Giao dịch chưa có kết quả từ VNPay thì chưa có mã giao dịch
+                payments.setString(2, paymentStatus.equals("PENDING") ? null : String.format("TX%08d", i));
+                payments.setString(3, i + "-" + Timestamp.valueOf(paidAt).getTime());
+                payments.setString(4, paymentStatus);
+                payments.setLong(5, i);
+                payments.addBatch();
+                if (i % 1000 == 0) {
+                    bookings.executeBatch();
+                    payments.executeBatch();
+                }
+            }
+            bookings.executeBatch();
+            payments.executeBatch();
+        }
+        try (PreparedStatement revocations = connection.prepareStatement(
+                "INSERT INTO token_revocations (token_id, user_id, expires_at) VALUES (?, ?, ?)")) {
+            for (int i = 1; i <= 5000; i++) {
+                revocations.setString(1, "jti-" + i);
+                revocations.setLong(2, 1 + random.nextInt(USERS));
+                revocations.setTimestamp(3, Timestamp.valueOf(TODAY.atStartOfDay().plusMinutes(i)));
+                revocations.addBatch();
+            }
+            revocations.executeBatch();
+        }
+        connection.commit();
+        connection.setAutoCommit(true);
+    }
+}
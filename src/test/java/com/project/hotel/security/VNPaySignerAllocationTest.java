@@ -0,0 +1,98 @@
+package com.project.hotel.security;
+
+import com.project.hotel.config.VNPayConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.lang.management.ManagementFactory;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks {@link VNPaySigner} against the straightforward sort/encode/HMAC implementation it
+ * replaced and measures its allocations per signature with the per-thread allocation counter.
+ */
+class VNPaySignerAllocationTest {
+
+    private static final String SECRET = "TESTSECRETKEY0123456789ABCDEFGHIJ";
+    private static final int WARMUP = 20_000;
+    private static final int ITERATIONS = 50_000;
+
+    private static final String[] NAMES = {
+            "vnp_Amount", "vnp_Command", "vnp_CreateDate", "vnp_CurrCode", "vnp_ExpireDate", "vnp_IpAddr",
+            "vnp_Locale", "vnp_OrderInfo", "vnp_OrderType", "vnp_ReturnUrl", "vnp_TmnCode", "vnp_TxnRef",
+            "vnp_Version"};
+    private static final String[] VALUES = {
+            "150000000", "pay", "20260601120000", "VND", "20260601121500", "203.0.113.7",
+            "vn", "Thanh toan dat phong BK1A2B3C4D", "billpayment", "http://localhost:8081/api/payments/vnpay-return",
+            "TESTTMN1", "1234_1717243200000", "2.1.0"};
+
+    private VNPaySigner signer;
+
+    @BeforeEach
+    void setUp() {
+        VNPayConfig config = new VNPayConfig();
+        ReflectionTestUtils.setField(config, "hashSecret", SECRET);
+        signer = new VNPaySigner(config);
+    }
+
+    @Test
+    void signsLikeTheReferenceImplementation() throws Exception {
+        Map<String, String> params = new TreeMap<>();
+        for (int i = 0; i < NAMES.length; i++) {
+            params.put(NAMES[i], VALUES[i]);
+        }
+        StringBuilder canonical = new StringBuilder();
+        for (Map.Entry<String, String> param : params.entrySet()) {
+            if (canonical.length() > 0) {
+                canonical.append('&');
+            }
+            canonical.append(URLEncoder.encode(param.getKey(), StandardCharsets.US_ASCII)).append('=')
+                    .append(URLEncoder.encode(param.getValue(), StandardCharsets.US_ASCII));
+        }
+        Mac mac = Mac.getInstance("HmacSHA512");
+        mac.init(new SecretKeySpec(SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA512"));
+        StringBuilder hex = new StringBuilder();
+        for (byte b : mac.doFinal(canonical.toString().getBytes(StandardCharsets.UTF_8))) {
+            hex.append(String.format("%02x", b));
+        }
+
+        String query = signer.signedQuery(NAMES, VALUES);
+        assertEquals(canonical + "&" + VNPaySigner.SECURE_HASH + "=" + hex, query);
+
+        Map<String, String> returned = new HashMap<>(params);
+        returned.put(VNPaySigner.SECURE_HASH, hex.toString().toUpperCase());
+        assertTrue(signer.verify(returned, hex.toString().toUpperCase()));
+    }
+
+    @Test
+    void signingAllocatesLittleMoreThanTheResult() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        int resultLength = signer.signedQuery(NAMES, VALUES).length();
+
+        long sink = 0;
+        for (int i = 0; i < WARMUP; i++) {
+            sink += signer.signedQuery(NAMES, VALUES).length();
+        }
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += signer.signedQuery(NAMES, VALUES).length();
+        }
+        long perSignature = (threads.getThreadAllocatedBytes(threadId) - before) / ITERATIONS;
+
+        assertTrue(sink > 0);
+        // Chỉ chuỗi kết quả (Latin-1, 1 byte/ký tự) cộng header và vài đối tượng nhỏ bên trong Mac
+        assertTrue(perSignature <= resultLength + 256,
+                "signedQuery allocated " + perSignature + " bytes per signature");
+    }
+}
@@ -0,0 +1,128 @@
+package com.project.hotel.service.impl;
+
+import com.project.hotel.event.AvailabilityChangedEvent;
+import com.project.hotel.event.AvailabilityDelta;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Clients that stop reading: their sends block until released, as a full socket buffer would.
+ */
+class AvailabilityStreamServiceImplTest {
+
+    private static final int SENDERS = 1;
+    private static final int MAX_EXTRA_SENDERS = 2;
+    private static final int CLIENTS = 10;
+    private static final LocalDate FROM = LocalDate.of(2026, 6, 1);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private AvailabilityStreamServiceImpl service;
+    private ThreadPoolExecutor senderPool;
+
+    @BeforeEach
+    void setUp() {
+        service = new AvailabilityStreamServiceImpl(meterRegistry, 100, 100, 64, 60_000, 50, 366,
+                SENDERS, MAX_EXTRA_SENDERS) {
+            @Override
+            SseEmitter newEmitter(long timeoutMs) {
+                return new StalledEmitter(timeoutMs, release);
+            }
+        };
+        senderPool = (ThreadPoolExecutor) ReflectionTestUtils.getField(service, "senderPool");
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        ReflectionTestUtils.invokeMethod(service, "shutdown");
+    }
+
+    @Test
+    void stalledClientsPinAtMostTheExtraSenderThreads() throws InterruptedException {
+        for (int i = 0; i < CLIENTS; i++) {
+            service.subscribe(1L, null, FROM, FROM.plusDays(7), "10.0.0." + i);
+        }
+        service.onAvailabilityChanged(new AvailabilityChangedEvent(
+                List.of(new AvailabilityDelta(1L, "SUITE", FROM.plusDays(1), FROM.plusDays(3), false))));
+
+        int maxPoolSize = 0;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        // Vài vòng heartbeat sau khi đạt giới hạn để chắc rằng không có thêm luồng nào
+        int roundsAtCap = 0;
+        while (roundsAtCap < 5 && System.nanoTime() < deadline) {
+            Thread.sleep(60);
+            service.sendHeartbeats();
+            maxPoolSize = Math.max(maxPoolSize, senderPool.getPoolSize());
+            if (evicted() >= SENDERS + MAX_EXTRA_SENDERS) {
+                roundsAtCap++;
+            }
+        }
+
+        assertTrue(maxPoolSize <= SENDERS + MAX_EXTRA_SENDERS, "sender pool grew to " + maxPoolSize);
+        assertEquals(SENDERS + MAX_EXTRA_SENDERS, evicted(), "only sends that actually started are evicted");
+
+        // Khi các send bị treo trả về, các luồng bù được thu hồi
+        release.countDown();
+        assertTrue(eventually(() -> senderPool.getCorePoolSize() == SENDERS),
+                "core pool size stayed at " + senderPool.getCorePoolSize());
+        assertEquals(SENDERS, senderPool.getMaximumPoolSize());
+    }
+
+    private long evicted() {
+        return (long) meterRegistry.get("availability.stream.evicted").counter().count();
+    }
+
+    private static boolean eventually(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (System.nanoTime() < deadline) {
+            if (condition.getAsBoolean()) {
+                return true;
+            }
+            Thread.sleep(20);
+        }
+        return condition.getAsBoolean();
+    }
+
+    /**
+     * Accepts the initial "subscribed" comment, then blocks every later send until released.
+     */
+    private static final class StalledEmitter extends SseEmitter {
+        private final CountDownLatch release;
+        private final AtomicInteger sends = new AtomicInteger();
+
+        private StalledEmitter(long timeoutMs, CountDownLatch release) {
+            super(timeoutMs);
+            this.release = release;
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            if (sends.incrementAndGet() == 1) {
+                return;
+            }
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.project.hotel.simulator;
+
+import com.project.hotel.HotelApplication;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.security.config.annotation.web.builders.HttpSecurity;
+import org.springframework.security.web.SecurityFilterChain;
+
+import java.util.Arrays;
+
+/**
+ * Chạy ứng dụng cùng cổng VNPay giả lập để kiểm thử tải, không cần mạng:
+ * {@code mvn spring-boot:test-run}. The simulator only exists in test sources, so it can
+ * never be exposed by a production build.
+ */
+public class VNPaySimulatorApplication {
+
+    public static void main(String[] args) {
+        String[] withProfile = Arrays.copyOf(args, args.length + 1);
+        withProfile[args.length] = "--spring.profiles.include=vnpay-sim";
+        SpringApplication.from(HotelApplication::main)
+                .with(SimulatorSecurityConfig.class)
+                .run(withProfile);
+    }
+
+    @TestConfiguration(proxyBeanMethods = false)
+    static class SimulatorSecurityConfig {
+
+        // Trình duyệt mở URL thanh toán và ứng dụng gọi merchant API mà không có JWT
+        @Bean
+        @Order(Ordered.HIGHEST_PRECEDENCE)
+        SecurityFilterChain simulatorFilterChain(HttpSecurity http) throws Exception {
+            http
+                    .securityMatcher("/sim/vnpay/**")
+                    .csrf(csrf -> csrf.disable())
+                    .authorizeHttpRequests(auth -> auth.anyRequest().permitAll());
+            return http.build();
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package com.project.hotel.simulator;
+
+import com.project.hotel.config.VNPayConfig;
+import com.project.hotel.security.VNPaySigner;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Giả lập cổng VNPay để kiểm thử tải thanh toán không cần mạng (profile {@code vnpay-sim},
+ * started by {@link VNPaySimulatorApplication}).
+ * <p>
+ * Point {@code vnpay.url} and {@code vnpay.api-url} here (see application-vnpay-sim.properties).
+ * Opening a payment URL verifies its signature, decides the outcome from the configured
+ * success ratio and, after a random latency, delivers signed callbacks to
+ * {@code /api/vnpay/return} and {@code /api/vnpay/ipn}, optionally delivering the IPN twice.
+ * The merchant API (querydr/refund) is answered from the transactions seen so far.
+ */
+@Slf4j
+@RestController
+@Profile("vnpay-sim")
+@RequestMapping("/sim/vnpay")
+public class VNPaySimulatorController {
+
+  // Thứ tự tăng dần theo tên, khớp với buildCallbackValues
+  private static final String[] CALLBACK_FIELDS = {
+      "vnp_Amount", "vnp_BankCode", "vnp_CardType", "vnp_OrderInfo", "vnp_PayDate",
+      "vnp_ResponseCode", "vnp_TmnCode", "vnp_TransactionNo", "vnp_TransactionStatus", "vnp_TxnRef"
+  };
+  private static final DateTimeFormatter VNPAY_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+  private static final String BANK_CODE = "NCB";
+
+  private final VNPayConfig vnPayConfig;
+  private final VNPaySigner vnPaySigner;
+  private final HttpClient httpClient;
+  private final ScheduledExecutorService scheduler;
+  private final Map<String, SimTransaction> transactions = new ConcurrentHashMap<>();
+  private final AtomicLong transactionNo = new AtomicLong(14_000_000);
+  private final Map<String, AtomicLong> stats = new ConcurrentHashMap<>();
+
+  @Value("${vnpay.sim.callback-base-url:http://localhost:8081}")
+  private String callbackBaseUrl;
+
+  @Value("${vnpay.sim.success-ratio:0.9}")
+  private double successRatio;
+
+  @Value("${vnpay.sim.min-latency-ms:50}")
+  private long minLatencyMs;
+
+  @Value("${vnpay.sim.max-latency-ms:500}")
+  private long maxLatencyMs;
+
+  @Value("${vnpay.sim.duplicate-ipn-ratio:0.1}")
+  private double duplicateIpnRatio;
+
+  @Value("${vnpay.sim.deliver-return:true}")
+  private boolean deliverReturn;
+
+  @Value("${vnpay.sim.deliver-ipn:true}")
+  private boolean deliverIpn;
+
+  @Value("${vnpay.sim.max-transactions:1000000}")
+  private int maxTransactions;
+
+  public VNPaySimulatorController(VNPayConfig vnPayConfig, VNPaySigner vnPaySigner,
+                                  @Value("${vnpay.sim.callback-threads:8}") int callbackThreads) {
+    this.vnPayConfig = vnPayConfig;
+    this.vnPaySigner = vnPaySigner;
+    this.httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+
+    AtomicInteger threadCount = new AtomicInteger();
+    this.scheduler = Executors.newScheduledThreadPool(callbackThreads, runnable -> {
+      Thread thread = new Thread(runnable, "vnpay-sim-" + threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    log.warn("VNPay simulator is active; payments are NOT processed by VNPay");
+  }
+
+  @PreDestroy
+  void shutdown() {
+    scheduler.shutdownNow();
+  }
+
+  /**
+   * Thay cho trang thanh toán vpcpay.html: nhận URL do createPaymentUrl tạo ra
+   */
+  @GetMapping("/paymentv2/vpcpay.html")
+  public ResponseEntity<Map<String, String>> pay(@RequestParam Map<String, String> params) {
+    count("payments");
+    if (!vnPaySigner.verify(params, params.get(VNPaySigner.SECURE_HASH))) {
+      count("invalidSignatures");
+      return ResponseEntity.badRequest().body(Map.of("RspCode", "97", "Message", "Invalid signature"));
+    }
+    if (!vnPayConfig.getTmnCode().equals(params.get("vnp_TmnCode"))) {
+      return ResponseEntity.badRequest().body(Map.of("RspCode", "02", "Message", "Invalid merchant"));
+    }
+
+    boolean success = ThreadLocalRandom.current().nextDouble() < successRatio;
+    SimTransaction txn = new SimTransaction(params.get("vnp_TxnRef"), String.valueOf(transactionNo.incrementAndGet()),
+        params.get("vnp_Amount"), params.get("vnp_OrderInfo"), success ? "00" : "24",
+        LocalDateTime.now().format(VNPAY_DATE_FORMAT));
+    if (transactions.size() < maxTransactions) {
+      transactions.put(txn.txnRef, txn);
+    }
+    count(success ? "succeeded" : "failed");
+
+    String query = vnPaySigner.signedQuery(CALLBACK_FIELDS, buildCallbackValues(txn));
+    long latency = latency();
+    if (deliverReturn) {
+      scheduleCallback("/api/vnpay/return", query, latency, "returnCallbacks");
+    }
+    if (deliverIpn) {
+      scheduleCallback("/api/vnpay/ipn", query, latency, "ipnCallbacks");
+      if (ThreadLocalRandom.current().nextDouble() < duplicateIpnRatio) {
+        scheduleCallback("/api/vnpay/ipn", query, latency + latency(), "duplicateIpnCallbacks");
+      }
+    }
+
+    Map<String, String> response = new LinkedHashMap<>();
+    response.put("vnp_TxnRef", txn.txnRef);
+    response.put("vnp_TransactionNo", txn.transactionNo);
+    response.put("vnp_ResponseCode", txn.responseCode);
+    return ResponseEntity.ok(response);
+  }
+
+  /**
+   * Thay cho merchant_webapi: querydr và refund
+   */
+  @PostMapping("/merchant_webapi/api/transaction")
+  public ResponseEntity<Map<String, String>> merchantApi(@RequestBody Map<String, String> request) {
+    String command = value(request, "vnp_Command");
+    count(command + "Requests");
+    String expectedHash = "refund".equals(command)
+        ? vnPaySigner.sign(String.join("|", value(request, "vnp_RequestId"), value(request, "vnp_Version"),
+            command, value(request, "vnp_TmnCode"), value(request, "vnp_TransactionType"),
+            value(request, "vnp_TxnRef"), value(request, "vnp_Amount"), value(request, "vnp_TransactionNo"),
+            value(request, "vnp_TransactionDate"), value(request, "vnp_CreateBy"), value(request, "vnp_CreateDate"),
+            value(request, "vnp_IpAddr"), value(request, "vnp_OrderInfo")))
+        : vnPaySigner.sign(String.join("|", value(request, "vnp_RequestId"), value(request, "vnp_Version"),
+            command, value(request, "vnp_TmnCode"), value(request, "vnp_TxnRef"),
+            value(request, "vnp_TransactionDate"), value(request, "vnp_CreateDate"),
+            value(request, "vnp_IpAddr"), value(request, "vnp_OrderInfo")));
+
+    SimTransaction txn = transactions.get(value(request, "vnp_TxnRef"));
+    String responseCode;
+    if (!expectedHash.equalsIgnoreCase(value(request, VNPaySigner.SECURE_HASH))) {
+      responseCode = "97";
+    } else if (!"querydr".equals(command) && !"refund".equals(command)) {
+      responseCode = "02";
+    } else if (txn == null) {
+      responseCode = "91";
+    } else if ("refund".equals(command) && !"00".equals(txn.status)) {
+      responseCode = "95";
+    } else {
+      responseCode = "00";
+      if ("refund".equals(command)) {
+        txn.status = "05";
+      }
+    }
+    return ResponseEntity.ok(merchantResponse(command, responseCode, request, txn));
+  }
+
+  @GetMapping("/stats")
+  public ResponseEntity<Map<String, Long>> stats() {
+    Map<String, Long> snapshot = new LinkedHashMap<>();
+    stats.forEach((key, value) -> snapshot.put(key, value.get()));
+    snapshot.put("trackedTransactions", (long) transactions.size());
+    return ResponseEntity.ok(snapshot);
+  }
+
+  private void scheduleCallback(String path, String query, long delayMs, String counter) {
+    URI uri = URI.create(callbackBaseUrl + path + "?" + query);
+    scheduler.schedule(() -> {
+      HttpRequest request = HttpRequest.newBuilder(uri).timeout(Duration.ofSeconds(10)).GET().build();
+      httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+          .whenComplete((response, error) -> {
+            if (error != null || response.statusCode() >= 400) {
+              count("callbackErrors");
+              log.debug("Simulated callback {} failed: {}", path,
+                  error != null ? error.getMessage() : "HTTP " + response.statusCode());
+            } else {
+              count(counter);
+            }
+          });
+    }, delayMs, TimeUnit.MILLISECONDS);
+  }
+
+  private String[] buildCallbackValues(SimTransaction txn) {
+    return new String[] {
+        txn.amount,                             // vnp_Amount
+        BANK_CODE,                              // vnp_BankCode
+        "ATM",                                  // vnp_CardType
+        txn.orderInfo,                          // vnp_OrderInfo
+        txn.payDate,                            // vnp_PayDate
+        txn.responseCode,                       // vnp_ResponseCode
+        vnPayConfig.getTmnCode(),               // vnp_TmnCode
+        txn.transactionNo,                      // vnp_TransactionNo
+        "00".equals(txn.responseCode) ? "00" : "02", // vnp_TransactionStatus
+        txn.txnRef                              // vnp_TxnRef
+    };
+  }
+
+  private Map<String, String> merchantResponse(String command, String responseCode, Map<String, String> request,
+                                               SimTransaction txn) {
+    Map<String, String> response = new LinkedHashMap<>();
+    response.put("vnp_ResponseId", UUID.randomUUID().toString().replace("-", ""));
+    response.put("vnp_Command", command);
+    response.put("vnp_ResponseCode", responseCode);
+    response.put("vnp_Message", "00".equals(responseCode) ? "Success" : "Simulated error " + responseCode);
+    response.put("vnp_TmnCode", vnPayConfig.getTmnCode());
+    response.put("vnp_TxnRef", value(request, "vnp_TxnRef"));
+    response.put("vnp_Amount", txn != null ? txn.amount : "");
+    response.put("vnp_BankCode", txn != null ? BANK_CODE : "");
+    response.put("vnp_PayDate", txn != null ? txn.payDate : "");
+    response.put("vnp_TransactionNo", txn != null ? txn.transactionNo : "");
+    response.put("vnp_TransactionType", "refund".equals(command) ? "02" : "01");
+    response.put("vnp_TransactionStatus", txn != null ? txn.status : "");
+    response.put("vnp_OrderInfo", txn != null ? txn.orderInfo : "");
+
+    String data = String.join("|", response.values());
+    if ("querydr".equals(command)) {
+      response.put("vnp_PromotionCode", "");
+      response.put("vnp_PromotionAmount", "");
+      data = data + "||";
+    }
+    response.put(VNPaySigner.SECURE_HASH, vnPaySigner.sign(data));
+    return response;
+  }
+
+  private long latency() {
+    return maxLatencyMs <= minLatencyMs
+        ? minLatencyMs
+        : ThreadLocalRandom.current().nextLong(minLatencyMs, maxLatencyMs + 1);
+  }
+
+  private void count(String name) {
+    stats.computeIfAbsent(name, key -> new AtomicLong()).incrementAndGet();
+  }
+
+  private static String value(Map<String, String> map, String key) {
+    String value = map.get(key);
+    return value == null ? "" : value;
+  }
+
+  private static final class SimTransaction {
+    private final String txnRef;
+    private final String transactionNo;
+    private final String amount;
+    private final String orderInfo;
+    private final String responseCode;
+    private final String payDate;
+    private volatile String status;
+
+    private SimTransaction(String txnRef, String transactionNo, String amount, String orderInfo,
+                           String responseCode, String payDate) {
+      this.txnRef = txnRef;
+      this.transactionNo = transactionNo;
+      this.amount = amount;
+      this.orderInfo = orderInfo;
+      this.responseCode = responseCode;
+      this.payDate = payDate;
+      this.status = "00".equals(responseCode) ? "00" : "02";
+    }
+  }
+}